@@ -0,0 +1,700 @@
+/**
+ * A {@link GroupFinder} implementation that improves the group configuration
+ * found by {@link IterativeSimilarityGroupFinder} by simulated annealing.
+ *
+ * A configuration assigns every candidate to a group. Starting from the
+ * configuration of the greedy heuristic, random moves are applied: a
+ * candidate is moved to the group of another candidate, the groups of two
+ * candidates are merged, or a candidate is split off into a group of its
+ * own. Only candidates at most maxDist versions apart are considered for
+ * the first two moves, and moves that would create a group whose first and
+ * last version are more than maxDist versions apart or, as in
+ * {@link ContiguousGroupFinder}, a group of several versions with an empty
+ * signature are rejected. Versions
+ * that are not candidates (according to the threshold) always form groups of
+ * their own. A move is accepted if it does not decrease the average
+ * signature size, or otherwise with a probability that decreases with the
+ * loss and the temperature, which is lowered as the budget is used up.
+ *
+ * Several independent searches (islands) run in parallel, each starting from
+ * the greedy configuration with a different random seed. After each epoch of
+ * a fixed number of moves, every island receives the best configuration of
+ * its predecessor (in a ring) if it is better than its current one. As the
+ * best configuration seen is kept, the result is never worse than that of
+ * the greedy heuristic.
+ *
+ * The search runs until the time or evaluation budget (see
+ * {@link GroupFinder#setTimeBudget(long)} and
+ * {@link GroupFinder#setEvaluationBudget(long)}) is exhausted, where every
+ * move that evaluates signature sizes counts as one evaluation (moves
+ * skipped because they would not change the configuration or violate
+ * maxDist are not counted). The time budget includes the greedy heuristic.
+ * If no budget is set, an evaluation budget of {@link #DEFAULT_EVALUATIONS}
+ * is used. Signature sizes of groups are computed from the
+ * {@link PageIndex} and memoized, as the same groups are evaluated many
+ * times.
+ */
+package de.uni_hamburg.svs.memsig;
+
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+public class AnnealingGroupFinder extends GroupFinder {
+	/** Evaluation budget used if neither a time nor an evaluation budget is set. */
+	public static final long DEFAULT_EVALUATIONS = 200000;
+	private static final int MOVES_PER_EPOCH = 2000;
+	private static final int MAX_MEMO_SIZE = 1 << 20;
+	private static final double FINAL_TEMPERATURE_RATIO = 0.001;
+
+	ArrayList<SoftwareVersionGroup> _groups;
+	VersionSignature[] _sigs;
+	double _sigsizeAvg;
+
+	private int _numIslands;
+	private long _seed;
+
+	// problem data shared by all islands (candidates are identified by their position in _candIdx)
+	private PageIndex _idx;
+	private int[] _candIdx; // position -> index of the individual version signature
+	private int[] _versionPos; // position -> position of the version in the PageIndex
+	private int[] _neighbourLo; // position -> first position at most maxDist versions before
+	private int[] _neighbourHi; // position -> last position at most maxDist versions after
+	private int[][][] _contentsByCard; // position -> group size -> contents of the version contained in that many versions
+	private ConcurrentHashMap<GroupKey, Integer> _sigsizeMemo;
+	private long _fixedSum; // total signature size of the non-candidates
+	private int _fixedGroups; // number of non-candidates
+
+	/**
+	 * Creates a new Object. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,double,int)}
+	 */
+	public AnnealingGroupFinder(Software sw, int pagesize, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, sigsizeThresh, maxDist);
+		init();
+	}
+
+	/**
+	 * Creates a new Object using previously generated individual version
+	 * signatures. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,VersionSignature[],double,int)}
+	 */
+	public AnnealingGroupFinder(Software sw, int pagesize, VersionSignature[] idvSigs, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, idvSigs, sigsizeThresh, maxDist);
+		init();
+	}
+
+	private void init() {
+		_sigsizeAvg = -1;
+		_numIslands = 1;
+		_seed = 0;
+	}
+
+	/**
+	 * Sets the number of islands, each of which runs on a thread of its own.
+	 *
+	 * @param islands number of islands
+	 */
+	public void setIslands(int islands) {
+		_numIslands = Math.max(1, islands);
+	}
+
+	/**
+	 * Sets the seed for the random number generators of the islands.
+	 *
+	 * @param seed seed
+	 */
+	public void setSeed(long seed) {
+		_seed = seed;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#supportsBudget()
+	 */
+	@Override
+	public boolean supportsBudget() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#findSignatureGroups()
+	 */
+	@Override
+	public SoftwareVersionGroup[] findSignatureGroups() {
+		if(!hasBudget()) {
+			setEvaluationBudget(DEFAULT_EVALUATIONS);
+		}
+		startBudget();
+
+		// Seed the search with the result of the greedy heuristic.
+		IterativeSimilarityGroupFinder greedy = new IterativeSimilarityGroupFinder(_sw, _pagesize, _idvSigs, _sigsizeThresh, _maxDist);
+		SoftwareVersionGroup[] greedyGroups = greedy.findSignatureGroups();
+
+		initProblem();
+		Configuration start = new Configuration(_candIdx.length);
+		int[] posOf = new int[_idvSigs.length];
+		Arrays.fill(posOf, -1);
+		for(int p = 0; p < _candIdx.length; p++) {
+			posOf[_candIdx[p]] = p;
+		}
+		for(SoftwareVersionGroup grp : greedyGroups) {
+			int[] ordinals = grp.getOrdinals();
+			if(posOf[ordinals[0]] < 0) {
+				// not a candidate
+				continue;
+			}
+			int[] members = new int[ordinals.length];
+			for(int i = 0; i < ordinals.length; i++) {
+				members[i] = posOf[ordinals[i]];
+			}
+			start.addGroup(members, sigsize(members));
+		}
+
+		Island[] islands = new Island[_numIslands];
+		for(int k = 0; k < islands.length; k++) {
+			islands[k] = new Island(start, _seed + k);
+		}
+		double initialTemperature = 2.0 / (_fixedGroups + start._count);
+
+		ForkJoinPool pool = (islands.length > 1) ? new ForkJoinPool(islands.length) : null;
+		long[] evaluated = new long[islands.length];
+		try {
+			while((_candIdx.length > 1) && !budgetExhausted()) {
+				double temperature = initialTemperature * Math.pow(FINAL_TEMPERATURE_RATIO, budgetProgress());
+				// Each island evaluates at most its share of the remaining
+				// evaluations, so that the last epoch does not exceed the budget.
+				long remaining = remainingEvaluations();
+				long[] share = new long[islands.length];
+				for(int k = 0; k < islands.length; k++) {
+					share[k] = (remaining == Long.MAX_VALUE) ? remaining : (remaining / islands.length + ((k < remaining % islands.length) ? 1 : 0));
+				}
+				if(pool == null) {
+					evaluated[0] = islands[0].run(MOVES_PER_EPOCH, share[0], temperature);
+				} else {
+					pool.submit(() -> IntStream.range(0, islands.length).parallel().forEach(k -> {
+						evaluated[k] = islands[k].run(MOVES_PER_EPOCH, share[k], temperature);
+					})).get();
+				}
+				long epochEvaluations = Arrays.stream(evaluated).sum();
+				if(epochEvaluations == 0) {
+					// No move can change the configuration (e.g. maxDist 0).
+					break;
+				}
+				countEvaluations(epochEvaluations);
+
+				// Each island receives the best configuration of its predecessor.
+				Configuration[] bests = new Configuration[islands.length];
+				for(int k = 0; k < islands.length; k++) {
+					bests[k] = islands[k]._best;
+				}
+				for(int k = 0; k < islands.length; k++) {
+					Configuration incoming = bests[(k + islands.length - 1) % islands.length];
+					if(incoming.isBetterThan(islands[k]._cur)) {
+						islands[k]._cur = incoming.copy();
+						if(incoming.isBetterThan(islands[k]._best)) {
+							islands[k]._best = islands[k]._cur.copy();
+						}
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while finding groups", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while finding groups", e.getCause());
+		} finally {
+			if(pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		Configuration best = start;
+		for(Island island : islands) {
+			if(island._best.isBetterThan(best)) {
+				best = island._best;
+			}
+		}
+
+		TreeSet<VersionSignature> sigset = new TreeSet<VersionSignature>();
+		for(int i = 0; i < _nonCands.length; i++) {
+			sigset.add(_idvSigs[_nonCands[i]]);
+		}
+		for(int[] members : best._members) {
+			if(members == null) {
+				continue;
+			}
+			if(members.length == 1) {
+				sigset.add(_idvSigs[_candIdx[members[0]]]);
+			} else {
+				SoftwareVersion[] grp = new SoftwareVersion[members.length];
+				for(int i = 0; i < members.length; i++) {
+					grp[i] = _idvSigs[_candIdx[members[i]]].getSoftwareVersions()[0];
+				}
+				sigset.add(_sw.generateVersionsSignature(grp, _pagesize));
+			}
+		}
+		_sigsizeMemo = null;
+		_contentsByCard = null;
+
+		_sigs = sigset.toArray(new VersionSignature[0]);
+		_groups = new ArrayList<SoftwareVersionGroup>();
+		long sigsizeSum = 0;
+		for(int i = 0; i < _sigs.length; i++) {
+			sigsizeSum += _sigs[i].numberOfPages();
+			_groups.add(new SoftwareVersionGroup(_sigs[i].getSoftwareVersions()));
+		}
+		_sigsizeAvg = (double)sigsizeSum / _sigs.length;
+
+		return getBestGroupConfig();
+	}
+
+	/**
+	 * Prepares the data shared by all islands.
+	 */
+	private void initProblem() {
+		_idx = _sw.getPageIndex(_pagesize);
+		_candIdx = remainingCandidates();
+		int n = _candIdx.length;
+
+		_fixedSum = 0;
+		for(int i = 0; i < _nonCands.length; i++) {
+			_fixedSum += _idvSigs[_nonCands[i]].numberOfPages();
+		}
+		_fixedGroups = _nonCands.length;
+
+		_versionPos = new int[n];
+		_neighbourLo = new int[n];
+		_neighbourHi = new int[n];
+		int lo = 0;
+		int hi = 0;
+		for(int p = 0; p < n; p++) {
+			_versionPos[p] = _idx.getVersionPosition(_idvSigs[_candIdx[p]].getSoftwareVersions()[0]);
+			while(_candIdx[p] - _candIdx[lo] > _maxDist) {
+				lo++;
+			}
+			while((hi + 1 < n) && (_candIdx[hi + 1] - _candIdx[p] <= _maxDist)) {
+				hi++;
+			}
+			_neighbourLo[p] = lo;
+			_neighbourHi[p] = hi;
+		}
+
+		// Group the contents of each candidate that may be part of a
+		// signature by the number of versions containing them, as only
+		// contents contained in exactly as many versions as the group has
+		// members can be part of its signature.
+		int maxGroupSize = Math.min(n, _maxDist + 1);
+		_contentsByCard = new int[n][][];
+		for(int p = 0; p < n; p++) {
+			SoftwareVersion sv = _idvSigs[_candIdx[p]].getSoftwareVersions()[0];
+			InternalDuplicates internalDups = sv.getInternalDuplicates(_pagesize);
+			int[] counts = new int[maxGroupSize + 1];
+			int[] cids = new int[sv.numberOfPages(_pagesize)];
+			int num = 0;
+			for(CodePart part : sv.getParts()) {
+				PageTable table = part.getPageTable(_pagesize);
+				for(int i = 0; i < table.numberOfPages(); i++) {
+					if(table.isTrivial(i) || internalDups.isRepeat(part, i)) {
+						continue;
+					}
+					int cid = _idx.getContentId(part, i);
+					int card = _idx.getMembership(cid).cardinality();
+					if(_idx.isForeign(cid) || (card > maxGroupSize)) {
+						continue;
+					}
+					counts[card]++;
+					cids[num++] = cid;
+				}
+			}
+
+			_contentsByCard[p] = new int[maxGroupSize + 1][];
+			for(int card = 1; card <= maxGroupSize; card++) {
+				_contentsByCard[p][card] = new int[counts[card]];
+				counts[card] = 0;
+			}
+			for(int i = 0; i < num; i++) {
+				int card = _idx.getMembership(cids[i]).cardinality();
+				_contentsByCard[p][card][counts[card]++] = cids[i];
+			}
+		}
+
+		_sigsizeMemo = new ConcurrentHashMap<GroupKey, Integer>();
+	}
+
+	/**
+	 * Returns the signature size of a group.
+	 *
+	 * @param members positions of the members in ascending order
+	 * @return signature size
+	 */
+	private int sigsize(int[] members) {
+		if(members.length == 1) {
+			return _idvSigs[_candIdx[members[0]]].numberOfPages();
+		}
+
+		GroupKey key = new GroupKey(members);
+		Integer memo = _sigsizeMemo.get(key);
+		if(memo != null) {
+			return memo;
+		}
+
+		int size = 0;
+		int[] cids = _contentsByCard[members[0]][members.length];
+		for(int cid : cids) {
+			VersionBitmap versions = _idx.getMembership(cid);
+			boolean inAll = true;
+			for(int i = 1; inAll && (i < members.length); i++) {
+				inAll = versions.get(_versionPos[members[i]]);
+			}
+			if(inAll) {
+				size++;
+			}
+		}
+
+		if(_sigsizeMemo.size() < MAX_MEMO_SIZE) {
+			_sigsizeMemo.put(key, size);
+		}
+		return size;
+	}
+
+	/**
+	 * Checks whether the first and last member of a group are at most
+	 * maxDist versions apart.
+	 *
+	 * @param members positions of the members in ascending order
+	 * @return true if the group satisfies the maximum distance
+	 */
+	private boolean withinMaxDist(int[] members) {
+		return (_candIdx[members[members.length - 1]] - _candIdx[members[0]]) <= _maxDist;
+	}
+
+	/**
+	 * Returns a group with an additional member.
+	 *
+	 * @param members positions of the members in ascending order
+	 * @param p position to add
+	 * @return positions of the members of the new group in ascending order
+	 */
+	private static int[] with(int[] members, int p) {
+		int[] res = new int[members.length + 1];
+		int i = 0;
+		while((i < members.length) && (members[i] < p)) {
+			res[i] = members[i];
+			i++;
+		}
+		res[i] = p;
+		System.arraycopy(members, i, res, i + 1, members.length - i);
+		return res;
+	}
+
+	/**
+	 * Returns a group without one of its members.
+	 *
+	 * @param members positions of the members in ascending order
+	 * @param p position to remove
+	 * @return positions of the members of the new group in ascending order
+	 */
+	private static int[] without(int[] members, int p) {
+		int[] res = new int[members.length - 1];
+		int j = 0;
+		for(int m : members) {
+			if(m != p) {
+				res[j++] = m;
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the union of two groups.
+	 *
+	 * @param a positions of the members of the first group in ascending order
+	 * @param b positions of the members of the second group in ascending order
+	 * @return positions of the members of the union in ascending order
+	 */
+	private static int[] union(int[] a, int[] b) {
+		int[] res = new int[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int k = 0;
+		while((i < a.length) || (j < b.length)) {
+			if((j >= b.length) || ((i < a.length) && (a[i] < b[j]))) {
+				res[k++] = a[i++];
+			} else {
+				res[k++] = b[j++];
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * A group configuration of the candidates.
+	 */
+	private class Configuration {
+		private int[] _groupOf; // position -> group ID
+		private int[][] _members; // group ID -> positions of the members (null if unused)
+		private int[] _sizes; // group ID -> signature size
+		private int[] _free; // unused group IDs
+		private int _numFree;
+		private long _sum; // total signature size of the candidates' groups
+		private int _count; // number of groups of candidates
+
+		Configuration(int n) {
+			_groupOf = new int[n];
+			_members = new int[n][];
+			_sizes = new int[n];
+			_free = new int[n];
+			for(int g = 0; g < n; g++) {
+				_free[g] = n - 1 - g;
+			}
+			_numFree = n;
+		}
+
+		Configuration copy() {
+			Configuration c = new Configuration(0);
+			c._groupOf = _groupOf.clone();
+			c._members = _members.clone(); // groups are never modified in place
+			c._sizes = _sizes.clone();
+			c._free = _free.clone();
+			c._numFree = _numFree;
+			c._sum = _sum;
+			c._count = _count;
+			return c;
+		}
+
+		int addGroup(int[] members, int size) {
+			int g = _free[--_numFree];
+			_members[g] = members;
+			_sizes[g] = size;
+			for(int p : members) {
+				_groupOf[p] = g;
+			}
+			_sum += size;
+			_count++;
+			return g;
+		}
+
+		void removeGroup(int g) {
+			_sum -= _sizes[g];
+			_count--;
+			_members[g] = null;
+			_free[_numFree++] = g;
+		}
+
+		void replaceGroup(int g, int[] members, int size) {
+			_sum += size - _sizes[g];
+			_members[g] = members;
+			_sizes[g] = size;
+			for(int p : members) {
+				_groupOf[p] = g;
+			}
+		}
+
+		/**
+		 * Compares the average signature sizes of two configurations exactly.
+		 *
+		 * @param o configuration to compare to
+		 * @return true if this configuration has a larger average signature size
+		 */
+		boolean isBetterThan(Configuration o) {
+			return (_fixedSum + _sum) * (_fixedGroups + o._count) > (_fixedSum + o._sum) * (_fixedGroups + _count);
+		}
+	}
+
+	/**
+	 * An independent simulated annealing search.
+	 */
+	private class Island {
+		private Random _rnd;
+		private Configuration _cur;
+		private Configuration _best;
+
+		Island(Configuration start, long seed) {
+			_rnd = new Random(seed);
+			_cur = start.copy();
+			_best = start.copy();
+		}
+
+		/**
+		 * Applies the specified number of random moves, but stops once the
+		 * specified number of moves have evaluated signature sizes.
+		 *
+		 * @param moves number of moves
+		 * @param maxEvaluated maximum number of moves evaluating signature sizes
+		 * @param temperature temperature
+		 * @return number of moves for which signature sizes were evaluated
+		 */
+		long run(int moves, long maxEvaluated, double temperature) {
+			int n = _candIdx.length;
+			long evaluated = 0;
+			for(int m = 0; (m < moves) && (evaluated < maxEvaluated); m++) {
+				int p = _rnd.nextInt(n);
+				int a = _cur._groupOf[p];
+				int[] grpA = _cur._members[a];
+				int type = _rnd.nextInt(4);
+
+				if(type == 0) {
+					// split p off into a group of its own
+					if(grpA.length == 1) {
+						continue;
+					}
+					evaluated++;
+					int[] rest = without(grpA, p);
+					int[] single = new int[] { p };
+					int restSize = sigsize(rest);
+					int singleSize = sigsize(single);
+					if(((restSize > 0) || (rest.length == 1)) && accept(restSize + singleSize - _cur._sizes[a], 1, temperature)) {
+						_cur.replaceGroup(a, rest, restSize);
+						_cur.addGroup(single, singleSize);
+					} else {
+						continue;
+					}
+				} else {
+					// choose another candidate within the maximum distance
+					int numNeighbours = _neighbourHi[p] - _neighbourLo[p];
+					if(numNeighbours == 0) {
+						continue;
+					}
+					int q = _neighbourLo[p] + _rnd.nextInt(numNeighbours);
+					if(q >= p) {
+						q++;
+					}
+					int b = _cur._groupOf[q];
+					if(a == b) {
+						continue;
+					}
+					int[] grpB = _cur._members[b];
+
+					if(type == 1) {
+						// merge the groups of p and q
+						int[] merged = union(grpA, grpB);
+						if(!withinMaxDist(merged)) {
+							continue;
+						}
+						evaluated++;
+						int mergedSize = sigsize(merged);
+						if((mergedSize > 0) && accept(mergedSize - _cur._sizes[a] - _cur._sizes[b], -1, temperature)) {
+							_cur.removeGroup(b);
+							_cur.replaceGroup(a, merged, mergedSize);
+						} else {
+							continue;
+						}
+					} else {
+						// move p to the group of q
+						int[] newB = with(grpB, p);
+						if(!withinMaxDist(newB)) {
+							continue;
+						}
+						evaluated++;
+						int newBSize = sigsize(newB);
+						if(newBSize == 0) {
+							continue;
+						}
+						if(grpA.length == 1) {
+							if(accept(newBSize - _cur._sizes[a] - _cur._sizes[b], -1, temperature)) {
+								_cur.removeGroup(a);
+								_cur.replaceGroup(b, newB, newBSize);
+							} else {
+								continue;
+							}
+						} else {
+							int[] newA = without(grpA, p);
+							int newASize = sigsize(newA);
+							if(((newASize > 0) || (newA.length == 1)) && accept(newASize + newBSize - _cur._sizes[a] - _cur._sizes[b], 0, temperature)) {
+								_cur.replaceGroup(a, newA, newASize);
+								_cur.replaceGroup(b, newB, newBSize);
+							} else {
+								continue;
+							}
+						}
+					}
+				}
+
+				if(_cur.isBetterThan(_best)) {
+					_best = _cur.copy();
+				}
+			}
+			return evaluated;
+		}
+
+		/**
+		 * Decides whether a move is accepted.
+		 *
+		 * @param deltaSum change of the total signature size
+		 * @param deltaCount change of the number of groups
+		 * @param temperature temperature
+		 * @return true if the move is accepted
+		 */
+		private boolean accept(long deltaSum, int deltaCount, double temperature) {
+			long sum = _fixedSum + _cur._sum;
+			long count = _fixedGroups + _cur._count;
+			double delta = (double)(sum + deltaSum) / (count + deltaCount) - (double)sum / count;
+			return (delta >= 0) || (_rnd.nextDouble() < Math.exp(delta / temperature));
+		}
+	}
+
+	/**
+	 * Key of a group in the memo of signature sizes.
+	 */
+	private static class GroupKey {
+		private final int[] _members;
+		private final int _hash;
+
+		GroupKey(int[] members) {
+			_members = members;
+			_hash = Arrays.hashCode(members);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return (obj instanceof GroupKey) && Arrays.equals(_members, ((GroupKey)obj)._members);
+		}
+
+		@Override
+		public int hashCode() {
+			return _hash;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfig()
+	 */
+	@Override
+	public SoftwareVersionGroup[] getBestGroupConfig() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _groups.toArray(new SoftwareVersionGroup[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigSignatures()
+	 */
+	@Override
+	public VersionSignature[] getBestGroupConfigSignatures() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigs;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigAvgSigsize()
+	 */
+	@Override
+	public double getBestGroupConfigAvgSigsize() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigsizeAvg;
+	}
+
+}
@@ -0,0 +1,40 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Replaces files atomically. A file is first written to a temporary file
+ * next to it (cf. {@link #tempFile(File)}), which then replaces the file
+ * (cf. {@link #replace(File, File)}). An interrupted run thus never leaves a
+ * truncated file behind, and readers see either the previous or the new
+ * contents.
+ */
+final class AtomicFile {
+	private AtomicFile() {
+		// static methods only
+	}
+
+	/**
+	 * Returns the temporary file to write the new contents of a file to.
+	 *
+	 * @param f file to replace
+	 * @return temporary file in the same directory
+	 */
+	static File tempFile(File f) {
+		return new File(f.getPath() + ".tmp");
+	}
+
+	/**
+	 * Replaces a file by the temporary file its new contents were written to.
+	 *
+	 * @param tmp temporary file (cf. {@link #tempFile(File)})
+	 * @param f file to replace
+	 * @throws IOException if the file cannot be replaced
+	 */
+	static void replace(File tmp, File f) throws IOException {
+		Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
@@ -0,0 +1,801 @@
+/**
+ * A {@link GroupFinder} implementation that searches the group
+ * configurations of the candidates by branch and bound. Unlike
+ * {@link ContiguousGroupFinder}, groups may be non-contiguous: any set of
+ * candidates whose first and last version are not more than maxDist
+ * versions apart may form a group. As in {@link ContiguousGroupFinder},
+ * groups of several versions whose signature is empty are not considered.
+ *
+ * A page content is part of the signature of a group if and only if the
+ * set of versions containing it equals the group (see
+ * {@link Software#generateVersionsSignature(SoftwareVersion[], int)}), so
+ * the signature sizes of all groups are obtained by counting the contents
+ * by their membership once. As the objective is a ratio (total signature
+ * size divided by the number of groups), each search maximises the
+ * parametric objective total size - lambda * number of groups, and lambda is
+ * updated to the average of the configuration found until no configuration
+ * improves on it any more (Dinkelbach's method). The first lambda is the
+ * average of the configuration found by {@link IterativeSimilarityGroupFinder}.
+ * All computations use integers.
+ *
+ * The search assigns the candidates in order, each one either to a group
+ * opened by an earlier candidate within maxDist or to a new group. A group
+ * is evaluated as soon as no later candidate can join it any more. A
+ * subtree is pruned if an upper bound of its objective does not exceed the
+ * best one found so far. An open group is bounded by the largest signature
+ * of the groups containing its members and by the cached number of pages
+ * any two of its members share (see {@link VersionSimilarity}), as the
+ * signature can never be larger than that. Each remaining candidate is
+ * bounded by the best share of the objective it can have in any group.
+ * Joining a group is not considered at all if a member shares no page with
+ * the candidate or no group with a non-empty signature contains them all.
+ * Subtrees are explored in parallel on a work-stealing pool.
+ *
+ * The number of search nodes is limited. If the limit or the time or
+ * evaluation budget (counted in evaluated groups) is reached, the best
+ * configuration found so far is used, so the result may not be optimal.
+ */
+package de.uni_hamburg.svs.memsig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+public class BranchAndBoundGroupFinder extends GroupFinder {
+	/** Default maximum number of search nodes (over all iterations). */
+	public static final long DEFAULT_NODE_BUDGET = 2000000;
+
+	private static final int PARALLEL_DEPTH = 12; // subtrees below this depth are explored sequentially
+	private static final int BUDGET_CHECK_INTERVAL = 1024; // nodes between two checks of the time and evaluation budgets
+
+	ArrayList<SoftwareVersionGroup> _groups;
+	VersionSignature[] _sigs;
+	double _sigsizeAvg;
+
+	private int _threads;
+	private long _nodeBudget;
+
+	// candidates of the current search
+	private int[] _candIdx; // indices of the individual version signatures
+	private int[] _single; // signature sizes of the candidates on their own
+	private int[] _candAt; // candidate at each position of the page index, -1 for other versions
+	private HashMap<VersionBitmap, Integer> _weights; // signature sizes of groups of several candidates
+	private VersionBitmap[][] _groupsByFirst; // these groups by first candidate, largest signature first
+	private int[][] _groupSizes; // signature sizes of these groups
+	private int[][] _matches; // _matches[i][k]: pages shared by candidates i and i+1+k
+
+	// statistics over all iterations
+	private long _nodesExplored;
+	private long _nodesPruned;
+	private double _prunedSpace;
+	private int _iterations;
+	private boolean _nodeBudgetExhausted;
+
+	/**
+	 * Creates a new Object. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,double,int)}
+	 */
+	public BranchAndBoundGroupFinder(Software sw, int pagesize, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, sigsizeThresh, maxDist);
+		init();
+	}
+
+	/**
+	 * Creates a new Object using previously generated individual version
+	 * signatures. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,VersionSignature[],double,int)}
+	 */
+	public BranchAndBoundGroupFinder(Software sw, int pagesize, VersionSignature[] idvSigs, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, idvSigs, sigsizeThresh, maxDist);
+		init();
+	}
+
+	private void init() {
+		_sigsizeAvg = -1;
+		_threads = 1;
+		_nodeBudget = DEFAULT_NODE_BUDGET;
+	}
+
+	/**
+	 * Sets the number of worker threads used for the search.
+	 *
+	 * @param threads number of threads
+	 */
+	public void setThreads(int threads) {
+		_threads = Math.max(1, threads);
+	}
+
+	/**
+	 * Sets the maximum number of search nodes explored over all iterations.
+	 *
+	 * @param nodeBudget maximum number of nodes
+	 */
+	public void setNodeBudget(long nodeBudget) {
+		_nodeBudget = nodeBudget;
+	}
+
+	/**
+	 * @return number of search nodes explored over all iterations
+	 */
+	public long getNodesExplored() {
+		return _nodesExplored;
+	}
+
+	/**
+	 * @return number of subtrees pruned over all iterations
+	 */
+	public long getNodesPruned() {
+		return _nodesPruned;
+	}
+
+	/**
+	 * Returns the proportion of the search space that was eliminated by
+	 * pruning, averaged over all iterations. The space of a node is split
+	 * evenly among its children.
+	 *
+	 * @return proportion of the search space pruned
+	 */
+	public double getPrunedFraction() {
+		return (_iterations > 0) ? (_prunedSpace / _iterations) : 0;
+	}
+
+	/**
+	 * @return number of searches run (one per value of lambda)
+	 */
+	public int getIterations() {
+		return _iterations;
+	}
+
+	/**
+	 * @return true if the node budget was exhausted, false otherwise
+	 */
+	public boolean isNodeBudgetExhausted() {
+		return _nodeBudgetExhausted;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#supportsBudget()
+	 */
+	@Override
+	public boolean supportsBudget() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#findSignatureGroups()
+	 */
+	@Override
+	public SoftwareVersionGroup[] findSignatureGroups() {
+		startBudget();
+		_nodesExplored = 0;
+		_nodesPruned = 0;
+		_prunedSpace = 0;
+		_iterations = 0;
+		_nodeBudgetExhausted = false;
+
+		_candIdx = remainingCandidates();
+		int n = _candIdx.length;
+
+		// Non-candidates always form groups of their own.
+		long fixedSum = 0;
+		for(int i = 0; i < _nonCands.length; i++) {
+			fixedSum += _idvSigs[_nonCands[i]].numberOfPages();
+		}
+		int fixedGroups = _nonCands.length;
+
+		countContents();
+		computeMatches();
+
+		// Start with the configuration of the greedy search, with each group
+		// identified by its first candidate.
+		int[] assign = initialAssignment();
+		long sum = fixedSum + configSum(assign);
+		long groups = fixedGroups + configGroups(assign);
+
+		ForkJoinPool pool = (_threads > 1) ? new ForkJoinPool(_threads) : null;
+		try {
+			// Dinkelbach iterations with lambda = sum / groups
+			while((n > 0) && !_nodeBudgetExhausted && !budgetExhausted()) {
+				// Non-candidates contribute groups * size - sum each, so the
+				// candidates have to contribute more than the negation to improve.
+				long target = 2 * ((long)fixedGroups * sum - groups * fixedSum);
+				Search search = new Search(sum, groups, target, _nodeBudget - _nodesExplored);
+				search.run(pool);
+				if(search._bestAssign == null) {
+					// The current configuration is optimal (or the budget
+					// did not suffice to improve it).
+					break;
+				}
+
+				assign = search._bestAssign;
+				sum = fixedSum + configSum(assign);
+				groups = fixedGroups + configGroups(assign);
+			}
+		} finally {
+			if(pool != null) {
+				pool.shutdown();
+			}
+		}
+
+		// Create groups and signatures in the order of their first versions.
+		TreeSet<VersionSignature> sigset = new TreeSet<VersionSignature>();
+		for(int i = 0; i < _nonCands.length; i++) {
+			sigset.add(_idvSigs[_nonCands[i]]);
+		}
+		for(int i = 0; i < n; i++) {
+			if(assign[i] != i) {
+				continue;
+			}
+
+			ArrayList<SoftwareVersion> grp = new ArrayList<SoftwareVersion>();
+			for(int j = i; j < n; j++) {
+				if(assign[j] == i) {
+					grp.add(_idvSigs[_candIdx[j]].getSoftwareVersions()[0]);
+				}
+			}
+			if(grp.size() == 1) {
+				sigset.add(_idvSigs[_candIdx[i]]);
+			} else {
+				sigset.add(_sw.generateVersionsSignature(grp.toArray(new SoftwareVersion[0]), _pagesize));
+			}
+		}
+
+		_sigs = sigset.toArray(new VersionSignature[0]);
+		_groups = new ArrayList<SoftwareVersionGroup>();
+		long sigsizeSum = 0;
+		for(int i = 0; i < _sigs.length; i++) {
+			sigsizeSum += _sigs[i].numberOfPages();
+			_groups.add(new SoftwareVersionGroup(_sigs[i].getSoftwareVersions()));
+		}
+		_sigsizeAvg = (double)sigsizeSum / _sigs.length;
+
+		return getBestGroupConfig();
+	}
+
+	/**
+	 * Determines the signature sizes of all candidates on their own and
+	 * of all groups of several candidates that have a non-empty signature
+	 * and satisfy the maximum distance, by counting the contents that may
+	 * be part of a signature (not foreign and non-trivial) by their
+	 * membership.
+	 */
+	private void countContents() {
+		PageIndex idx = _sw.getPageIndex(_pagesize);
+		int n = _candIdx.length;
+		int[] candAt = new int[idx.numberOfVersions()];
+		Arrays.fill(candAt, -1);
+		_single = new int[n];
+		for(int i = 0; i < n; i++) {
+			candAt[idx.getVersionPosition(_idvSigs[_candIdx[i]].getSoftwareVersions()[0])] = i;
+			_single[i] = _idvSigs[_candIdx[i]].numberOfPages();
+		}
+
+		_weights = new HashMap<VersionBitmap, Integer>();
+		for(int cid = 0; cid < idx.numberOfContents(); cid++) {
+			if(idx.isForeign(cid)) {
+				continue;
+			}
+
+			VersionBitmap members = idx.getMembership(cid);
+			if(members.cardinality() < 2) {
+				continue;
+			}
+			int first = candAt[members.nextSetBit(0)];
+			int last = candAt[members.lastSetBit()];
+			if((first < 0) || (last < 0) || (_candIdx[last] - _candIdx[first] > _maxDist)) {
+				continue;
+			}
+			boolean local = true;
+			for(int v = members.nextSetBit(0); local && (v >= 0); v = members.nextSetBit(v + 1)) {
+				local = candAt[v] >= 0;
+			}
+			if(!local) {
+				continue;
+			}
+
+			PageLocation loc = idx.getLocations(cid).get(0);
+			if(loc.getPart().getPageTable(_pagesize).isTrivial(loc.getPageNumber())) {
+				continue;
+			}
+			_weights.merge(members, 1, Integer::sum);
+		}
+		_candAt = candAt;
+
+		ArrayList<ArrayList<VersionBitmap>> byFirst = new ArrayList<ArrayList<VersionBitmap>>();
+		for(int i = 0; i < n; i++) {
+			byFirst.add(new ArrayList<VersionBitmap>());
+		}
+		for(VersionBitmap members : _weights.keySet()) {
+			byFirst.get(candAt[members.nextSetBit(0)]).add(members);
+		}
+		_groupsByFirst = new VersionBitmap[n][];
+		_groupSizes = new int[n][];
+		for(int i = 0; i < n; i++) {
+			ArrayList<VersionBitmap> grps = byFirst.get(i);
+			grps.sort((a, b) -> Integer.compare(_weights.get(b), _weights.get(a)));
+			_groupsByFirst[i] = grps.toArray(new VersionBitmap[0]);
+			_groupSizes[i] = new int[_groupsByFirst[i].length];
+			for(int k = 0; k < _groupSizes[i].length; k++) {
+				_groupSizes[i][k] = _weights.get(_groupsByFirst[i][k]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the largest signature size of the groups of several candidates
+	 * that start with a candidate and contain the specified versions.
+	 *
+	 * @param first first candidate of the groups
+	 * @param positions positions of the versions in the page index
+	 * @return largest signature size, 0 if there is no such group
+	 */
+	private int maxGroupSize(int first, VersionBitmap positions) {
+		for(int k = 0; k < _groupsByFirst[first].length; k++) {
+			if(_groupsByFirst[first][k].containsAll(positions)) {
+				return _groupSizes[first][k];
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Looks up the number of pages shared by all pairs of candidates within
+	 * the maximum distance (the smaller of both directions).
+	 */
+	private void computeMatches() {
+		int n = _candIdx.length;
+		_matches = new int[n][];
+		for(int i = 0; i < n; i++) {
+			SoftwareVersion v = _idvSigs[_candIdx[i]].getSoftwareVersions()[0];
+			int len = 0;
+			while((i + len + 1 < n) && (_candIdx[i + len + 1] - _candIdx[i] <= _maxDist)) {
+				len++;
+			}
+
+			_matches[i] = new int[len];
+			for(int k = 0; k < len; k++) {
+				SoftwareVersion u = _idvSigs[_candIdx[i + 1 + k]].getSoftwareVersions()[0];
+				_matches[i][k] = Math.min(_sim.numberOfMatches(v, u), _sim.numberOfMatches(u, v));
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of pages shared by two candidates within the maximum distance.
+	 *
+	 * @param i earlier candidate
+	 * @param j later candidate
+	 * @return number of shared pages
+	 */
+	private int matches(int i, int j) {
+		return _matches[i][j - i - 1];
+	}
+
+	/**
+	 * Returns the configuration found by {@link IterativeSimilarityGroupFinder}.
+	 *
+	 * @return group of each candidate (index of its first candidate)
+	 */
+	private int[] initialAssignment() {
+		int n = _candIdx.length;
+		int[] assign = new int[n];
+		for(int i = 0; i < n; i++) {
+			assign[i] = i;
+		}
+
+		IterativeSimilarityGroupFinder greedy = new IterativeSimilarityGroupFinder(_sw, _pagesize, _idvSigs, _sigsizeThresh, _maxDist);
+		for(SoftwareVersionGroup grp : greedy.findSignatureGroups()) {
+			SoftwareVersion[] versions = grp.toArray();
+			int first = -1;
+			for(SoftwareVersion sv : versions) {
+				int i = Arrays.binarySearch(_candIdx, sv.getOrdinal());
+				if(i >= 0) {
+					first = (first < 0) ? i : Math.min(first, i);
+				}
+			}
+			for(SoftwareVersion sv : versions) {
+				int i = Arrays.binarySearch(_candIdx, sv.getOrdinal());
+				if(i >= 0) {
+					assign[i] = first;
+				}
+			}
+		}
+		return assign;
+	}
+
+	/**
+	 * @param assign group of each candidate
+	 * @return total signature size of the groups of candidates
+	 */
+	private long configSum(int[] assign) {
+		int n = assign.length;
+		PageIndex idx = _sw.getPageIndex(_pagesize);
+		long sum = 0;
+		for(int i = 0; i < n; i++) {
+			if(assign[i] != i) {
+				continue;
+			}
+
+			VersionBitmap members = new VersionBitmap(idx.numberOfVersions());
+			int size = 0;
+			for(int j = i; j < n; j++) {
+				if(assign[j] == i) {
+					members.set(idx.getVersionPosition(_idvSigs[_candIdx[j]].getSoftwareVersions()[0]));
+					size++;
+				}
+			}
+			sum += (size == 1) ? _single[i] : _weights.getOrDefault(members, 0);
+		}
+		return sum;
+	}
+
+	/**
+	 * @param assign group of each candidate
+	 * @return number of groups of candidates
+	 */
+	private static long configGroups(int[] assign) {
+		long groups = 0;
+		for(int i = 0; i < assign.length; i++) {
+			if(assign[i] == i) {
+				groups++;
+			}
+		}
+		return groups;
+	}
+
+	/**
+	 * A group that later candidates may still join.
+	 */
+	private static class Group {
+		private int _first; // first candidate
+		private int[] _members; // candidates in ascending order
+		private VersionBitmap _positions; // positions of the members in the page index
+		private int _minMatch; // fewest pages shared by two members, MAX_VALUE for single candidates
+		private int _maxSize; // upper bound for the signature size of the group and all groups it may grow into
+
+		Group(int first, int[] members, VersionBitmap positions, int minMatch, int maxSize) {
+			_first = first;
+			_members = members;
+			_positions = positions;
+			_minMatch = minMatch;
+			_maxSize = maxSize;
+		}
+	}
+
+	/**
+	 * The search for the configuration maximising the parametric objective
+	 * for one value of lambda = sum / groups. To stay in integers, the
+	 * objective of a group of size s is 2 * (groups * s - sum).
+	 */
+	private class Search {
+		private long _sum;
+		private long _groupCount;
+		private long _nodeLimit;
+		private int[] _pos; // positions of the candidates in the page index
+		private int _numVersions;
+		private long[] _boundRest; // bound of the contribution of candidates i.. to new groups
+
+		private AtomicLong _nodes;
+		private AtomicLong _pruned;
+		private AtomicLong _closed; // groups evaluated since the last budget check
+		private DoubleAdder _prunedSubtrees; // proportion of the search space pruned
+		private volatile boolean _stopped;
+		private boolean _parallel;
+
+		// best configuration found so far, guarded by this
+		private volatile long _best;
+		private int[] _bestAssign;
+
+		Search(long sum, long groups, long target, long nodeLimit) {
+			_sum = sum;
+			_groupCount = groups;
+			_nodeLimit = nodeLimit;
+			_best = target;
+
+			PageIndex idx = _sw.getPageIndex(_pagesize);
+			int n = _candIdx.length;
+			_numVersions = idx.numberOfVersions();
+			_pos = new int[n];
+			for(int i = 0; i < n; i++) {
+				_pos[i] = idx.getVersionPosition(_idvSigs[_candIdx[i]].getSoftwareVersions()[0]);
+			}
+
+			// A candidate contributes at most its objective on its own or its
+			// share of the objective of a group of several candidates.
+			long[] share = new long[n];
+			for(int i = 0; i < n; i++) {
+				share[i] = Math.max(0, value(_single[i]));
+			}
+			for(int f = 0; f < n; f++) {
+				for(int k = 0; k < _groupsByFirst[f].length; k++) {
+					VersionBitmap members = _groupsByFirst[f][k];
+					int count = members.cardinality();
+					long groupShare = (value(_groupSizes[f][k]) + count - 1) / count;
+					for(int v = members.nextSetBit(0); v >= 0; v = members.nextSetBit(v + 1)) {
+						share[_candAt[v]] = Math.max(share[_candAt[v]], groupShare);
+					}
+				}
+			}
+			_boundRest = new long[n + 1];
+			for(int i = n - 1; i >= 0; i--) {
+				_boundRest[i] = _boundRest[i + 1] + share[i];
+			}
+
+			_nodes = new AtomicLong();
+			_pruned = new AtomicLong();
+			_closed = new AtomicLong();
+			_prunedSubtrees = new DoubleAdder();
+		}
+
+		/**
+		 * Runs the search and adds its statistics to those of the GroupFinder.
+		 *
+		 * @param pool pool to run the search on or null to run it sequentially
+		 */
+		void run(ForkJoinPool pool) {
+			int[] assign = new int[_candIdx.length];
+			List<Group> open = new ArrayList<Group>();
+			_parallel = (pool != null);
+			if(_parallel) {
+				pool.invoke(new Node(0, open, 0, assign, 1));
+			} else {
+				explore(0, open, 0, assign, 1);
+			}
+
+			countEvaluations(_closed.getAndSet(0));
+			budgetExhausted();
+			_nodesExplored += Math.min(_nodes.get(), _nodeLimit);
+			_nodesPruned += _pruned.get();
+			_prunedSpace += _prunedSubtrees.sum();
+			_iterations++;
+		}
+
+		/**
+		 * @param size signature size of a group
+		 * @return objective of the group
+		 */
+		long value(long size) {
+			return 2 * (_groupCount * size - _sum);
+		}
+
+		/**
+		 * Returns the objective of a group that no further candidate can join.
+		 *
+		 * @param g the group
+		 * @return objective of the group, Long.MIN_VALUE if it may not be formed
+		 */
+		long close(Group g) {
+			_closed.incrementAndGet();
+			if(g._members.length == 1) {
+				return value(_single[g._first]);
+			}
+			int size = _weights.getOrDefault(g._positions, 0);
+			return (size > 0) ? value(size) : Long.MIN_VALUE;
+		}
+
+		/**
+		 * Returns an upper bound for the objective of an open group and all
+		 * groups it may grow into.
+		 *
+		 * @param g the group
+		 * @return upper bound
+		 */
+		long bound(Group g) {
+			return value(g._maxSize);
+		}
+
+		/**
+		 * Records a configuration if it is better than the best one found so far.
+		 *
+		 * @param value objective of the configuration
+		 * @param assign group of each candidate
+		 */
+		synchronized void offer(long value, int[] assign) {
+			if(value > _best) {
+				_best = value;
+				_bestAssign = assign.clone();
+			}
+		}
+
+		/**
+		 * Records that a subtree has been pruned.
+		 *
+		 * @param space proportion of the search space in the subtree
+		 */
+		void prune(double space) {
+			_pruned.incrementAndGet();
+			_prunedSubtrees.add(space);
+		}
+
+		/**
+		 * Explores the subtree of a node.
+		 *
+		 * @param i next candidate to assign
+		 * @param open groups that candidate i may still join
+		 * @param closedValue objective of the groups that no candidate can join any more
+		 * @param assign group of each candidate (valid for the candidates before i)
+		 * @param space proportion of the search space in the subtree
+		 */
+		void explore(int i, List<Group> open, long closedValue, int[] assign, double space) {
+			if(_stopped) {
+				return;
+			}
+			long count = _nodes.incrementAndGet();
+			if(count > _nodeLimit) {
+				_nodeBudgetExhausted = true;
+				_stopped = true;
+				return;
+			}
+			if((count % BUDGET_CHECK_INTERVAL) == 0) {
+				synchronized(BranchAndBoundGroupFinder.this) {
+					countEvaluations(_closed.getAndSet(0));
+					if(budgetExhausted()) {
+						_stopped = true;
+						return;
+					}
+				}
+			}
+
+			// Evaluate the groups that candidate i is too far away to join.
+			int n = _candIdx.length;
+			List<Group> stillOpen = new ArrayList<Group>(open.size() + 1);
+			long value = closedValue;
+			for(Group g : open) {
+				if((i < n) && (_candIdx[i] - _candIdx[g._first] <= _maxDist)) {
+					stillOpen.add(g);
+					continue;
+				}
+				long v = close(g);
+				if(v == Long.MIN_VALUE) {
+					prune(space);
+					return;
+				}
+				value += v;
+			}
+
+			if(i == n) {
+				offer(value, assign);
+				return;
+			}
+
+			long bound = value + _boundRest[i];
+			for(Group g : stillOpen) {
+				bound += bound(g);
+			}
+			if(bound <= _best) {
+				prune(space);
+				return;
+			}
+
+			// Candidate i joins one of the open groups, those whose first
+			// version shares the most pages with it first, or opens a new one.
+			double childSpace = space / (stillOpen.size() + 1);
+			ArrayList<Integer> targets = new ArrayList<Integer>(); // group joined by candidate i in each child
+			ArrayList<List<Group>> children = new ArrayList<List<Group>>();
+			for(int k = 0; k < stillOpen.size(); k++) {
+				Group g = stillOpen.get(k);
+				int minMatch = g._minMatch;
+				for(int m : g._members) {
+					minMatch = Math.min(minMatch, matches(m, i));
+				}
+				if(minMatch == 0) {
+					// The group would have an empty signature.
+					prune(childSpace);
+					continue;
+				}
+				VersionBitmap positions = new VersionBitmap(g._positions);
+				positions.set(_pos[i]);
+				int maxSize = Math.min(minMatch, maxGroupSize(g._first, positions));
+				if(maxSize == 0) {
+					prune(childSpace);
+					continue;
+				}
+
+				int[] members = Arrays.copyOf(g._members, g._members.length + 1);
+				members[g._members.length] = i;
+				Group ng = new Group(g._first, members, positions, minMatch, maxSize);
+
+				List<Group> child = new ArrayList<Group>(stillOpen);
+				child.set(k, ng);
+				int pos = 0;
+				while((pos < targets.size()) && (matches(targets.get(pos), i) >= matches(g._first, i))) {
+					pos++;
+				}
+				targets.add(pos, g._first);
+				children.add(pos, child);
+			}
+
+			VersionBitmap positions = new VersionBitmap(_numVersions);
+			positions.set(_pos[i]);
+			List<Group> child = new ArrayList<Group>(stillOpen);
+			int maxSize = (_groupSizes[i].length > 0) ? Math.max(_single[i], _groupSizes[i][0]) : _single[i];
+			child.add(new Group(i, new int[] { i }, positions, Integer.MAX_VALUE, maxSize));
+			targets.add(i);
+			children.add(child);
+
+			if(_parallel && (i < PARALLEL_DEPTH)) {
+				Node[] nodes = new Node[children.size()];
+				for(int k = 0; k < nodes.length; k++) {
+					int[] childAssign = assign.clone();
+					childAssign[i] = targets.get(k);
+					nodes[k] = new Node(i + 1, children.get(k), value, childAssign, childSpace);
+				}
+				RecursiveAction.invokeAll(nodes);
+			} else {
+				for(int k = 0; k < children.size(); k++) {
+					assign[i] = targets.get(k);
+					explore(i + 1, children.get(k), value, assign, childSpace);
+				}
+			}
+		}
+
+		/**
+		 * A subtree explored as a task of its own.
+		 */
+		private class Node extends RecursiveAction {
+			private static final long serialVersionUID = 1L;
+
+			private int _i;
+			private List<Group> _open;
+			private long _closedValue;
+			private int[] _assign;
+			private double _space;
+
+			Node(int i, List<Group> open, long closedValue, int[] assign, double space) {
+				_i = i;
+				_open = open;
+				_closedValue = closedValue;
+				_assign = assign;
+				_space = space;
+			}
+
+			@Override
+			protected void compute() {
+				explore(_i, _open, _closedValue, _assign, _space);
+			}
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfig()
+	 */
+	@Override
+	public SoftwareVersionGroup[] getBestGroupConfig() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _groups.toArray(new SoftwareVersionGroup[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigSignatures()
+	 */
+	@Override
+	public VersionSignature[] getBestGroupConfigSignatures() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigs;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigAvgSigsize()
+	 */
+	@Override
+	public double getBestGroupConfigAvgSigsize() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigsizeAvg;
+	}
+
+}
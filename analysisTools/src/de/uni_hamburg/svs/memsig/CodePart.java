@@ -2,7 +2,12 @@ package de.uni_hamburg.svs.memsig;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.io.FileUtils;
 
@@ -15,26 +20,197 @@ import org.apache.commons.io.FileUtils;
  * the page size must be specified when calling methods where page size
  * influences the method's results.
  * 
+ * The contents can either be read onto the heap or be memory-mapped from
+ * the part file. In the latter case, page contents are only read when they
+ * are actually accessed.
+ * 
  * @author Jens Lindemann
  */
 public class CodePart implements Comparable<CodePart> {
 	private SoftwareVersion _swVersion;
 	// Software is available through _swVersion. Thus, we do not need a separate field here.
 	private String _partName;
-	private byte[] _bytes; // unpadded contents
+	private File _file;
+	private volatile ByteBuffer _buffer; // unpadded contents, either on the heap or mapped
+	private boolean _mapped;
+	private int _length;
+	private long _fingerprint; // fingerprint of the whole part
+	private ConcurrentHashMap<Integer, PageTable> _pageTables; // page size -> page metadata
 	
 	/**
-	 * Creates a new CodePart object.
+	 * Creates a new CodePart object. The contents are read onto the heap.
 	 * 
 	 * @param sv the SoftwareVersion the part belongs to
 	 * @param partName the part's name (e.g. the segment name)
 	 * @param partFile the File containing the part data
 	 */
 	public CodePart(SoftwareVersion sv, String partName, File partFile) {
+		this(sv, partName, partFile, false);
+	}
+	
+	/**
+	 * Creates a new CodePart object.
+	 * 
+	 * @param sv the SoftwareVersion the part belongs to
+	 * @param partName the part's name (e.g. the segment name)
+	 * @param partFile the File containing the part data
+	 * @param mapped true if the file is to be memory-mapped, false if it is to be read onto the heap
+	 */
+	public CodePart(SoftwareVersion sv, String partName, File partFile, boolean mapped) {
+		_partName = partName;
+		_swVersion = sv;
+		_file = partFile;
+		_mapped = mapped;
+		_pageTables = new ConcurrentHashMap<Integer, PageTable>();
+		
+		loadContents();
+		_fingerprint = PageFingerprint.of(_buffer, 0, _length);
+		getPageTable(sv.getPageSize());
+	}
+	
+	/**
+	 * Creates a new CodePart object whose metadata is already known, e.g. from
+	 * a {@link FingerprintFile}. The contents will only be read (or mapped)
+	 * from partFile when they are accessed for the first time.
+	 * 
+	 * @param sv the SoftwareVersion the part belongs to
+	 * @param partName the part's name (e.g. the segment name)
+	 * @param partFile the File containing the part data
+	 * @param mapped true if the file is to be memory-mapped, false if it is to be read onto the heap
+	 * @param length length of the part contents in bytes
+	 * @param fingerprint fingerprint of the whole part
+	 * @param pageTable page metadata for the page size of sv
+	 */
+	public CodePart(SoftwareVersion sv, String partName, File partFile, boolean mapped, int length, long fingerprint, PageTable pageTable) {
+		_partName = partName;
+		_swVersion = sv;
+		_file = partFile;
+		_mapped = mapped;
+		_pageTables = new ConcurrentHashMap<Integer, PageTable>();
+		
+		_length = length;
+		_fingerprint = fingerprint;
+		_pageTables.put(pageTable.getPageSize(), pageTable);
+	}
+	
+	/**
+	 * Creates a new CodePart object from contents that are already in memory,
+	 * e.g. a segment extracted from a binary by {@link ELFSegmentExtractor}.
+	 * The contents do not need to include the padding to the page size, as
+	 * bytes between the end of contents and length are treated as 0.
+	 * 
+	 * @param sv the SoftwareVersion the part belongs to
+	 * @param partName the part's name (e.g. the segment name)
+	 * @param contents the part data (without padding)
+	 * @param length length of the part in bytes (including padding)
+	 * @param partFile the File the part data has been written to, or null
+	 */
+	public CodePart(SoftwareVersion sv, String partName, ByteBuffer contents, int length, File partFile) {
 		_partName = partName;
 		_swVersion = sv;
+		_file = partFile;
+		_mapped = false;
+		_pageTables = new ConcurrentHashMap<Integer, PageTable>();
 		
-		readFromFile(partFile);
+		_buffer = contents;
+		_length = length;
+		_fingerprint = PageFingerprint.of(_buffer, 0, _length);
+		getPageTable(sv.getPageSize());
+	}
+	
+	/**
+	 * Returns the part contents, reading them from the part file if this
+	 * has not happened yet.
+	 * 
+	 * @return part contents
+	 */
+	private ByteBuffer buffer() {
+		ByteBuffer buf = _buffer;
+		if(buf == null) {
+			synchronized(this) {
+				if(_buffer == null) {
+					loadContents();
+				}
+				buf = _buffer;
+			}
+		}
+		return buf;
+	}
+	
+	/**
+	 * Reads or maps the part contents from the part file.
+	 */
+	private void loadContents() {
+		if(_mapped) {
+			mapFile(_file);
+		} else {
+			readFromFile(_file);
+		}
+	}
+	
+	/**
+	 * Returns the fingerprint of the whole part (without padding).
+	 * 
+	 * @return fingerprint of the part
+	 */
+	public long getFingerprint() {
+		return _fingerprint;
+	}
+	
+	/**
+	 * Returns the {@link PageTable} of the part for the specified page size.
+	 * The table for the page size of the part's {@link SoftwareVersion} is
+	 * computed when the part is created, tables for other page sizes on first use.
+	 * 
+	 * @param pageSize page size
+	 * @return page metadata
+	 */
+	public PageTable getPageTable(int pageSize) {
+		return _pageTables.computeIfAbsent(pageSize, ps -> PageTable.compute(buffer(), numberOfPages(ps), ps));
+	}
+	
+	/**
+	 * Returns the {@link PageFingerprint}s of all pages of the part. The returned
+	 * array must not be modified.
+	 * 
+	 * @param pageSize page size
+	 * @return fingerprints of all pages
+	 */
+	public long[] getPageFingerprints(int pageSize) {
+		return getPageTable(pageSize).getFingerprints();
+	}
+	
+	/**
+	 * Returns the {@link PageFingerprint} of a specific page of the part.
+	 * 
+	 * @param page index of the page
+	 * @param pageSize page size
+	 * @return fingerprint of the page
+	 */
+	public long getPageFingerprint(int page, int pageSize) {
+		return getPageTable(pageSize).getFingerprint(page);
+	}
+	
+	/**
+	 * Checks whether a specific page of the part contains only 0-bytes or
+	 * only 1-bytes. This is answered from the part's {@link PageTable}, i.e.
+	 * without accessing the page contents.
+	 * 
+	 * @param page index of the page
+	 * @param pageSize page size
+	 * @return true if the page contains only 0-bytes or only 1-bytes, false otherwise
+	 */
+	public boolean isTrivialPage(int page, int pageSize) {
+		return getPageTable(pageSize).isTrivial(page);
+	}
+	
+	/**
+	 * Returns the File containing the part data.
+	 * 
+	 * @return the part file or null if the part has not been written to a file
+	 */
+	public File getFile() {
+		return _file;
 	}
 	
 	/**
@@ -44,20 +220,55 @@ public class CodePart implements Comparable<CodePart> {
 	 */
 	private void readFromFile(File file) {
 		try {
-			_bytes = FileUtils.readFileToByteArray(file);
+			byte[] bytes = FileUtils.readFileToByteArray(file);
+			_length = bytes.length;
+			_buffer = ByteBuffer.wrap(bytes);
 		} catch (IOException e) {
 			System.err.println("Error when reading file " + file.getAbsolutePath());
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Maps the part contents from file into memory.
+	 * 
+	 * @param file File to map
+	 */
+	private void mapFile(File file) {
+		try(FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			// The mapping remains valid after the channel has been closed.
+			ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			_length = buf.limit();
+			_buffer = buf;
+		} catch (IOException e) {
+			System.err.println("Error when mapping file " + file.getAbsolutePath());
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Returns whether the part contents are memory-mapped.
+	 * 
+	 * @return true if the contents are memory-mapped, false if they are on the heap
+	 */
+	public boolean isMapped() {
+		return _mapped;
+	}
+	
 	/**
 	 * Returns the contents of the part without padding.
 	 * 
 	 * @return part bytes, unpadded
 	 */
 	public byte[] getBytes() {
-		return _bytes;
+		ByteBuffer buf = buffer();
+		if(buf.hasArray() && (buf.arrayOffset() == 0) && (buf.array().length == _length)) {
+			return buf.array();
+		}
+		
+		byte[] bytes = new byte[_length];
+		buf.duplicate().get(bytes, 0, buf.limit());
+		return bytes;
 	}
 	
 	/**
@@ -68,7 +279,10 @@ public class CodePart implements Comparable<CodePart> {
 	 * @return content bytes, padded to pageSize
 	 */
 	public byte[] getBytes(int pageSize) {
-		return Arrays.copyOfRange(_bytes, 0, this.numberOfPages(pageSize)*pageSize);
+		byte[] bytes = new byte[this.numberOfPages(pageSize)*pageSize];
+		ByteBuffer buf = buffer();
+		buf.duplicate().get(bytes, 0, buf.limit());
+		return bytes;
 	}
 	
 	/**
@@ -102,9 +316,14 @@ public class CodePart implements Comparable<CodePart> {
 	 * @return the specified {@link Page} from the part
 	 */
 	public Page getPage(int page, int pageSize) {
-		long pos = page*pageSize;
+		long pos = (long)page*pageSize;
+		if(_mapped) {
+			// Page contents will be read through the mapping when needed.
+			return new Page(this, pos, pageSize);
+		}
+		
 		byte[] bytes = getPageBytes(page, pageSize);
-		Page p = new Page(bytes, this, pos);
+		Page p = new Page(bytes, this, pos, getPageTable(pageSize));
 		return p;
 	}
 	
@@ -134,9 +353,53 @@ public class CodePart implements Comparable<CodePart> {
 	 * @return the specified page as byte[]
 	 */
 	public byte[] getPageBytes(int page, int pageSize) {
+		ByteBuffer buf = buffer().duplicate();
 		int from = page*pageSize;
-		int to = (page+1)*pageSize;
-		return Arrays.copyOfRange(_bytes, from, to);
+		int len = Math.max(0, Math.min(pageSize, buf.limit() - from));
+		
+		// The remainder of the last page is padding and thus 0. Pages that
+		// consist of padding only start beyond the limit of the buffer.
+		byte[] bytes = new byte[pageSize];
+		if(len > 0) {
+			buf.position(from);
+			buf.get(bytes, 0, len);
+		}
+		return bytes;
+	}
+	
+	/**
+	 * Checks whether the contents of a specific page of the part are equal
+	 * to the specified bytes. Unlike comparing the result of
+	 * {@link #getPageBytes(int, int)}, this does not copy the page.
+	 * 
+	 * @param page index of the page to compare
+	 * @param pageSize page size
+	 * @param bytes contents to compare the page to
+	 * @return true if contents are equal, false otherwise
+	 */
+	public boolean pageContentEquals(int page, int pageSize, byte[] bytes) {
+		if(bytes.length != pageSize) {
+			return false;
+		}
+		
+		ByteBuffer buf = buffer().duplicate();
+		int from = page*pageSize;
+		int len = Math.max(0, Math.min(pageSize, buf.limit() - from));
+		if(len > 0) {
+			buf.position(from);
+			buf.limit(from + len);
+			if(!buf.equals(ByteBuffer.wrap(bytes, 0, len))) {
+				return false;
+			}
+		}
+		
+		// The remainder of the last page is padding and thus 0.
+		for(int i = len; i < pageSize; i++) {
+			if(bytes[i] != 0) {
+				return false;
+			}
+		}
+		return true;
 	}
 	
 	/**
@@ -145,7 +408,7 @@ public class CodePart implements Comparable<CodePart> {
 	 * @return length of the part in bytes.
 	 */
 	public int getLength() {
-		return _bytes.length;
+		return _length;
 	}
 	
 	/**
@@ -155,8 +418,8 @@ public class CodePart implements Comparable<CodePart> {
 	 * @return the number of pages in the part
 	 */
 	public int numberOfPages(int pageSize) {
-		int numPages = _bytes.length / pageSize;
-		if((_bytes.length % pageSize) > 0) {
+		int numPages = _length / pageSize;
+		if((_length % pageSize) > 0) {
 			numPages++;
 		}
 		
@@ -171,9 +434,17 @@ public class CodePart implements Comparable<CodePart> {
 	 * @return true if contents are equal, false otherwise
 	 */
 	public boolean contentsEqualTo(CodePart o) {
-		// TODO Possible performance improvement: compute and store hash 
-		// when creating object, then compare hashes before the detailed comparison.
-		return Arrays.equals(_bytes, o._bytes);
+		if((_length != o._length) || (_fingerprint != o._fingerprint)) {
+			return false;
+		}
+		
+		ByteBuffer buf = buffer();
+		ByteBuffer obuf = o.buffer();
+		if(buf.limit() == obuf.limit()) {
+			return buf.duplicate().equals(obuf.duplicate());
+		}
+		// One of the parts is stored without its padding.
+		return Arrays.equals(getBytes(), o.getBytes());
 	}
 	
 	/**
@@ -184,14 +455,8 @@ public class CodePart implements Comparable<CodePart> {
 	 * @return true if an identical page is contained in the part, false otherwise
 	 */
 	public boolean pageContentIsInPart(Page o) {
-		Page[] pages = getPages(o.getPageSize());
-		for(Page p : pages) {
-			if(p.contentsEqualTo(o)) {
-				return true;
-			}
-		}
-		// ... else
-		return false;
+		PageIndex idx = _swVersion.getSoftware().getPageIndex(o.getPageSize());
+		return idx.partContainsPageContent(this, o);
 	}
 
 	@Override
@@ -222,4 +487,9 @@ public class CodePart implements Comparable<CodePart> {
 			}
 		}
 	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(_swVersion, _partName);
+	}
 }
@@ -0,0 +1,233 @@
+/**
+ * A {@link GroupFinder} implementation that finds the optimal group
+ * configuration under the restriction that every group is a contiguous
+ * range of candidates (in the canonical ordering of versions). The first
+ * and last version of a range may not be more than maxDist versions apart.
+ * As in the other GroupFinders, versions that are not candidates form groups
+ * of their own; they do not interrupt ranges of candidates. Ranges of
+ * several versions whose signature is empty are not considered, as such a
+ * group could not be detected at all (merging versions into a group without
+ * signature would otherwise raise the average by reducing the number of
+ * groups).
+ *
+ * The group configuration maximising the average signature size is found
+ * exactly. The signature sizes of all ranges are looked up in a
+ * {@link RangeSignatureIndex} over the candidates (the one cached by the
+ * Software if all versions are candidates). The
+ * best partition of the candidates into ranges is then found by dynamic
+ * programming. As the objective is a ratio (total signature size divided by
+ * the number of groups), the dynamic programme maximises the parametric
+ * objective total size - lambda * number of groups and lambda is updated to
+ * the average of the resulting configuration until it does not improve any
+ * more (Dinkelbach's method). All computations use integers, so that the
+ * result is exact. Each iteration takes O(n * (maxDist+1)) steps for n
+ * candidates, and only few iterations are needed in practice.
+ */
+package de.uni_hamburg.svs.memsig;
+
+import java.util.ArrayList;
+
+public class ContiguousGroupFinder extends GroupFinder {
+	ArrayList<SoftwareVersionGroup> _groups;
+	VersionSignature[] _sigs;
+	double _sigsizeAvg;
+
+	/**
+	 * Creates a new Object. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,double,int)}
+	 */
+	public ContiguousGroupFinder(Software sw, int pagesize, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, sigsizeThresh, maxDist);
+		_sigsizeAvg = -1;
+	}
+
+	/**
+	 * Creates a new Object using previously generated individual version
+	 * signatures. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,VersionSignature[],double,int)}
+	 */
+	public ContiguousGroupFinder(Software sw, int pagesize, VersionSignature[] idvSigs, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, idvSigs, sigsizeThresh, maxDist);
+		_sigsizeAvg = -1;
+	}
+
+	/**
+	 * Determines the signature sizes of all ranges of candidates that
+	 * satisfy the maximum distance.
+	 *
+	 * @param cands indices of the candidates (in ascending order)
+	 * @return sizes[a][l-1]: signature size of the range of l candidates starting at cands[a]
+	 */
+	int[][] computeRangeSizes(int[] cands) {
+		int n = cands.length;
+		SoftwareVersion[] candVersions = new SoftwareVersion[n];
+		for(int a = 0; a < n; a++) {
+			candVersions[a] = _idvSigs[cands[a]].getSoftwareVersions()[0];
+		}
+		// If all versions are candidates, the index of the Software can be reused.
+		RangeSignatureIndex rsi = (n == _sw.numberOfVersions()) ? _sw.getRangeSignatureIndex(_pagesize)
+				: new RangeSignatureIndex(_sw.getPageIndex(_pagesize), candVersions);
+
+		int[][] sizes = new int[n][];
+		for(int a = 0; a < n; a++) {
+			int len = 1;
+			while((a + len < n) && (cands[a + len] - cands[a] <= _maxDist)) {
+				len++;
+			}
+
+			sizes[a] = new int[len];
+			for(int l = 0; l < len; l++) {
+				sizes[a][l] = rsi.signatureSize(a, a + l);
+			}
+		}
+
+		return sizes;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#findSignatureGroups()
+	 */
+	@Override
+	public SoftwareVersionGroup[] findSignatureGroups() {
+		int[] cands = remainingCandidates();
+		int n = cands.length;
+
+		// Non-candidates always form groups of their own.
+		long fixedSum = 0;
+		for(int i = 0; i < _nonCands.length; i++) {
+			fixedSum += _idvSigs[_nonCands[i]].numberOfPages();
+		}
+		int fixedGroups = _nonCands.length;
+
+		int[][] sizes = computeRangeSizes(cands);
+
+		// Start with all candidates as individual groups.
+		int[] rangeLen = new int[n]; // rangeLen[i]: length of the range ending at candidate i (valid at range ends)
+		long sum = fixedSum;
+		for(int i = 0; i < n; i++) {
+			rangeLen[i] = 1;
+			sum += sizes[i][0];
+		}
+		long groups = fixedGroups + n;
+
+		// Dinkelbach iterations with lambda = sum / groups
+		long[] best = new long[n + 1];
+		int[] bestLen = new int[n + 1];
+		while(n > 0) {
+			// maximise sum_g (groups * size(g) - sum) over all partitions
+			best[0] = 0;
+			for(int i = 1; i <= n; i++) {
+				best[i] = Long.MIN_VALUE;
+				for(int l = 1; l <= i; l++) {
+					int a = i - l;
+					if(l > sizes[a].length) {
+						break;
+					}
+					if((l > 1) && (sizes[a][l - 1] == 0)) {
+						continue;
+					}
+					long val = best[a] + groups * sizes[a][l - 1] - sum;
+					if(val > best[i]) {
+						best[i] = val;
+						bestLen[i] = l;
+					}
+				}
+			}
+
+			// Non-candidates contribute groups * size - sum each as well.
+			long objective = best[n] + groups * fixedSum - (long)fixedGroups * sum;
+			if(objective <= 0) {
+				// The current configuration is optimal.
+				break;
+			}
+
+			long newSum = fixedSum;
+			long newGroups = fixedGroups;
+			for(int i = n; i > 0; i -= bestLen[i]) {
+				rangeLen[i - 1] = bestLen[i];
+				newSum += sizes[i - bestLen[i]][bestLen[i] - 1];
+				newGroups++;
+			}
+			sum = newSum;
+			groups = newGroups;
+		}
+
+		// Create groups and signatures in the order of their first versions.
+		ArrayList<Integer> ends = new ArrayList<Integer>();
+		for(int i = n - 1; i >= 0; i -= rangeLen[i]) {
+			ends.add(0, i);
+		}
+
+		_groups = new ArrayList<SoftwareVersionGroup>();
+		ArrayList<VersionSignature> sigs = new ArrayList<VersionSignature>();
+		int nc = 0;
+		int e = 0;
+		while((nc < _nonCands.length) || (e < ends.size())) {
+			int rangeStart = (e < ends.size()) ? (ends.get(e) - rangeLen[ends.get(e)] + 1) : -1;
+			if((e >= ends.size()) || ((nc < _nonCands.length) && (_nonCands[nc] < cands[rangeStart]))) {
+				sigs.add(_idvSigs[_nonCands[nc]]);
+				nc++;
+				continue;
+			}
+
+			int len = rangeLen[ends.get(e)];
+			if(len == 1) {
+				sigs.add(_idvSigs[cands[rangeStart]]);
+			} else {
+				SoftwareVersion[] grp = new SoftwareVersion[len];
+				for(int l = 0; l < len; l++) {
+					grp[l] = _idvSigs[cands[rangeStart + l]].getSoftwareVersions()[0];
+				}
+				sigs.add(_sw.generateVersionsSignature(grp, _pagesize));
+			}
+			e++;
+		}
+
+		_sigs = sigs.toArray(new VersionSignature[0]);
+		long sigsizeSum = 0;
+		for(int i = 0; i < _sigs.length; i++) {
+			sigsizeSum += _sigs[i].numberOfPages();
+			_groups.add(new SoftwareVersionGroup(_sigs[i].getSoftwareVersions()));
+		}
+		_sigsizeAvg = (double)sigsizeSum / _sigs.length;
+
+		return getBestGroupConfig();
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfig()
+	 */
+	@Override
+	public SoftwareVersionGroup[] getBestGroupConfig() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _groups.toArray(new SoftwareVersionGroup[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigSignatures()
+	 */
+	@Override
+	public VersionSignature[] getBestGroupConfigSignatures() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigs;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigAvgSigsize()
+	 */
+	@Override
+	public double getBestGroupConfigAvgSigsize() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigsizeAvg;
+	}
+
+}
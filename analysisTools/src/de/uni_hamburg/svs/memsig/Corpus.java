@@ -0,0 +1,218 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A corpus of several {@link Software}s whose signatures are to be unique
+ * against all of them. A page of one Software whose contents also occur in
+ * another Software of the corpus (e.g. code of a statically linked library
+ * or shared with another product) would cause false positives when the
+ * signature is used to detect a version, so such pages are marked as
+ * foreign in the Software's {@link PageIndex}. Foreign pages are excluded
+ * from all signatures and groups in the same way as pages that are shared
+ * with other versions of the same Software.
+ *
+ * The corpus keeps one index over the distinct page contents of all its
+ * Softwares, keyed by {@link PageFingerprint}. Each Software's own
+ * PageIndex already combines identical pages of its versions, so only one
+ * page per distinct content and Software has to be looked up when it is
+ * added. Matching fingerprints are verified as in {@link PageIndex}.
+ *
+ * The corpus is built for a single page size, which should be the page size
+ * the Softwares are analysed with.
+ */
+public class Corpus {
+	private int _pageSize;
+	private ArrayList<Software> _software;
+
+	private HashMap<Long, int[]> _fpContents; // fingerprint -> corpus content IDs
+	private ArrayList<PageLocation> _contentLocs; // corpus content ID -> location of one page with the content
+	private ArrayList<int[]> _contentOwners; // corpus content ID -> (software position, local content ID) pairs
+	private ArrayList<BitSet> _foreign; // software position -> local content IDs contained in other software
+	private int _numShared; // number of corpus contents contained in more than one software
+
+	/**
+	 * Creates a new, empty Corpus.
+	 *
+	 * @param pageSize page size
+	 */
+	public Corpus(int pageSize) {
+		_pageSize = pageSize;
+		_software = new ArrayList<Software>();
+		_fpContents = new HashMap<Long, int[]>();
+		_contentLocs = new ArrayList<PageLocation>();
+		_contentOwners = new ArrayList<int[]>();
+		_foreign = new ArrayList<BitSet>();
+	}
+
+	/**
+	 * Adds a {@link Software} to the corpus. Pages of the Software that are
+	 * contained in Softwares already in the corpus are marked as foreign in
+	 * the Software, and vice versa.
+	 *
+	 * @param sw {@link Software} to add
+	 */
+	public synchronized void addSoftware(Software sw) {
+		if(_software.contains(sw)) {
+			return;
+		}
+
+		int swPos = _software.size();
+		_software.add(sw);
+		BitSet foreign = new BitSet();
+		_foreign.add(foreign);
+		BitSet changedSoftware = new BitSet();
+
+		PageIndex idx = sw.getPageIndex(_pageSize);
+		for(int cid = 0; cid < idx.numberOfContents(); cid++) {
+			PageLocation loc = idx.getLocations(cid).get(0);
+			int corpusCid = addContent(loc, swPos, cid);
+
+			int[] owners = _contentOwners.get(corpusCid);
+			if(owners.length > 2) {
+				foreign.set(cid);
+				if(owners.length == 4) {
+					// first time the content is shared
+					_numShared++;
+				}
+				for(int o = 0; o < owners.length - 2; o += 2) {
+					if(!_foreign.get(owners[o]).get(owners[o + 1])) {
+						_foreign.get(owners[o]).set(owners[o + 1]);
+						changedSoftware.set(owners[o]);
+					}
+				}
+			}
+		}
+
+		sw.setForeignContents(_pageSize, foreign);
+		for(int s = changedSoftware.nextSetBit(0); s >= 0; s = changedSoftware.nextSetBit(s + 1)) {
+			_software.get(s).setForeignContents(_pageSize, _foreign.get(s));
+		}
+	}
+
+	/**
+	 * Adds a distinct page content of a Software to the index.
+	 *
+	 * @param loc location of a page with the content
+	 * @param swPos position of the Software in the corpus
+	 * @param localCid content ID in the Software's {@link PageIndex}
+	 * @return corpus content ID
+	 */
+	private int addContent(PageLocation loc, int swPos, int localCid) {
+		long fp = loc.getPart().getPageFingerprint(loc.getPageNumber(), _pageSize);
+
+		int[] cids = _fpContents.get(fp);
+		if(cids != null) {
+			byte[] bytes = loc.getPart().getPageBytes(loc.getPageNumber(), _pageSize);
+			for(int cid : cids) {
+				PageLocation cloc = _contentLocs.get(cid);
+				if(cloc.getPart().pageContentEquals(cloc.getPageNumber(), _pageSize, bytes)) {
+					int[] owners = _contentOwners.get(cid);
+					int[] nowners = new int[owners.length + 2];
+					System.arraycopy(owners, 0, nowners, 0, owners.length);
+					nowners[owners.length] = swPos;
+					nowners[owners.length + 1] = localCid;
+					_contentOwners.set(cid, nowners);
+					return cid;
+				}
+			}
+		}
+
+		// new content
+		int cid = _contentLocs.size();
+		_contentLocs.add(loc);
+		_contentOwners.add(new int[] { swPos, localCid });
+
+		if(cids == null) {
+			_fpContents.put(fp, new int[] { cid });
+		} else {
+			int[] ncids = new int[cids.length + 1];
+			System.arraycopy(cids, 0, ncids, 0, cids.length);
+			ncids[cids.length] = cid;
+			_fpContents.put(fp, ncids);
+		}
+
+		return cid;
+	}
+
+	/**
+	 * Returns the page size of the corpus.
+	 *
+	 * @return page size
+	 */
+	public int getPageSize() {
+		return _pageSize;
+	}
+
+	/**
+	 * Returns the Softwares in the corpus in the order they have been added.
+	 *
+	 * @return Softwares in the corpus
+	 */
+	public synchronized List<Software> getSoftware() {
+		return Collections.unmodifiableList(new ArrayList<Software>(_software));
+	}
+
+	/**
+	 * Returns the number of distinct page contents in the corpus.
+	 *
+	 * @return number of distinct page contents
+	 */
+	public synchronized int numberOfContents() {
+		return _contentLocs.size();
+	}
+
+	/**
+	 * Returns the number of distinct page contents that are contained in more
+	 * than one Software.
+	 *
+	 * @return number of shared page contents
+	 */
+	public synchronized int numberOfSharedContents() {
+		return _numShared;
+	}
+
+	/**
+	 * Returns the number of distinct page contents of a Software that are
+	 * also contained in other Softwares of the corpus.
+	 *
+	 * @param sw {@link Software} in the corpus
+	 * @return number of foreign page contents or -1 if sw is not in the corpus
+	 */
+	public synchronized int numberOfForeignContents(Software sw) {
+		int swPos = _software.indexOf(sw);
+		return (swPos < 0) ? -1 : _foreign.get(swPos).cardinality();
+	}
+
+	/**
+	 * Returns the Softwares of the corpus that contain a page with the same
+	 * contents as p.
+	 *
+	 * @param p {@link Page} to search for
+	 * @return Softwares containing the page contents
+	 */
+	public synchronized List<Software> findSoftwareContaining(Page p) {
+		ArrayList<Software> res = new ArrayList<Software>();
+		int[] cids = _fpContents.get(p.getFingerprint());
+		if((cids == null) || (p.getPageSize() != _pageSize)) {
+			return res;
+		}
+
+		byte[] bytes = p.getBytes();
+		for(int cid : cids) {
+			PageLocation cloc = _contentLocs.get(cid);
+			if(cloc.getPart().pageContentEquals(cloc.getPageNumber(), _pageSize, bytes)) {
+				int[] owners = _contentOwners.get(cid);
+				for(int o = 0; o < owners.length; o += 2) {
+					res.add(_software.get(owners[o]));
+				}
+				break;
+			}
+		}
+		return res;
+	}
+}
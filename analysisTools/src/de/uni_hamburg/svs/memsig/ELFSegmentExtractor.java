@@ -5,6 +5,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 
 import nl.lxtreme.binutils.elf.Elf;
 import nl.lxtreme.binutils.elf.ProgramHeader;
@@ -124,6 +125,64 @@ public class ELFSegmentExtractor {
 		}
 	}
 	
+	/**
+	 * Extracts all loadable segments from the binary as {@link CodePart}s of
+	 * the specified version. The parts are backed directly by the segment
+	 * buffers read from the binary, i.e. they do not need to be read back
+	 * from files. Padding to the page size is not stored, but treated as 0.
+	 * 
+	 * If outputPath is not null, every segment is additionally written to an
+	 * individual (padded) file in outputPath, as done by {@link #split(File)}.
+	 * 
+	 * @param sv {@link SoftwareVersion} the parts belong to
+	 * @param outputPath path that the segment files will be saved to, or null
+	 * 					 if no files are to be written
+	 * @return the loadable segments as CodeParts
+	 */
+	public ArrayList<CodePart> extractParts(SoftwareVersion sv, File outputPath) {
+		ArrayList<CodePart> parts = new ArrayList<CodePart>();
+		try {
+			if(outputPath != null) {
+				outputPath.mkdirs();
+			}
+			
+			for(int i = 0; i < elf.programHeaders.length; i++) {
+				ProgramHeader ph = elf.programHeaders[i];
+				if(!ph.type.equals(SegmentType.LOAD)) {
+					continue;
+				}
+				
+				ByteBuffer segBuffer = elf.getSegment(ph).slice();
+				int buflen = segBuffer.remaining();
+				
+				// padding to page size
+				int missingBytes = 0;
+				int mod = buflen % _pageSize;
+				if(mod > 0) {
+					missingBytes = _pageSize - mod;
+				}
+				int partlen = buflen + missingBytes;
+				
+				String partName = i + ".seg";
+				File partFile = null;
+				if(outputPath != null) {
+					partFile = new File(outputPath, partName);
+					try(FileOutputStream sos = new FileOutputStream(partFile)) {
+						sos.getChannel().write(segBuffer.duplicate());
+						sos.write(new byte[missingBytes]);
+					}
+				}
+				
+				parts.add(new CodePart(sv, partName, segBuffer, partlen, partFile));
+			}
+		} catch (IOException e) {
+			System.err.println("I/O error " + e.getMessage());
+			e.printStackTrace();
+		}
+		
+		return parts;
+	}
+	
 	/**
 	 * Gets the contents of the segment identified by a specific {@link ProgramHeader}.
 	 * 
@@ -0,0 +1,213 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+
+/**
+ * Reads and writes the fingerprint file of a {@link SoftwareVersion}. For
+ * every {@link CodePart} in the version's parts directory, the file stores
+ * the size and modification time of the part file, the fingerprint of the
+ * whole part and its {@link PageTable} (page fingerprints and all-0/all-1
+ * flags). If the file is valid, the version can be loaded without reading
+ * the part contents.
+ *
+ * The file is stored as fingerprints-&lt;pagesize&gt;.bin next to the
+ * parts-&lt;pagesize&gt; directory. It has the following layout (all
+ * numbers big-endian):
+ *
+ * <pre>
+ * int     magic ("MSFP")
+ * int     format version
+ * int     page size
+ * int     number of parts
+ * for each part:
+ *   UTF   part name
+ *   long  part file size
+ *   long  part file modification time
+ *   long  part fingerprint
+ *   int   index of the part's first page within the version
+ *   int   number of pages n
+ *   long  page fingerprints[n]
+ *   byte  page flags[n] (bit 0: all-0, bit 1: all-1)
+ * </pre>
+ */
+public class FingerprintFile {
+	private static final int MAGIC = 0x4D534650; // "MSFP"
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int FLAG_ALL0 = 1;
+	private static final int FLAG_ALL1 = 2;
+
+	/**
+	 * Metadata of a single {@link CodePart} as stored in a fingerprint file.
+	 */
+	public static class PartEntry {
+		private int _length;
+		private long _fingerprint;
+		private PageTable _pageTable;
+
+		PartEntry(int length, long fingerprint, PageTable pageTable) {
+			_length = length;
+			_fingerprint = fingerprint;
+			_pageTable = pageTable;
+		}
+
+		/**
+		 * @return length of the part in bytes
+		 */
+		public int getLength() {
+			return _length;
+		}
+
+		/**
+		 * @return fingerprint of the whole part
+		 */
+		public long getFingerprint() {
+			return _fingerprint;
+		}
+
+		/**
+		 * @return the part's {@link PageTable}
+		 */
+		public PageTable getPageTable() {
+			return _pageTable;
+		}
+	}
+
+	private FingerprintFile() {
+		// static methods only
+	}
+
+	/**
+	 * Returns the fingerprint file for a version directory and page size.
+	 *
+	 * @param versionDir directory of the version
+	 * @param pageSize page size
+	 * @return the fingerprint file
+	 */
+	public static File getFile(File versionDir, int pageSize) {
+		return new File(versionDir, "fingerprints-" + pageSize + ".bin");
+	}
+
+	/**
+	 * Writes the fingerprint file for the specified parts.
+	 *
+	 * @param f file to write to
+	 * @param parts {@link CodePart}s of the version, in order
+	 * @param pageSize page size
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File f, Collection<CodePart> parts, int pageSize) throws IOException {
+		File tmp = AtomicFile.tempFile(f);
+		try(DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			os.writeInt(MAGIC);
+			os.writeInt(FORMAT_VERSION);
+			os.writeInt(pageSize);
+			os.writeInt(parts.size());
+
+			int firstPage = 0;
+			for(CodePart part : parts) {
+				PageTable table = part.getPageTable(pageSize);
+				int numPages = table.numberOfPages();
+
+				os.writeUTF(part.getName());
+				os.writeLong(part.getFile().length());
+				os.writeLong(part.getFile().lastModified());
+				os.writeLong(part.getFingerprint());
+				os.writeInt(firstPage);
+				os.writeInt(numPages);
+				for(int i = 0; i < numPages; i++) {
+					os.writeLong(table.getFingerprint(i));
+				}
+				for(int i = 0; i < numPages; i++) {
+					int flags = 0;
+					if(table.isAllZeroes(i)) flags |= FLAG_ALL0;
+					if(table.isAllOnes(i)) flags |= FLAG_ALL1;
+					os.writeByte(flags);
+				}
+
+				firstPage += numPages;
+			}
+		}
+		AtomicFile.replace(tmp, f);
+	}
+
+	/**
+	 * Reads a fingerprint file. The file is only considered valid if it was
+	 * written for the same page size and if it describes exactly the specified
+	 * part files with their current sizes and modification times.
+	 *
+	 * @param f file to read
+	 * @param partFiles part files of the version
+	 * @param pageSize page size
+	 * @return metadata of all parts by part name or null if the file does not exist or is not valid
+	 */
+	public static HashMap<String, PartEntry> read(File f, File[] partFiles, int pageSize) {
+		if(!f.exists()) {
+			return null;
+		}
+
+		HashMap<String, File> files = new HashMap<String, File>();
+		for(File pf : partFiles) {
+			files.put(pf.getName(), pf);
+		}
+
+		HashMap<String, PartEntry> entries = new HashMap<String, PartEntry>();
+		try(DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+			if((is.readInt() != MAGIC) || (is.readInt() != FORMAT_VERSION) || (is.readInt() != pageSize)) {
+				return null;
+			}
+
+			int numParts = is.readInt();
+			if(numParts != partFiles.length) {
+				return null;
+			}
+
+			for(int p = 0; p < numParts; p++) {
+				String name = is.readUTF();
+				long length = is.readLong();
+				long mtime = is.readLong();
+				long fingerprint = is.readLong();
+				is.readInt(); // first page, not needed for loading
+				int numPages = is.readInt();
+
+				File pf = files.get(name);
+				if((pf == null) || (pf.length() != length) || (pf.lastModified() != mtime)) {
+					return null;
+				}
+				if(numPages != (length + pageSize - 1) / pageSize) {
+					return null;
+				}
+
+				long[] fps = new long[numPages];
+				for(int i = 0; i < numPages; i++) {
+					fps[i] = is.readLong();
+				}
+				BitSet zeroes = new BitSet(numPages);
+				BitSet ones = new BitSet(numPages);
+				for(int i = 0; i < numPages; i++) {
+					int flags = is.readByte();
+					if((flags & FLAG_ALL0) != 0) zeroes.set(i);
+					if((flags & FLAG_ALL1) != 0) ones.set(i);
+				}
+
+				PageTable table = new PageTable(pageSize, fps, zeroes, ones);
+				entries.put(name, new PartEntry((int)length, fingerprint, table));
+			}
+		} catch (IOException e) {
+			System.err.println("Warning: Could not read fingerprint file " + f.getAbsolutePath() + ", recomputing fingerprints.");
+			return null;
+		}
+
+		return entries;
+	}
+}
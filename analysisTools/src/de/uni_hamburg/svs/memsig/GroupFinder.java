@@ -4,28 +4,55 @@
  * configurations for use in memory deduplication side-channel attacks to
  * detect application versions in co-resident virtual machines.
  * 
+ * Group finders may support a budget (wall-clock time or number of group
+ * signature evaluations). Once it is exhausted, the remaining candidates
+ * form groups of their own, so that the best configuration found so far is
+ * returned. They may also periodically write their state (the remaining
+ * candidates and the groups formed so far) to a checkpoint file, from which
+ * a later run with the same parameters can continue.
+ * 
  * @author Jens Lindemann
  */
 
 package de.uni_hamburg.svs.memsig;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.TreeSet;
-
-import org.apache.commons.lang3.ArrayUtils;
+import java.util.Arrays;
+import java.util.List;
 
 public abstract class GroupFinder {
 	Software _sw;
 	int _pagesize;
 	
+	VersionSimilarity _sim;
 	VersionSignature[] _idvSigs;
 	double _sigsizeThresh;
 	int _maxDist;
 	
-	ArrayList<Integer> _candList;
+	// Versions are identified by the index of their individual signature,
+	// which is their ordinal.
+	VersionBitmap _cands; // candidates not assigned to a group yet
 	int[] _nonCands;
 	
+	// budget
+	private long _timeBudgetMs = -1;
+	private long _evalBudget = -1;
+	private long _startTime;
+	private long _evaluations;
+	private boolean _budgetExhausted;
+	
+	// checkpointing
+	private File _checkpointFile;
+	private long _checkpointIntervalMs;
+	private long _lastCheckpoint;
+	private int _resumedGroups = -1; // groups restored from the checkpoint, -1 if not resumed
+	private int _resumedCandidates;
+	
 	/**
 	 * @param sw {@link Software} that groups are being formed for
 	 * @param pagesize page size in bytes
@@ -42,10 +69,36 @@ public abstract class GroupFinder {
 		_sigsizeThresh = sigsizeThresh;
 		_maxDist = maxDist;
 		
+		_sim = _sw.getVersionSimilarity(_pagesize);
 		_idvSigs = _sw.generateVersionSignatures(_pagesize);
 		findCandidates(sigsizeThresh);
 	}
 	
+	/**
+	 * Creates a GroupFinder using previously generated individual version
+	 * signatures. This allows several GroupFinders (e.g. for different
+	 * parameters) to share the signatures instead of generating them again.
+	 * 
+	 * @param sw {@link Software} that groups are being formed for
+	 * @param pagesize page size in bytes
+	 * @param idvSigs individual signatures of all versions of sw, as returned
+	 * 				  by {@link Software#generateVersionSignatures(int)}. The
+	 * 				  signatures will not be modified.
+	 * @param sigsizeThresh Threshold for individual version signature size
+	 * @param maxDist Maximum distance between first and last version in a group
+	 */
+	public GroupFinder(Software sw, int pagesize, VersionSignature[] idvSigs, double sigsizeThresh, int maxDist) {
+		_sw = sw;
+		_pagesize = pagesize;
+		
+		_sigsizeThresh = sigsizeThresh;
+		_maxDist = maxDist;
+		
+		_sim = _sw.getVersionSimilarity(_pagesize);
+		_idvSigs = idvSigs;
+		findCandidates(sigsizeThresh);
+	}
+	
 	/**
 	 * Identifies suitable candidates for forming groups according to the 
 	 * specified threshold for individual version signatures: If the proportion
@@ -56,24 +109,396 @@ public abstract class GroupFinder {
 	 * @param sigsizeThreshold threshold for individual version signature size
 	 */
 	private void findCandidates(double sigsizeThreshold) {
-		TreeSet<Integer> candTreeSet = new TreeSet<Integer>(); 
-		TreeSet<Integer> nonCandSet = new TreeSet<Integer>();
+		_cands = new VersionBitmap(_idvSigs.length);
+		int[] nonCands = new int[_idvSigs.length];
+		int numNonCands = 0;
 		for(int i = 0; i < _idvSigs.length; i++) {
 			VersionSignature is = _idvSigs[i];
 			if(is.numberOfPages() < (is.getSoftwareVersions()[0].numberOfPages(_pagesize) * sigsizeThreshold)) {
-				candTreeSet.add(i);
+				_cands.set(i);
 			} else {
-				nonCandSet.add(i);
+				nonCands[numNonCands++] = i;
 			}
 		}
 		
-		_candList = new ArrayList<Integer>();
-		Iterator<Integer> candIt = candTreeSet.iterator();
-		while(candIt.hasNext()) {
-			_candList.add(candIt.next());
+		_nonCands = Arrays.copyOf(nonCands, numNonCands);
+	}
+	
+	/**
+	 * Returns the candidates not assigned to a group yet.
+	 * 
+	 * @return indices of the candidates in ascending order
+	 */
+	int[] remainingCandidates() {
+		int[] cands = new int[_cands.cardinality()];
+		int i = 0;
+		for(int c = _cands.nextSetBit(0); c >= 0; c = _cands.nextSetBit(c + 1)) {
+			cands[i++] = c;
 		}
+		return cands;
+	}
+	
+	/**
+	 * Sets a wall-clock time budget for finding groups.
+	 * 
+	 * @param ms time budget in milliseconds (negative for no budget)
+	 */
+	public void setTimeBudget(long ms) {
+		_timeBudgetMs = ms;
+	}
+	
+	/**
+	 * Sets a budget for the number of group signatures evaluated while
+	 * finding groups.
+	 * 
+	 * @param evaluations evaluation budget (negative for no budget)
+	 */
+	public void setEvaluationBudget(long evaluations) {
+		_evalBudget = evaluations;
+	}
+	
+	/**
+	 * Sets a file to which the state of the search is written periodically.
+	 * If the file already exists when groups are found, the search continues
+	 * from the state stored in it.
+	 * 
+	 * @param f checkpoint file
+	 * @param intervalMs minimum time between two checkpoints in milliseconds
+	 */
+	public void setCheckpointFile(File f, long intervalMs) {
+		_checkpointFile = f;
+		_checkpointIntervalMs = intervalMs;
+	}
+	
+	/**
+	 * Returns whether the implementation honours the budgets set by
+	 * {@link #setTimeBudget(long)} and {@link #setEvaluationBudget(long)}.
+	 * 
+	 * @return true if budgets are supported, false otherwise
+	 */
+	public boolean supportsBudget() {
+		return false;
+	}
+	
+	/**
+	 * Returns whether the implementation writes and resumes from the
+	 * checkpoint file set by {@link #setCheckpointFile(File, long)}.
+	 * 
+	 * @return true if checkpoints are supported, false otherwise
+	 */
+	public boolean supportsCheckpoint() {
+		return false;
+	}
+	
+	/**
+	 * Returns whether the budget was exhausted before all candidates could
+	 * be considered for groups.
+	 * 
+	 * @return true if the budget was exhausted, false otherwise
+	 */
+	public boolean isBudgetExhausted() {
+		return _budgetExhausted;
+	}
+	
+	/**
+	 * Returns the number of group signatures evaluated.
+	 * 
+	 * @return number of evaluations
+	 */
+	public long getEvaluations() {
+		return _evaluations;
+	}
+	
+	/**
+	 * Returns whether the last search was resumed from a checkpoint file.
+	 * 
+	 * @return true if the search was resumed, false otherwise
+	 */
+	public boolean isResumed() {
+		return _resumedGroups >= 0;
+	}
+	
+	/**
+	 * Returns the number of groups restored from the checkpoint file when
+	 * the last search was resumed.
+	 * 
+	 * @return number of restored groups, -1 if the search was not resumed
+	 */
+	public int getResumedGroups() {
+		return _resumedGroups;
+	}
+	
+	/**
+	 * Returns the number of candidates that remained to be assigned to
+	 * groups when the last search was resumed from a checkpoint file.
+	 * 
+	 * @return number of remaining candidates, 0 if the search was not resumed
+	 */
+	public int getResumedCandidates() {
+		return _resumedCandidates;
+	}
+	
+	/**
+	 * Starts the budget and, if a checkpoint file exists, restores the state
+	 * of the search from it. To be called at the start of
+	 * findSignatureGroups() by implementations supporting budgets.
+	 * 
+	 * @return groups formed before the checkpoint was written (as indices of
+	 * 			individual version signatures), empty if there is no checkpoint
+	 * @throws IllegalStateException if the checkpoint cannot be read or was
+	 * 			written by a different algorithm or for different parameters
+	 */
+	List<int[]> startSearch() {
+		startBudget();
+		_resumedGroups = -1;
+		_resumedCandidates = 0;
 		
-		_nonCands = ArrayUtils.toPrimitive(nonCandSet.toArray(new Integer[0]));
+		ArrayList<int[]> groups = new ArrayList<int[]>();
+		if((_checkpointFile != null) && _checkpointFile.exists()) {
+			try {
+				groups = readState(_checkpointFile);
+				_resumedGroups = groups.size();
+				_resumedCandidates = _cands.cardinality();
+			} catch (IOException e) {
+				// Starting from scratch would overwrite the checkpoint.
+				throw new IllegalStateException("Cannot resume from checkpoint " + _checkpointFile + ": " + e.getMessage(), e);
+			}
+		}
+		return groups;
+	}
+	
+	/**
+	 * Starts the budget (without restoring a checkpoint).
+	 */
+	void startBudget() {
+		_startTime = System.currentTimeMillis();
+		_lastCheckpoint = _startTime;
+		_evaluations = 0;
+		_budgetExhausted = false;
+	}
+	
+	/**
+	 * Checks whether a time or evaluation budget has been set.
+	 * 
+	 * @return true if a budget has been set, false otherwise
+	 */
+	boolean hasBudget() {
+		return (_timeBudgetMs >= 0) || (_evalBudget >= 0);
+	}
+	
+	/**
+	 * Returns the proportion of the budget that has been used (the larger
+	 * one if both a time and an evaluation budget have been set).
+	 * 
+	 * @return proportion of the budget used (between 0 and 1), 0 if no
+	 * 			budget has been set
+	 */
+	double budgetProgress() {
+		double progress = 0;
+		if(_evalBudget > 0) {
+			progress = Math.max(progress, (double)_evaluations / _evalBudget);
+		}
+		if(_timeBudgetMs > 0) {
+			progress = Math.max(progress, (double)(System.currentTimeMillis() - _startTime) / _timeBudgetMs);
+		}
+		return Math.min(progress, 1);
+	}
+	
+	/**
+	 * Returns the number of group signatures that may still be evaluated
+	 * before the evaluation budget is exhausted.
+	 * 
+	 * @return remaining evaluations, Long.MAX_VALUE if no evaluation budget
+	 * 			has been set
+	 */
+	long remainingEvaluations() {
+		if(_evalBudget < 0) {
+			return Long.MAX_VALUE;
+		}
+		return Math.max(0, _evalBudget - _evaluations);
+	}
+	
+	/**
+	 * Records that group signatures have been evaluated.
+	 * 
+	 * @param evaluations number of evaluations
+	 */
+	void countEvaluations(long evaluations) {
+		_evaluations += evaluations;
+	}
+	
+	/**
+	 * Checks whether the budget is exhausted.
+	 * 
+	 * @return true if the budget is exhausted, false otherwise
+	 */
+	boolean budgetExhausted() {
+		if(!_budgetExhausted) {
+			if((_evalBudget >= 0) && (_evaluations >= _evalBudget)) {
+				_budgetExhausted = true;
+			} else if((_timeBudgetMs >= 0) && ((System.currentTimeMillis() - _startTime) >= _timeBudgetMs)) {
+				_budgetExhausted = true;
+			}
+		}
+		return _budgetExhausted;
+	}
+	
+	/**
+	 * Writes a checkpoint if a checkpoint file is set and the checkpoint
+	 * interval has passed since the last one.
+	 * 
+	 * @param groups groups formed so far (as indices of individual version signatures)
+	 * @param force write the checkpoint regardless of the interval
+	 */
+	void checkpoint(List<int[]> groups, boolean force) {
+		if(_checkpointFile == null) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		if(!force && ((now - _lastCheckpoint) < _checkpointIntervalMs)) {
+			return;
+		}
+		
+		// A job killed while writing does not destroy the previous checkpoint.
+		File tmp = AtomicFile.tempFile(_checkpointFile);
+		try {
+			writeState(tmp, groups);
+			AtomicFile.replace(tmp, _checkpointFile);
+		} catch (IOException e) {
+			System.err.println("Could not write checkpoint " + _checkpointFile);
+			e.printStackTrace();
+		}
+		_lastCheckpoint = now;
+	}
+	
+	/**
+	 * Writes the state of the search (algorithm, parameters, remaining
+	 * candidates and groups formed so far) to a text file.
+	 * 
+	 * @param f file to write to
+	 * @param groups groups formed so far (as indices of individual version signatures)
+	 * @throws IOException if the file cannot be written
+	 */
+	void writeState(File f, List<int[]> groups) throws IOException {
+		String sep = MemSigs.sep;
+		try(PrintWriter writer = new PrintWriter(f)) {
+			writer.write("algorithm" + sep + getClass().getSimpleName() + "\n");
+			writer.write("software" + sep + _sw.getName() + "\n");
+			writer.write("pagesize" + sep + _pagesize + "\n");
+			writer.write("thresh" + sep + _sigsizeThresh + "\n");
+			writer.write("maxDist" + sep + _maxDist + "\n");
+			writer.write("versions" + sep + _idvSigs.length + "\n");
+			
+			writer.write("remaining");
+			for(int idx : remainingCandidates()) {
+				writer.write(sep + idx);
+			}
+			writer.write("\n");
+			
+			for(int[] group : groups) {
+				writer.write("group");
+				for(int idx : group) {
+					writer.write(sep + idx);
+				}
+				writer.write("\n");
+			}
+			
+			if(writer.checkError()) {
+				throw new IOException("Error writing " + f);
+			}
+		}
+	}
+	
+	/**
+	 * Restores the state of the search from a file written by
+	 * {@link #writeState(File, List)}. The algorithm and parameters stored in
+	 * the file must match those of this GroupFinder.
+	 * 
+	 * @param f file to read
+	 * @return groups formed so far (as indices of individual version signatures)
+	 * @throws IOException if the file cannot be read or does not match the algorithm or parameters
+	 */
+	ArrayList<int[]> readState(File f) throws IOException {
+		String sep = MemSigs.sep;
+		String algorithm = null;
+		VersionBitmap remaining = null;
+		ArrayList<int[]> groups = new ArrayList<int[]>();
+		
+		try(BufferedReader reader = new BufferedReader(new FileReader(f))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				String[] fields = line.split(sep);
+				String expected = null;
+				switch(fields[0]) {
+				case "algorithm":
+					algorithm = (fields.length > 1) ? fields[1] : "";
+					expected = getClass().getSimpleName();
+					break;
+				case "software":
+					expected = _sw.getName();
+					break;
+				case "pagesize":
+					expected = Integer.toString(_pagesize);
+					break;
+				case "thresh":
+					expected = Double.toString(_sigsizeThresh);
+					break;
+				case "maxDist":
+					expected = Integer.toString(_maxDist);
+					break;
+				case "versions":
+					expected = Integer.toString(_idvSigs.length);
+					break;
+				case "remaining":
+					remaining = new VersionBitmap(_idvSigs.length);
+					for(int i = 1; i < fields.length; i++) {
+						remaining.set(parseIndex(fields[i]));
+					}
+					break;
+				case "group":
+					int[] group = new int[fields.length - 1];
+					for(int i = 1; i < fields.length; i++) {
+						group[i - 1] = parseIndex(fields[i]);
+					}
+					groups.add(group);
+					break;
+				default:
+					throw new IOException("Invalid line in " + f + ": " + line);
+				}
+				
+				if((expected != null) && ((fields.length != 2) || !fields[1].equals(expected))) {
+					throw new IOException("Checkpoint " + f + " does not match the algorithm or parameters (" + line + ", expected " + expected + ")");
+				}
+			}
+		}
+		
+		if(algorithm == null) {
+			throw new IOException("No algorithm in " + f);
+		}
+		if(remaining == null) {
+			throw new IOException("No remaining candidates in " + f);
+		}
+		_cands = remaining;
+		return groups;
+	}
+	
+	/**
+	 * Parses the index of an individual version signature.
+	 * 
+	 * @param s String to parse
+	 * @return the index
+	 * @throws IOException if s is not a valid index
+	 */
+	private int parseIndex(String s) throws IOException {
+		try {
+			int idx = Integer.parseInt(s);
+			if((idx < 0) || (idx >= _idvSigs.length)) {
+				throw new IOException("Invalid version index: " + s);
+			}
+			return idx;
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid version index: " + s, e);
+		}
 	}
 	
 	/**
@@ -0,0 +1,238 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Runs a {@link GroupFinder} for all combinations of a set of thresholds
+ * and maximum distances on the same {@link Software}. The individual
+ * version signatures and the {@link VersionSimilarity} of the Software are
+ * computed only once and shared by all runs, and the runs can be executed
+ * in parallel.
+ */
+public class GroupFinderSweep {
+	private Software _sw;
+	private int _pagesize;
+	private String _algorithm;
+	private double[] _thresholds;
+	private int[] _maxDists;
+
+	// results, indexed by combination (threshold-major)
+	private double[] _avgSigsize;
+	private int[] _numGroups;
+	private long[] _runtimeMs;
+
+	/**
+	 * Creates a new GroupFinderSweep.
+	 *
+	 * @param sw {@link Software} that groups are being formed for
+	 * @param pagesize page size in bytes
+	 * @param algorithm group finding algorithm (as for the -falg CLI option)
+	 * @param thresholds thresholds for individual version signature size
+	 * @param maxDists maximum distances between first and last version in a group
+	 */
+	public GroupFinderSweep(Software sw, int pagesize, String algorithm, double[] thresholds, int[] maxDists) {
+		_sw = sw;
+		_pagesize = pagesize;
+		_algorithm = algorithm;
+		_thresholds = thresholds;
+		_maxDists = maxDists;
+	}
+
+	/**
+	 * Checks whether the sweep supports the specified group finding algorithm.
+	 *
+	 * @param algorithm name of the algorithm
+	 * @return true if the algorithm is supported, false otherwise
+	 */
+	public static boolean supportsAlgorithm(String algorithm) {
+		return algorithm.equals("similarity-maxsigsize") || algorithm.equals("neighbour-maxgrpsize") || algorithm.equals("contiguous-optimal")
+				|| algorithm.equals("branchbound-maxsigsize") || algorithm.equals("annealing-maxsigsize");
+	}
+
+	/**
+	 * Creates the GroupFinder for one combination of parameters.
+	 *
+	 * @param idvSigs individual version signatures
+	 * @param thresh threshold for individual version signature size
+	 * @param maxDist maximum distance between first and last version in a group
+	 * @return the GroupFinder
+	 */
+	private GroupFinder createGroupFinder(VersionSignature[] idvSigs, double thresh, int maxDist) {
+		if(_algorithm.equals("similarity-maxsigsize")) {
+			return new IterativeSimilarityGroupFinder(_sw, _pagesize, idvSigs, thresh, maxDist);
+		} else if(_algorithm.equals("neighbour-maxgrpsize")) {
+			return new IterativeNeighbouringGroupFinder(_sw, _pagesize, idvSigs, thresh, maxDist);
+		} else if(_algorithm.equals("contiguous-optimal")) {
+			return new ContiguousGroupFinder(_sw, _pagesize, idvSigs, thresh, maxDist);
+		} else if(_algorithm.equals("branchbound-maxsigsize")) {
+			// combinations already run in parallel, so each search is sequential
+			return new BranchAndBoundGroupFinder(_sw, _pagesize, idvSigs, thresh, maxDist);
+		} else if(_algorithm.equals("annealing-maxsigsize")) {
+			return new AnnealingGroupFinder(_sw, _pagesize, idvSigs, thresh, maxDist);
+		}
+		throw new IllegalArgumentException("Unsupported group finding algorithm: " + _algorithm);
+	}
+
+	/**
+	 * Runs the GroupFinder for all combinations of parameters.
+	 *
+	 * @param threads number of worker threads (1 for sequential execution)
+	 */
+	public void run(int threads) {
+		VersionSignature[] idvSigs = _sw.generateVersionSignatures(_pagesize, threads);
+
+		int numCombinations = _thresholds.length * _maxDists.length;
+		_avgSigsize = new double[numCombinations];
+		_numGroups = new int[numCombinations];
+		_runtimeMs = new long[numCombinations];
+
+		if(threads <= 1) {
+			for(int c = 0; c < numCombinations; c++) {
+				runCombination(idvSigs, c);
+			}
+			return;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.submit(() -> IntStream.range(0, numCombinations).parallel().forEach(c -> {
+				runCombination(idvSigs, c);
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while finding groups", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while finding groups", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs the GroupFinder for a single combination of parameters.
+	 *
+	 * @param idvSigs individual version signatures
+	 * @param c index of the combination
+	 */
+	private void runCombination(VersionSignature[] idvSigs, int c) {
+		double thresh = _thresholds[c / _maxDists.length];
+		int maxDist = _maxDists[c % _maxDists.length];
+
+		long start = System.nanoTime();
+		GroupFinder grpf = createGroupFinder(idvSigs, thresh, maxDist);
+		SoftwareVersionGroup[] groups = grpf.findSignatureGroups();
+		_avgSigsize[c] = grpf.getBestGroupConfigAvgSigsize();
+		_numGroups[c] = groups.length;
+		_runtimeMs[c] = (System.nanoTime() - start) / 1000000;
+	}
+
+	/**
+	 * Writes the results as a CSV table with one line per combination of
+	 * parameters.
+	 *
+	 * @param f file to write to
+	 * @throws FileNotFoundException if the file cannot be created
+	 */
+	public void writeResults(File f) throws FileNotFoundException {
+		String sep = MemSigs.sep;
+		try(PrintWriter writer = new PrintWriter(f)) {
+			writer.write("thresh" + sep + "maxDist" + sep + "avgSigsize" + sep + "groups" + sep + "runtimeMs\n");
+			for(int c = 0; c < _avgSigsize.length; c++) {
+				writer.write(_thresholds[c / _maxDists.length] + sep);
+				writer.write(_maxDists[c % _maxDists.length] + sep);
+				writer.write(_avgSigsize[c] + sep);
+				writer.write(_numGroups[c] + sep);
+				writer.write(_runtimeMs[c] + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Parses a list of thresholds. The list can contain comma-separated
+	 * values and ascending ranges of the form from:to:step, e.g.
+	 * "0.1,0.2:0.5:0.1".
+	 *
+	 * @param s list to parse
+	 * @return the thresholds
+	 * @throws NumberFormatException if s is not a valid list
+	 */
+	public static double[] parseDoubleList(String s) {
+		ArrayList<Double> values = new ArrayList<Double>();
+		for(String item : s.split(",")) {
+			String[] range = item.trim().split(":");
+			if(range.length == 1) {
+				values.add(Double.parseDouble(range[0]));
+			} else if(range.length == 3) {
+				double from = Double.parseDouble(range[0]);
+				double to = Double.parseDouble(range[1]);
+				double step = Double.parseDouble(range[2]);
+				if(step <= 0) {
+					throw new NumberFormatException("Step must be positive: " + item);
+				}
+				if(from > to) {
+					throw new NumberFormatException("Range must be ascending: " + item);
+				}
+				// Compute the values from the index to avoid accumulating rounding errors.
+				int n = (int)Math.floor((to - from) / step + 1e-9);
+				for(int i = 0; i <= n; i++) {
+					values.add(Math.round((from + i*step) * 1e9) / 1e9);
+				}
+			} else {
+				throw new NumberFormatException("Invalid range: " + item);
+			}
+		}
+
+		double[] arr = new double[values.size()];
+		for(int i = 0; i < arr.length; i++) {
+			arr[i] = values.get(i);
+		}
+		return arr;
+	}
+
+	/**
+	 * Parses a list of integers. The list can contain comma-separated
+	 * values and ascending ranges of the form from:to:step, e.g. "1,5:20:5".
+	 *
+	 * @param s list to parse
+	 * @return the integers
+	 * @throws NumberFormatException if s is not a valid list
+	 */
+	public static int[] parseIntList(String s) {
+		ArrayList<Integer> values = new ArrayList<Integer>();
+		for(String item : s.split(",")) {
+			String[] range = item.trim().split(":");
+			if(range.length == 1) {
+				values.add(Integer.parseInt(range[0]));
+			} else if(range.length == 3) {
+				int from = Integer.parseInt(range[0]);
+				int to = Integer.parseInt(range[1]);
+				int step = Integer.parseInt(range[2]);
+				if(step <= 0) {
+					throw new NumberFormatException("Step must be positive: " + item);
+				}
+				if(from > to) {
+					throw new NumberFormatException("Range must be ascending: " + item);
+				}
+				// Count with longs, as from + step may exceed Integer.MAX_VALUE.
+				long n = ((long)to - from) / step;
+				for(long i = 0; i <= n; i++) {
+					values.add((int)(from + i*step));
+				}
+			} else {
+				throw new NumberFormatException("Invalid range: " + item);
+			}
+		}
+
+		int[] arr = new int[values.size()];
+		for(int i = 0; i < arr.length; i++) {
+			arr[i] = values.get(i);
+		}
+		return arr;
+	}
+}
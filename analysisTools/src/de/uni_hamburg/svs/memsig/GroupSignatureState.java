@@ -0,0 +1,323 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * This class incrementally maintains the signature of a group of
+ * {@link SoftwareVersion}s that is extended one version at a time.
+ *
+ * The signature of a group can only contain pages of the group's first
+ * version that are neither all-0/all-1 pages nor repeats of an internal
+ * duplicate and whose contents are contained in every version of the group.
+ * These candidate pages are determined once when the state is created.
+ * Adding a version removes the candidates that the new version does not
+ * contain. A remaining candidate is part of the signature if no version
+ * outside the group contains its contents, i.e. if the number of versions
+ * containing it equals the group size and its contents are not foreign
+ * (i.e. contained in another {@link Software} of a {@link Corpus}).
+ * Candidates that were excluded as duplicates in other versions thus move
+ * back into the signature once all of these versions have joined the group.
+ *
+ * Adding a version only has to check the remaining candidates against the
+ * version-membership bitmaps of the {@link PageIndex}, so its cost does not
+ * depend on the size of the group.
+ *
+ * Several versions can also be evaluated speculatively using
+ * {@link #evaluateVersions(SoftwareVersion[], ForkJoinPool)}, which determines
+ * the signature sizes for adding each prefix of a list of versions in a single
+ * (optionally parallel) pass without changing the group. For every remaining
+ * candidate, the number of leading versions of the list containing it is
+ * determined. A candidate is part of the signature after adding the first j
+ * versions if it survives at least j versions and the number of versions
+ * containing it is the size of the group then. Any prefix of the evaluated
+ * versions can afterwards be added to the group using
+ * {@link #commitVersions(int)}.
+ *
+ * The signatures created by {@link #toSignature()} are identical to those
+ * generated by {@link Software#generateVersionsSignature(SoftwareVersion[], int)}
+ * for the same versions in the same order.
+ */
+public class GroupSignatureState {
+	private PageIndex _idx;
+	private int _pageSize;
+	private ArrayList<SoftwareVersion> _versions;
+	private VersionBitmap _group;
+
+	// candidate pages of the first version, in part order
+	private CodePart[] _candParts;
+	private int[] _candPages;
+	private int[] _candCids;
+	private BitSet _remaining; // candidates contained in all versions of the group
+
+	private int _all01count;
+	private int _intDupCount;
+	private int _notMatchingInGroupCount;
+	private int _sigsize;
+
+	// result of the last speculative evaluation
+	private SoftwareVersion[] _evalVersions;
+	private int[] _evalDepths; // candidate -> number of leading evaluated versions containing it
+	private int[] _evalSizes;
+
+	/**
+	 * Creates the state for a group containing only the specified version.
+	 *
+	 * @param sw {@link Software} the version belongs to
+	 * @param first first version of the group
+	 * @param pageSize page size
+	 */
+	public GroupSignatureState(Software sw, SoftwareVersion first, int pageSize) {
+		_idx = sw.getPageIndex(pageSize);
+		_pageSize = pageSize;
+		_versions = new ArrayList<SoftwareVersion>();
+		_versions.add(first);
+		_group = new VersionBitmap(_idx.numberOfVersions());
+		_group.set(_idx.getVersionPosition(first));
+
+		InternalDuplicates internalDups = first.getInternalDuplicates(pageSize);
+		int numPages = first.numberOfPages(pageSize);
+		_candParts = new CodePart[numPages];
+		_candPages = new int[numPages];
+		_candCids = new int[numPages];
+
+		int numCands = 0;
+		for(CodePart part : first.getParts()) {
+			PageTable table = part.getPageTable(pageSize);
+			for(int i = 0; i < table.numberOfPages(); i++) {
+				// Remove all-0 and all-1 pages as they are almost certain to trigger a false positive.
+				if(table.isTrivial(i)) {
+					_all01count++;
+					continue;
+				}
+
+				// Keep only the first copy of internal duplicates.
+				if(internalDups.isRepeat(part, i)) {
+					_intDupCount++;
+					continue;
+				}
+
+				_candParts[numCands] = part;
+				_candPages[numCands] = i;
+				_candCids[numCands] = _idx.getContentId(part, i);
+				numCands++;
+			}
+		}
+
+		_remaining = new BitSet(numCands);
+		_remaining.set(0, numCands);
+
+		_sigsize = 0;
+		for(int c = 0; c < numCands; c++) {
+			if((_idx.getMembership(_candCids[c]).cardinality() == 1) && !_idx.isForeign(_candCids[c])) {
+				_sigsize++;
+			}
+		}
+	}
+
+	/**
+	 * Adds a version to the group and updates the signature accordingly.
+	 *
+	 * @param sv {@link SoftwareVersion} to add
+	 */
+	public void addVersion(SoftwareVersion sv) {
+		int pos = _idx.getVersionPosition(sv);
+		_versions.add(sv);
+		_group.set(pos);
+		int grpSize = _group.cardinality();
+
+		int sigsize = 0;
+		for(int c = _remaining.nextSetBit(0); c >= 0; c = _remaining.nextSetBit(c + 1)) {
+			VersionBitmap members = _idx.getMembership(_candCids[c]);
+			if(!members.get(pos)) {
+				_remaining.clear(c);
+				_notMatchingInGroupCount++;
+			} else if((members.cardinality() == grpSize) && !_idx.isForeign(_candCids[c])) {
+				sigsize++;
+			}
+		}
+		_sigsize = sigsize;
+	}
+
+	/**
+	 * Determines the signature sizes of the group extended by each prefix of
+	 * the specified versions, without changing the group. None of the
+	 * versions may be part of the group already and no version may be
+	 * contained more than once.
+	 *
+	 * @param next versions to evaluate, in the order they would be added
+	 * @param pool pool to evaluate the candidates on, or null to evaluate them sequentially
+	 * @return sizes[j]: signature size after adding next[0] to next[j]
+	 */
+	public int[] evaluateVersions(SoftwareVersion[] next, ForkJoinPool pool) {
+		int[] positions = new int[next.length];
+		for(int j = 0; j < next.length; j++) {
+			positions[j] = _idx.getVersionPosition(next[j]);
+		}
+		int grpSize = _group.cardinality();
+
+		int[] cands = _remaining.stream().toArray();
+		int[] depths = new int[_candCids.length];
+		int chunkSize = 4096;
+		int numChunks = (cands.length + chunkSize - 1) / chunkSize;
+		int[][] chunkSizes = new int[numChunks][];
+
+		if((pool == null) || (numChunks <= 1)) {
+			for(int k = 0; k < numChunks; k++) {
+				chunkSizes[k] = evaluateChunk(cands, k * chunkSize, Math.min((k + 1) * chunkSize, cands.length), positions, grpSize, depths);
+			}
+		} else {
+			try {
+				pool.submit(() -> IntStream.range(0, numChunks).parallel().forEach(k -> {
+					chunkSizes[k] = evaluateChunk(cands, k * chunkSize, Math.min((k + 1) * chunkSize, cands.length), positions, grpSize, depths);
+				})).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while evaluating versions", e);
+			} catch (ExecutionException e) {
+				throw new IllegalStateException("Error while evaluating versions", e.getCause());
+			}
+		}
+
+		int[] sizes = new int[next.length];
+		for(int k = 0; k < numChunks; k++) {
+			for(int j = 0; j < next.length; j++) {
+				sizes[j] += chunkSizes[k][j];
+			}
+		}
+
+		_evalVersions = next.clone();
+		_evalDepths = depths;
+		_evalSizes = sizes;
+		return sizes.clone();
+	}
+
+	/**
+	 * Evaluates a range of the remaining candidates.
+	 *
+	 * @param cands remaining candidates
+	 * @param from first position in cands (inclusive)
+	 * @param to last position in cands (exclusive)
+	 * @param positions positions of the evaluated versions in the {@link PageIndex}
+	 * @param grpSize current size of the group
+	 * @param depths array to store the depth of each candidate in
+	 * @return contributions of the candidates to the signature sizes of all prefixes
+	 */
+	private int[] evaluateChunk(int[] cands, int from, int to, int[] positions, int grpSize, int[] depths) {
+		int[] sizes = new int[positions.length];
+		for(int i = from; i < to; i++) {
+			int c = cands[i];
+			VersionBitmap members = _idx.getMembership(_candCids[c]);
+			int depth = 0;
+			while((depth < positions.length) && members.get(positions[depth])) {
+				depth++;
+			}
+			depths[c] = depth;
+
+			// The candidate can only be part of the signature of the group
+			// whose size equals the number of versions containing it.
+			int j = members.cardinality() - grpSize - 1;
+			if((j >= 0) && (j < depth) && !_idx.isForeign(_candCids[c])) {
+				sizes[j]++;
+			}
+		}
+		return sizes;
+	}
+
+	/**
+	 * Adds the first n versions passed to the last call of
+	 * {@link #evaluateVersions(SoftwareVersion[], ForkJoinPool)} to the group.
+	 * The result is the same as adding them using
+	 * {@link #addVersion(SoftwareVersion)}.
+	 *
+	 * @param n number of versions to add
+	 */
+	public void commitVersions(int n) {
+		if(n == 0) {
+			_evalVersions = null;
+			_evalDepths = null;
+			_evalSizes = null;
+			return;
+		}
+
+		for(int j = 0; j < n; j++) {
+			_versions.add(_evalVersions[j]);
+			_group.set(_idx.getVersionPosition(_evalVersions[j]));
+		}
+		for(int c = _remaining.nextSetBit(0); c >= 0; c = _remaining.nextSetBit(c + 1)) {
+			if(_evalDepths[c] < n) {
+				_remaining.clear(c);
+				_notMatchingInGroupCount++;
+			}
+		}
+		_sigsize = _evalSizes[n - 1];
+
+		_evalVersions = null;
+		_evalDepths = null;
+		_evalSizes = null;
+	}
+
+	/**
+	 * Returns the versions of the group in the order they have been added.
+	 *
+	 * @return versions of the group
+	 */
+	public SoftwareVersion[] getVersions() {
+		return _versions.toArray(new SoftwareVersion[0]);
+	}
+
+	/**
+	 * Returns the number of versions in the group.
+	 *
+	 * @return number of versions
+	 */
+	public int numberOfVersions() {
+		return _versions.size();
+	}
+
+	/**
+	 * Returns the number of pages in the group's signature.
+	 *
+	 * @return signature size
+	 */
+	public int getSignatureSize() {
+		return _sigsize;
+	}
+
+	/**
+	 * Returns the number of pages of the first version whose contents are
+	 * contained in every version of the group, including those that are
+	 * also contained in other versions.
+	 *
+	 * @return number of remaining candidate pages
+	 */
+	public int numberOfRemainingCandidates() {
+		return _remaining.cardinality();
+	}
+
+	/**
+	 * Creates the {@link VersionSignature} for the current group.
+	 *
+	 * @return the signature
+	 */
+	public VersionSignature toSignature() {
+		SoftwareVersion[] versions = getVersions();
+		VersionSignature sig = new VersionSignature(versions, _pageSize, _all01count, _intDupCount, _notMatchingInGroupCount);
+		int grpSize = _group.cardinality();
+
+		int othVerDups = 0;
+		for(int c = _remaining.nextSetBit(0); c >= 0; c = _remaining.nextSetBit(c + 1)) {
+			if((_idx.getMembership(_candCids[c]).cardinality() > grpSize) || _idx.isForeign(_candCids[c])) {
+				othVerDups++;
+			} else {
+				sig.addPage(_candParts[c].getPage(_candPages[c], _pageSize));
+			}
+		}
+		sig.setOtherVersionDups(othVerDups);
+
+		return sig;
+	}
+}
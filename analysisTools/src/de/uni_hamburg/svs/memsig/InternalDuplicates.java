@@ -0,0 +1,100 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * This class describes which {@link Page}s of a {@link SoftwareVersion} are
+ * internal duplicates, i.e. have contents that appear more than once within
+ * the version. It is computed once per version and page size by counting
+ * the content IDs of all pages in the {@link Software}'s {@link PageIndex}.
+ */
+public class InternalDuplicates {
+	private HashMap<CodePart, BitSet> _duplicates; // pages whose contents appear more than once
+	private HashMap<CodePart, BitSet> _repeats; // copies after the first occurrence
+	private int _numDuplicates;
+	private int _numRepeats;
+
+	/**
+	 * Determines the internal duplicates of a version.
+	 *
+	 * @param sv {@link SoftwareVersion} to find internal duplicates for
+	 * @param idx {@link PageIndex} containing sv
+	 */
+	InternalDuplicates(SoftwareVersion sv, PageIndex idx) {
+		_duplicates = new HashMap<CodePart, BitSet>();
+		_repeats = new HashMap<CodePart, BitSet>();
+		int pageSize = idx.getPageSize();
+
+		// count occurrences of every content
+		HashMap<Integer, Integer> counts = new HashMap<Integer, Integer>();
+		for(CodePart part : sv.getParts()) {
+			for(int i = 0; i < part.numberOfPages(pageSize); i++) {
+				counts.merge(idx.getContentId(part, i), 1, Integer::sum);
+			}
+		}
+
+		BitSet seen = new BitSet();
+		for(CodePart part : sv.getParts()) {
+			BitSet dups = new BitSet();
+			BitSet reps = new BitSet();
+			for(int i = 0; i < part.numberOfPages(pageSize); i++) {
+				int cid = idx.getContentId(part, i);
+				if(counts.get(cid) > 1) {
+					dups.set(i);
+					_numDuplicates++;
+				}
+				if(seen.get(cid)) {
+					reps.set(i);
+					_numRepeats++;
+				}
+				seen.set(cid);
+			}
+			_duplicates.put(part, dups);
+			_repeats.put(part, reps);
+		}
+	}
+
+	/**
+	 * Checks whether the contents of a page appear more than once in the version.
+	 *
+	 * @param part {@link CodePart} containing the page
+	 * @param page index of the page within part
+	 * @return true if the page has an internal duplicate, false otherwise
+	 */
+	public boolean hasDuplicate(CodePart part, int page) {
+		return _duplicates.get(part).get(page);
+	}
+
+	/**
+	 * Checks whether a page is a copy of a page appearing before it in the
+	 * version (in the order of the version's parts and pages).
+	 *
+	 * @param part {@link CodePart} containing the page
+	 * @param page index of the page within part
+	 * @return true if the page repeats an earlier page, false otherwise
+	 */
+	public boolean isRepeat(CodePart part, int page) {
+		return _repeats.get(part).get(page);
+	}
+
+	/**
+	 * Returns the number of pages that have an internal duplicate, counting
+	 * all copies.
+	 *
+	 * @return number of pages with internal duplicates
+	 */
+	public int numberOfDuplicatePages() {
+		return _numDuplicates;
+	}
+
+	/**
+	 * Returns the number of pages repeating an earlier page, i.e. the number
+	 * of pages that remain after keeping one copy of every content.
+	 *
+	 * @return number of repeated pages
+	 */
+	public int numberOfRepeats() {
+		return _numRepeats;
+	}
+}
@@ -0,0 +1,236 @@
+/**
+ * A {@link GroupFinder} implementation that forms groups of neighbouring
+ * versions. Starting with the first candidate not assigned to a group yet,
+ * the algorithm extends the group by the following candidates (in the
+ * canonical ordering of versions) as long as the first and last version of
+ * the group are at most maxDist versions apart and the signature of the
+ * extended group is not empty. The next group starts with the candidate
+ * following the group. Versions that are not candidates form groups of
+ * their own.
+ *
+ * The candidates considered form a sliding window. For every distinct page
+ * content, the number of versions in the window containing it is maintained
+ * while versions enter and leave the window. A content belongs to the
+ * signature of the window if this number equals both the size of the window
+ * and the number of versions containing the content at all. As the number
+ * of such contents is also maintained per window size, the signature size of
+ * the window is known at any time. Every candidate enters and leaves the
+ * window once, so the running time is linear in the number of pages of all
+ * candidates.
+ */
+package de.uni_hamburg.svs.memsig;
+
+import java.util.ArrayList;
+
+public class IterativeNeighbouringGroupFinder extends GroupFinder {
+	ArrayList<SoftwareVersionGroup> _groups;
+	VersionSignature[] _sigs;
+	double _sigsizeAvg;
+
+	// window state
+	private PageIndex _idx;
+	private int[][] _versionContents; // distinct non-trivial content IDs of each candidate
+	private int[] _inWindow; // content ID -> number of versions in the window containing it
+	private int[] _complete; // k -> number of contents contained in exactly k versions, all of them in the window
+
+	/**
+	 * Creates a new Object. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,double,int)}
+	 */
+	public IterativeNeighbouringGroupFinder(Software sw, int pagesize, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, sigsizeThresh, maxDist);
+		_sigsizeAvg = -1;
+	}
+
+	/**
+	 * Creates a new Object using previously generated individual version
+	 * signatures. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,VersionSignature[],double,int)}
+	 */
+	public IterativeNeighbouringGroupFinder(Software sw, int pagesize, VersionSignature[] idvSigs, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, idvSigs, sigsizeThresh, maxDist);
+		_sigsizeAvg = -1;
+	}
+
+	/**
+	 * Determines the distinct content IDs of a version that may be part of a
+	 * signature, i.e. excluding all-0/all-1 pages and foreign contents.
+	 *
+	 * @param sv {@link SoftwareVersion}
+	 * @return content IDs
+	 */
+	private int[] signatureContents(SoftwareVersion sv) {
+		InternalDuplicates internalDups = sv.getInternalDuplicates(_pagesize);
+		int[] cids = new int[sv.numberOfPages(_pagesize)];
+		int num = 0;
+		for(CodePart part : sv.getParts()) {
+			PageTable table = part.getPageTable(_pagesize);
+			for(int i = 0; i < table.numberOfPages(); i++) {
+				if(table.isTrivial(i) || internalDups.isRepeat(part, i)) {
+					continue;
+				}
+				int cid = _idx.getContentId(part, i);
+				if(!_idx.isForeign(cid)) {
+					cids[num++] = cid;
+				}
+			}
+		}
+
+		int[] res = new int[num];
+		System.arraycopy(cids, 0, res, 0, num);
+		return res;
+	}
+
+	/**
+	 * Adds a candidate to the window.
+	 *
+	 * @param c position of the candidate
+	 */
+	private void enterWindow(int c) {
+		for(int cid : _versionContents[c]) {
+			int card = _idx.getMembership(cid).cardinality();
+			_inWindow[cid]++;
+			if(_inWindow[cid] == card) {
+				_complete[card]++;
+			}
+		}
+	}
+
+	/**
+	 * Removes a candidate from the window.
+	 *
+	 * @param c position of the candidate
+	 */
+	private void leaveWindow(int c) {
+		for(int cid : _versionContents[c]) {
+			int card = _idx.getMembership(cid).cardinality();
+			if(_inWindow[cid] == card) {
+				_complete[card]--;
+			}
+			_inWindow[cid]--;
+		}
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#findSignatureGroups()
+	 */
+	@Override
+	public SoftwareVersionGroup[] findSignatureGroups() {
+		int[] cands = remainingCandidates();
+		int n = cands.length;
+
+		_idx = _sw.getPageIndex(_pagesize);
+		_versionContents = new int[n][];
+		for(int i = 0; i < n; i++) {
+			_versionContents[i] = signatureContents(_idvSigs[cands[i]].getSoftwareVersions()[0]);
+		}
+		_inWindow = new int[_idx.numberOfContents()];
+		_complete = new int[_idx.numberOfVersions() + 1];
+
+		// groups as [start, end] positions in cands
+		ArrayList<int[]> ranges = new ArrayList<int[]>();
+		int start = 0;
+		int windowEnd = -1; // last candidate in the window
+		while(start < n) {
+			if(windowEnd < start) {
+				enterWindow(start);
+				windowEnd = start;
+			}
+
+			// Extend the group while the maximum distance permits and the
+			// signature of the extended group is not empty.
+			int end = start;
+			while((end + 1 < n) && (cands[end + 1] - cands[start] <= _maxDist)) {
+				enterWindow(end + 1);
+				windowEnd = end + 1;
+				if(_complete[end + 2 - start] == 0) {
+					// The candidate that ended the group stays in the
+					// window, as it starts the next group.
+					break;
+				}
+				end++;
+			}
+
+			ranges.add(new int[] { start, end });
+			for(int c = start; c <= end; c++) {
+				leaveWindow(c);
+			}
+			start = end + 1;
+		}
+		_inWindow = null;
+		_complete = null;
+		_versionContents = null;
+
+		// Create groups and signatures in the order of their first versions.
+		ArrayList<VersionSignature> sigs = new ArrayList<VersionSignature>();
+		int nc = 0;
+		int r = 0;
+		while((nc < _nonCands.length) || (r < ranges.size())) {
+			if((r >= ranges.size()) || ((nc < _nonCands.length) && (_nonCands[nc] < cands[ranges.get(r)[0]]))) {
+				sigs.add(_idvSigs[_nonCands[nc]]);
+				nc++;
+				continue;
+			}
+
+			int[] range = ranges.get(r);
+			if(range[0] == range[1]) {
+				sigs.add(_idvSigs[cands[range[0]]]);
+			} else {
+				SoftwareVersion[] grp = new SoftwareVersion[range[1] - range[0] + 1];
+				for(int c = range[0]; c <= range[1]; c++) {
+					grp[c - range[0]] = _idvSigs[cands[c]].getSoftwareVersions()[0];
+				}
+				sigs.add(_sw.generateVersionsSignature(grp, _pagesize));
+			}
+			r++;
+		}
+
+		_sigs = sigs.toArray(new VersionSignature[0]);
+		_groups = new ArrayList<SoftwareVersionGroup>();
+		long sigsizeSum = 0;
+		for(int i = 0; i < _sigs.length; i++) {
+			sigsizeSum += _sigs[i].numberOfPages();
+			_groups.add(new SoftwareVersionGroup(_sigs[i].getSoftwareVersions()));
+		}
+		_sigsizeAvg = (double)sigsizeSum / _sigs.length;
+
+		return getBestGroupConfig();
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfig()
+	 */
+	@Override
+	public SoftwareVersionGroup[] getBestGroupConfig() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _groups.toArray(new SoftwareVersionGroup[0]);
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigSignatures()
+	 */
+	@Override
+	public VersionSignature[] getBestGroupConfigSignatures() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigs;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#getBestGroupConfigAvgSigsize()
+	 */
+	@Override
+	public double getBestGroupConfigAvgSigsize() {
+		if(_groups == null) {
+			findSignatureGroups();
+		}
+
+		return _sigsizeAvg;
+	}
+
+}
@@ -18,6 +18,7 @@
 package de.uni_hamburg.svs.memsig;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -27,6 +28,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.lang3.ArrayUtils;
 
@@ -35,6 +37,9 @@ public class IterativeSimilarityGroupFinder extends GroupFinder {
 	VersionSignature[] _sigs;
 	double _sigsizeAvg;
 	
+	private int _specCands = 1; // number of candidates evaluated at once
+	private ForkJoinPool _pool; // pool for evaluating candidates, null if sequential
+	
 	/**
 	 * Creates a new Object. Parameters are identical to the parent class:
 	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,double,int)}
@@ -44,6 +49,48 @@ public class IterativeSimilarityGroupFinder extends GroupFinder {
 		// TODO Auto-generated constructor stub
 		_sigsizeAvg = -1;
 	}
+	
+	/**
+	 * Creates a new Object using previously generated individual version
+	 * signatures. Parameters are identical to the parent class:
+	 * @see{de.uni_hamburg.svs.memsig.GroupFinder#GroupFinder(Software,int,VersionSignature[],double,int)}
+	 */
+	public IterativeSimilarityGroupFinder(Software sw, int pagesize, VersionSignature[] idvSigs, double sigsizeThresh, int maxDist) {
+		super(sw, pagesize, idvSigs, sigsizeThresh, maxDist);
+		_sigsizeAvg = -1;
+	}
+
+	/**
+	 * Enables speculative evaluation of candidates. The signature sizes for
+	 * adding each of the next candidates (in order of similarity) to a group
+	 * are then evaluated at once, using several threads. Candidates are still
+	 * added in the same order and the evaluation results are discarded once
+	 * no further candidate can improve the signature, so the resulting group
+	 * configuration is identical to the one found sequentially.
+	 *
+	 * @param specCands number of candidates evaluated at once (1 to disable)
+	 * @param pool pool for the evaluation, or null to evaluate sequentially
+	 */
+	public void setSpeculativeEvaluation(int specCands, ForkJoinPool pool) {
+		_specCands = Math.max(1, specCands);
+		_pool = pool;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#supportsBudget()
+	 */
+	@Override
+	public boolean supportsBudget() {
+		return true;
+	}
+
+	/* (non-Javadoc)
+	 * @see de.uni_hamburg.svs.memsig.GroupFinder#supportsCheckpoint()
+	 */
+	@Override
+	public boolean supportsCheckpoint() {
+		return true;
+	}
 
 	/* (non-Javadoc)
 	 * @see de.uni_hamburg.svs.memsig.GroupFinder#findSignatureGroups()
@@ -65,28 +112,46 @@ public class IterativeSimilarityGroupFinder extends GroupFinder {
 			sigset.add(_idvSigs[_nonCands[i]]);
 		}
 		
-		while(_candList.size() > 0) {
+		// Restore groups formed before the last checkpoint (if any).
+		List<int[]> doneGroups = startSearch();
+		for(int[] doneGroup : doneGroups) {
+			if(doneGroup.length == 1) {
+				sigset.add(_idvSigs[doneGroup[0]]);
+			} else {
+				SoftwareVersion[] group = new SoftwareVersion[doneGroup.length];
+				for(int i = 0; i < doneGroup.length; i++) {
+					group[i] = _idvSigs[doneGroup[i]].getSoftwareVersions()[0];
+				}
+				sigset.add(_sw.generateVersionsSignature(group, _pagesize));
+			}
+		}
+		
+		boolean truncated = false; // whether the last group was cut short by the budget
+		while((_cands.cardinality() > 0) && !budgetExhausted()) {
 			ArrayList<SoftwareVersion> grp = new ArrayList<SoftwareVersion>();
-			int g0 = _candList.get(0);
+			int g0 = _cands.nextSetBit(0);
 			VersionSignature bestSig = _idvSigs[g0];
 			SoftwareVersion sv = bestSig.getSoftwareVersions()[0];
 			grp.add(sv);
 			
-			ArrayList<Integer> grpIdx = new ArrayList<Integer>();
-			grpIdx.add(g0);
+			// Versions are only ever appended to the group, so the best
+			// group is always a prefix of it.
+			int[] grpIdx = new int[_cands.cardinality()];
+			grpIdx[0] = g0;
+			
+			// The signature of the group is updated incrementally as
+			// versions are added instead of being regenerated each time.
+			GroupSignatureState grpState = new GroupSignatureState(_sw, sv, _pagesize);
 			
 			int bestSigsize = bestSig.numberOfPages();
-			ArrayList<SoftwareVersion> bestGrp = (ArrayList<SoftwareVersion>)grp.clone();
-			ArrayList<Integer> bestGrpIdx = (ArrayList<Integer>)grpIdx.clone();
+			int bestGrpSize = 1;
 			
 			// find most similar other cands
 			// Create a HashMap containing the number of matching Pages in other candidates.
 			HashMap<Integer, Integer> candSimilarity = new HashMap<Integer, Integer>();
-			for(int i = 1; i < _candList.size(); i++) {
-				int candIdx = _candList.get(i);
+			for(int candIdx = _cands.nextSetBit(g0 + 1); candIdx >= 0; candIdx = _cands.nextSetBit(candIdx + 1)) {
 				SoftwareVersion candSv = _idvSigs[candIdx].getSoftwareVersions()[0];
-				VersionComparisonResult vcr = sv.compareToVersion(candSv, _pagesize);
-				int numMatches = vcr.numberOfMatches();
+				int numMatches = _sim.numberOfMatches(sv, candSv);
 				candSimilarity.put(candIdx, numMatches);
 			}
 			
@@ -108,53 +173,126 @@ public class IterativeSimilarityGroupFinder extends GroupFinder {
 				candSimilarity.put(entry.getKey(), entry.getValue());
 			}
 			
+			// Candidates that may be added to the group, in the order they are tried.
+			ArrayList<Integer> sortedCands = new ArrayList<Integer>();
 			Iterator<Integer> sortedCandIt = candSimilarity.keySet().iterator();
 			while(sortedCandIt.hasNext()) {
 				int gaddidx = sortedCandIt.next();
-				int gaddsimilarity = candSimilarity.get(gaddidx);
-				
 				if((gaddidx - g0) > _maxDist) {
 					// We do not need to consider this version if it is further
 					// away from the first element of the group than specified
 					// by the maximum distance.
 					continue;
 				}
-				
-				if(gaddsimilarity < bestSigsize) {
+				sortedCands.add(gaddidx);
+			}
+			
+			// Candidates are evaluated in blocks of _specCands versions, but
+			// added to the group one by one as in a sequential evaluation.
+			boolean done = false;
+			int blockEnd = 0;
+			for(int blockStart = 0; !done && (blockStart < sortedCands.size()); blockStart = blockEnd) {
+				if(candSimilarity.get(sortedCands.get(blockStart)) < bestSigsize) {
+					break;
+				}
+				if(budgetExhausted()) {
+					// The best group found so far is used, but not recorded
+					// in the checkpoint, so that a resumed search forms the
+					// complete group.
+					truncated = true;
+					checkpoint(doneGroups, true);
 					break;
-					// If there are fewer identical pages in the additional version
-					// than are contained in the best signature found so far, we can
-					// stop here, as adding further versions can only decrease signature
-					// size.
 				}
 				
-				SoftwareVersion gaddVer = _idvSigs[gaddidx].getSoftwareVersions()[0];
-				grp.add(gaddVer);
-				grpIdx.add(gaddidx);
-				
-				SoftwareVersion[] grpArray = grp.toArray(new SoftwareVersion[0]);
+				if((_specCands == 1) && (_pool == null)) {
+					// Without speculation, the version is added to the group
+					// right away.
+					blockEnd = blockStart + 1;
+					int gaddidx = sortedCands.get(blockStart);
+					SoftwareVersion gaddVer = _idvSigs[gaddidx].getSoftwareVersions()[0];
+					grpState.addVersion(gaddVer);
+					countEvaluations(1);
+					grpIdx[grp.size()] = gaddidx;
+					grp.add(gaddVer);
+					
+					int newSigsize = grpState.getSignatureSize();
+					if(newSigsize >= bestSigsize) {
+						bestSigsize = newSigsize;
+						bestSig = null; // created once the best group is known
+						bestGrpSize = grp.size();
+					}
+					continue;
+				}
 				
-				VersionSignature newSig = _sw.generateVersionsSignature(grpArray, _pagesize);
-				int newSigsize = newSig.numberOfPages();
+				// The block does not extend beyond the evaluation budget, so that
+				// the group ends at the same candidate as without speculation.
+				int blockLen = (int)Math.min(_specCands, remainingEvaluations());
+				blockEnd = Math.min(blockStart + blockLen, sortedCands.size());
+				SoftwareVersion[] block = new SoftwareVersion[blockEnd - blockStart];
+				for(int i = blockStart; i < blockEnd; i++) {
+					block[i - blockStart] = _idvSigs[sortedCands.get(i)].getSoftwareVersions()[0];
+				}
+				int[] blockSigsizes = grpState.evaluateVersions(block, _pool);
 				
-				if(newSigsize >= bestSigsize) {
-					bestSigsize = newSigsize;
-					bestSig = newSig;
-					bestGrp = (ArrayList<SoftwareVersion>)grp.clone();
-					bestGrpIdx = (ArrayList<Integer>)grpIdx.clone();
-				} else {
-					// TODO do nothing?
+				int committed = 0;
+				for(int i = blockStart; i < blockEnd; i++) {
+					int gaddidx = sortedCands.get(i);
+					int gaddsimilarity = candSimilarity.get(gaddidx);
+					
+					if(gaddsimilarity < bestSigsize) {
+						done = true;
+						break;
+						// If there are fewer identical pages in the additional version
+						// than are contained in the best signature found so far, we can
+						// stop here, as adding further versions can only decrease signature
+						// size.
+					}
+					
+					SoftwareVersion gaddVer = block[i - blockStart];
+					grpIdx[grp.size()] = gaddidx;
+					grp.add(gaddVer);
+					committed++;
+					
+					int newSigsize = blockSigsizes[i - blockStart];
+					
+					if(newSigsize >= bestSigsize) {
+						bestSigsize = newSigsize;
+						bestSig = null; // created once the best group is known
+						bestGrpSize = grp.size();
+					} else {
+						// TODO do nothing?
+					}
 				}
+				grpState.commitVersions(committed);
+				countEvaluations(committed);
 			}
 			
-			for(int i = bestGrpIdx.size() - 1; i >= 0; i--) {
-				// remove versions in bestGrp from _candList
-				_candList.remove(bestGrpIdx.get(i));
+			for(int i = 0; i < bestGrpSize; i++) {
+				// remove versions in the best group from the candidates
+				_cands.clear(grpIdx[i]);
 			}
 			
-			SoftwareVersion[] group = bestGrp.toArray(new SoftwareVersion[0]);
+			SoftwareVersion[] group = grp.subList(0, bestGrpSize).toArray(new SoftwareVersion[0]);
 			//groups.add(group);
+			if(bestSig == null) {
+				bestSig = _sw.generateVersionsSignature(group, _pagesize);
+			}
 			sigset.add(bestSig);
+			
+			if(!truncated) {
+				doneGroups.add(Arrays.copyOf(grpIdx, bestGrpSize));
+				checkpoint(doneGroups, false);
+			}
+		}
+		
+		if(!truncated) {
+			checkpoint(doneGroups, true);
+		}
+		
+		// If the budget was exhausted, the remaining candidates form groups
+		// of their own.
+		for(int idx : remainingCandidates()) {
+			sigset.add(_idvSigs[idx]);
 		}
 		
 		_sigs = new VersionSignature[sigset.size()];
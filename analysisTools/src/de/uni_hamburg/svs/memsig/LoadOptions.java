@@ -0,0 +1,121 @@
+package de.uni_hamburg.svs.memsig;
+
+/**
+ * Options controlling how a {@link Software} and its {@link SoftwareVersion}s
+ * are loaded from the file system.
+ */
+public class LoadOptions {
+	private boolean _mapParts;
+	private boolean _useFingerprintFiles;
+	private boolean _writePartFiles;
+	private boolean _trustFingerprints;
+
+	/**
+	 * Creates a new LoadOptions object with default settings, i.e. code
+	 * parts are read onto the heap, fingerprint files are used, newly
+	 * extracted parts are written to the parts directory and pages with
+	 * equal fingerprints are compared byte by byte.
+	 */
+	public LoadOptions() {
+		_mapParts = false;
+		_useFingerprintFiles = true;
+		_writePartFiles = true;
+		_trustFingerprints = false;
+	}
+
+	/**
+	 * Returns whether {@link CodePart} files are memory-mapped instead of
+	 * being read onto the heap.
+	 *
+	 * @return true if part files are memory-mapped, false otherwise
+	 */
+	public boolean getMapParts() {
+		return _mapParts;
+	}
+
+	/**
+	 * Sets whether {@link CodePart} files are to be memory-mapped instead of
+	 * being read onto the heap. Mapping the files allows the operating
+	 * system's page cache to hold the contents, so that datasets larger than
+	 * the Java heap can be analysed.
+	 *
+	 * @param mapParts true to memory-map part files, false to read them
+	 */
+	public void setMapParts(boolean mapParts) {
+		_mapParts = mapParts;
+	}
+
+	/**
+	 * Returns whether {@link FingerprintFile}s are used.
+	 *
+	 * @return true if fingerprint files are used, false otherwise
+	 */
+	public boolean getUseFingerprintFiles() {
+		return _useFingerprintFiles;
+	}
+
+	/**
+	 * Sets whether {@link FingerprintFile}s are to be used. If they are, a valid
+	 * fingerprint file of a version will be used instead of reading its parts
+	 * when loading the version, and missing or outdated fingerprint files will
+	 * be (re-)written.
+	 *
+	 * This only avoids reading the parts for computing fingerprints. When the
+	 * {@link PageIndex} is built, every page whose fingerprint matches an
+	 * earlier page is still read to compare the contents, which are most
+	 * pages of similar versions, unless {@link #setTrustFingerprints(boolean)}
+	 * is set.
+	 *
+	 * @param useFingerprintFiles true to use fingerprint files, false otherwise
+	 */
+	public void setUseFingerprintFiles(boolean useFingerprintFiles) {
+		_useFingerprintFiles = useFingerprintFiles;
+	}
+
+	/**
+	 * Returns whether parts extracted from a binary are written to the
+	 * version's parts directory.
+	 *
+	 * @return true if part files are written, false otherwise
+	 */
+	public boolean getWritePartFiles() {
+		return _writePartFiles;
+	}
+
+	/**
+	 * Sets whether parts extracted from a binary are to be written to the
+	 * version's parts directory. Parts are always used directly from memory
+	 * after extraction. If they are not written, the binary will have to be
+	 * extracted again in later runs, and no fingerprint files can be written.
+	 *
+	 * @param writePartFiles true to write part files, false otherwise
+	 */
+	public void setWritePartFiles(boolean writePartFiles) {
+		_writePartFiles = writePartFiles;
+	}
+
+	/**
+	 * Returns whether pages with equal fingerprints are treated as equal
+	 * without comparing their contents.
+	 *
+	 * @return true if fingerprints are trusted, false otherwise
+	 */
+	public boolean getTrustFingerprints() {
+		return _trustFingerprints;
+	}
+
+	/**
+	 * Sets whether pages with equal fingerprints are to be treated as equal
+	 * without comparing their contents when the {@link PageIndex} of a
+	 * {@link Software} is built. Together with fingerprint files, the index
+	 * can then be built without reading any page contents. As fingerprints
+	 * have 64 bits, a collision is unlikely, but it would merge two different
+	 * contents and thus make signatures wrong. By default, contents are
+	 * compared.
+	 *
+	 * @param trustFingerprints true to trust fingerprints, false to compare contents
+	 */
+	public void setTrustFingerprints(boolean trustFingerprints) {
+		_trustFingerprints = trustFingerprints;
+	}
+}
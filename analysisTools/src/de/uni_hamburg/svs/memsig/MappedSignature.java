@@ -0,0 +1,238 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A signature read from a signature container (see {@link SignatureFile}
+ * and {@link MappedSignatureFile}). It offers the same accessors as
+ * {@link VersionSignature}, but its versions are only known by their
+ * version strings, as the {@link Software} does not need to be loaded.
+ *
+ * The page table is read from the mapped container on access, and page
+ * contents are only read (and decompressed, if necessary) when they are
+ * requested, e.g. via {@link #getPageBytes(int)} or {@link Page#getBytes()}
+ * of a Page returned by {@link #getPage(int)}.
+ */
+public class MappedSignature {
+	private MappedSignatureFile _container;
+	private String[] _versions;
+	private int _all01count;
+	private int _intDupCount;
+	private int _othVerDups;
+	private int _notMatchingInGroupCount;
+	private int _pageTableOffset; // offset of the page table within the container
+	private int _numPages;
+
+	MappedSignature(MappedSignatureFile container, String[] versions, int all01count, int intDupCount, int othVerDups, int notMatchingInGroupCount, int pageTableOffset, int numPages) {
+		_container = container;
+		_versions = versions;
+		_all01count = all01count;
+		_intDupCount = intDupCount;
+		_othVerDups = othVerDups;
+		_notMatchingInGroupCount = notMatchingInGroupCount;
+		_pageTableOffset = pageTableOffset;
+		_numPages = numPages;
+	}
+
+	/**
+	 * Returns the page table entry of a page.
+	 *
+	 * @param pageNum index of the page
+	 * @return buffer positioned at the page table entry
+	 */
+	private ByteBuffer entry(int pageNum) {
+		if((pageNum < 0) || (pageNum >= _numPages)) {
+			throw new IndexOutOfBoundsException("Page " + pageNum + " of " + _numPages);
+		}
+		ByteBuffer buf = _container.pageTables();
+		buf.position(_pageTableOffset + pageNum * SignatureFile.PAGE_ENTRY_SIZE);
+		return buf;
+	}
+
+	/**
+	 * Returns a specific {@link Page} of the signature. The Page's contents
+	 * are read from the container when they are needed.
+	 *
+	 * @param pageNum index of the Page to get
+	 * @return the specified Page
+	 */
+	public Page getPage(int pageNum) {
+		ByteBuffer buf = entry(pageNum);
+		buf.getInt(); // part
+		long pos = buf.getLong();
+		long fingerprint = buf.getLong();
+		int content = buf.getInt();
+		return new Page(_container, content, pos, fingerprint);
+	}
+
+	/**
+	 * Returns the {@link Page}s in the signature.
+	 *
+	 * @return the {@link Page}s in the signature
+	 */
+	public Page[] getPages() {
+		Page[] pages = new Page[_numPages];
+		for(int i = 0; i < _numPages; i++) {
+			pages[i] = getPage(i);
+		}
+		return pages;
+	}
+
+	/**
+	 * Returns the contents of a specific {@link Page} of the signature.
+	 *
+	 * @param pageNum index of the Page to get
+	 * @return contents of the specified Page
+	 */
+	public byte[] getPageBytes(int pageNum) {
+		return _container.getContentBytes(getContentIndex(pageNum));
+	}
+
+	/**
+	 * Returns the contents of a specific {@link Page} of the signature
+	 * without copying them if possible (see
+	 * {@link MappedSignatureFile#getContentBuffer(int)}).
+	 *
+	 * @param pageNum index of the Page to get
+	 * @return read-only buffer containing the contents of the specified Page
+	 */
+	public ByteBuffer getPageBuffer(int pageNum) {
+		return _container.getContentBuffer(getContentIndex(pageNum));
+	}
+
+	/**
+	 * Returns the contents of the {@link Page}s in the signature as 2D byte array.
+	 *
+	 * @return contents of the {@link Page}s in the signature
+	 */
+	public byte[][] getPagesBytes() {
+		byte[][] pbytes = new byte[_numPages][];
+		for(int i = 0; i < _numPages; i++) {
+			pbytes[i] = getPageBytes(i);
+		}
+		return pbytes;
+	}
+
+	/**
+	 * Returns the fingerprint of a {@link Page} without reading its contents.
+	 *
+	 * @param pageNum index of the Page
+	 * @return fingerprint of the Page contents
+	 */
+	public long getPageFingerprint(int pageNum) {
+		ByteBuffer buf = entry(pageNum);
+		return buf.getLong(buf.position() + 12);
+	}
+
+	/**
+	 * Returns the name of the part a {@link Page} belongs to.
+	 *
+	 * @param pageNum index of the Page
+	 * @return name of the part (e.g. the segment name)
+	 */
+	public String getPagePartName(int pageNum) {
+		return _container.getPartName(entry(pageNum).getInt());
+	}
+
+	/**
+	 * Returns the index of the contents of a {@link Page} within the
+	 * container. Pages with identical contents have the same index.
+	 *
+	 * @param pageNum index of the Page
+	 * @return index of the Page contents
+	 */
+	public int getContentIndex(int pageNum) {
+		ByteBuffer buf = entry(pageNum);
+		return buf.getInt(buf.position() + 20);
+	}
+
+	/**
+	 * Returns the number of {@link Page}s in the signature.
+	 *
+	 * @return number of {@link Page}s in the signature
+	 */
+	public int numberOfPages() {
+		return _numPages;
+	}
+
+	/**
+	 * Returns the version strings of the {@link SoftwareVersion}s that the
+	 * signature is for.
+	 *
+	 * @return version strings
+	 */
+	public String[] getVersionStrings() {
+		return _versions.clone();
+	}
+
+	/**
+	 * Returns the name of the {@link Software} the signature is for.
+	 *
+	 * @return name of the Software
+	 */
+	public String getSoftwareName() {
+		return _container.getSoftwareName();
+	}
+
+	/**
+	 * Returns the page size used for creating the signature.
+	 *
+	 * @return the page size
+	 */
+	public int getPageSize() {
+		return _container.getPageSize();
+	}
+
+	/**
+	 * Returns the number of pages containing only 0- or 1-bits.
+	 *
+	 * @return number of pages containing only 0- or 1-bits
+	 */
+	public int getAll01Count() {
+		return _all01count;
+	}
+
+	/**
+	 * Returns the number of internal duplicate {@link Page}s.
+	 *
+	 * @return number of internal duplicate {@link Page}s
+	 */
+	public int getIntDupCount() {
+		return _intDupCount;
+	}
+
+	/**
+	 * Returns the number of {@link Page}s that are also present in other versions
+	 * of the {@link Software}.
+	 *
+	 * @return number of Pages that are also present in other versions
+	 */
+	public int getOtherVersionDups() {
+		return _othVerDups;
+	}
+
+	/**
+	 * Returns the number of {@link Page}s that are present in the first version of the
+	 * group, but that are not present in at least one other version in the group.
+	 *
+	 * @return number of {@link Page}s present in first version, but not all versions
+	 * of the group
+	 */
+	public int getNotMatchingInGroupCount() {
+		return _notMatchingInGroupCount;
+	}
+
+	/**
+	 * Returns the {@link MappedSignatureFile} the signature has been read from.
+	 *
+	 * @return the container
+	 */
+	public MappedSignatureFile getContainer() {
+		return _container;
+	}
+
+	@Override
+	public String toString() {
+		return getSoftwareName() + "-" + String.join("__", _versions);
+	}
+}
@@ -0,0 +1,398 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads a signature container written by {@link SignatureFile} by
+ * memory-mapping it. Opening the file only reads the header and the
+ * metadata of the signatures; page tables are read from the mapping when
+ * pages are accessed, and page contents only when they are requested (see
+ * {@link MappedSignature}). Uncompressed page contents can be accessed
+ * without copying them via {@link #getContentBuffer(int)}. Compressed blocks
+ * are decompressed when one of their pages is requested, and the most
+ * recently used blocks are kept in memory.
+ *
+ * As mappings cannot exceed 2 GB, the page contents are mapped in several
+ * segments, each consisting of whole blocks. Mappings stay valid until they
+ * are garbage collected, even after the file has been closed.
+ */
+public class MappedSignatureFile implements Closeable {
+	private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+	private static final int CACHED_BLOCKS = 16;
+
+	private File _file;
+	private FileChannel _ch;
+	private int _pageSize;
+	private boolean _compressed;
+	private String _swName;
+	private String _binaryName;
+	private String[] _partNames;
+	private MappedSignature[] _sigs;
+
+	private MappedByteBuffer _meta; // header and page tables
+	private int _numContents;
+	private int _pagesPerBlock;
+	private long[] _blockOffsets;
+	private int[] _blockLengths;
+	private MappedByteBuffer[] _segments; // mappings of the blocks
+	private long[] _segmentOffsets;
+	private int[] _blockSegment; // block -> segment
+	private Map<Integer, byte[]> _blockCache; // block -> decompressed contents, guarded by itself
+
+	/**
+	 * Opens a signature container.
+	 *
+	 * @param f file to open
+	 * @throws IOException if the file cannot be read or is not a valid signature container
+	 */
+	public MappedSignatureFile(File f) throws IOException {
+		_file = f;
+		_ch = FileChannel.open(f.toPath(), StandardOpenOption.READ);
+		try {
+			readTrailer();
+			readMetadata();
+			mapBlocks();
+		} catch (IOException | RuntimeException e) {
+			_ch.close();
+			if(e instanceof IOException) {
+				throw (IOException)e;
+			}
+			throw new IOException("Invalid signature container " + f.getAbsolutePath(), e);
+		}
+
+		_blockCache = new LinkedHashMap<Integer, byte[]>(CACHED_BLOCKS, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+				return size() > CACHED_BLOCKS;
+			}
+		};
+	}
+
+	/**
+	 * Reads the block table from the end of the file.
+	 *
+	 * @throws IOException if the file cannot be read or is not a valid signature container
+	 */
+	private void readTrailer() throws IOException {
+		long size = _ch.size();
+		if(size < SignatureFile.TRAILER_SIZE) {
+			throw new IOException("Not a signature container: " + _file.getAbsolutePath());
+		}
+		ByteBuffer trailer = _ch.map(FileChannel.MapMode.READ_ONLY, size - SignatureFile.TRAILER_SIZE, SignatureFile.TRAILER_SIZE);
+		long blockTableOffset = trailer.getLong();
+		if((trailer.getInt() != SignatureFile.MAGIC) || (blockTableOffset < 0) || (blockTableOffset > size - SignatureFile.TRAILER_SIZE)) {
+			throw new IOException("Not a signature container: " + _file.getAbsolutePath());
+		}
+
+		int numBlocks = (int)((size - SignatureFile.TRAILER_SIZE - blockTableOffset) / SignatureFile.BLOCK_ENTRY_SIZE);
+		ByteBuffer table = _ch.map(FileChannel.MapMode.READ_ONLY, blockTableOffset, (long)numBlocks * SignatureFile.BLOCK_ENTRY_SIZE);
+		_blockOffsets = new long[numBlocks];
+		_blockLengths = new int[numBlocks];
+		for(int b = 0; b < numBlocks; b++) {
+			_blockOffsets[b] = table.getLong();
+			_blockLengths[b] = table.getInt();
+		}
+	}
+
+	/**
+	 * Reads the header and the metadata of the signatures. Page tables are
+	 * skipped.
+	 *
+	 * @throws IOException if the file is not a valid signature container
+	 */
+	private void readMetadata() throws IOException {
+		long metaSize = (_blockOffsets.length > 0) ? _blockOffsets[0] : (_ch.size() - SignatureFile.TRAILER_SIZE);
+		if(metaSize > MAX_SEGMENT_SIZE) {
+			throw new IOException("Signature metadata too large: " + _file.getAbsolutePath());
+		}
+		_meta = _ch.map(FileChannel.MapMode.READ_ONLY, 0, metaSize);
+
+		if((_meta.getInt() != SignatureFile.MAGIC) || (_meta.getInt() != SignatureFile.FORMAT_VERSION)) {
+			throw new IOException("Unsupported signature container: " + _file.getAbsolutePath());
+		}
+		_pageSize = _meta.getInt();
+		_compressed = (_meta.getInt() & SignatureFile.FLAG_COMPRESSED) != 0;
+		_swName = getString(_meta);
+		_binaryName = getString(_meta);
+
+		_partNames = new String[_meta.getInt()];
+		for(int i = 0; i < _partNames.length; i++) {
+			_partNames[i] = getString(_meta);
+		}
+
+		_sigs = new MappedSignature[_meta.getInt()];
+		for(int s = 0; s < _sigs.length; s++) {
+			String[] versions = new String[_meta.getInt()];
+			for(int i = 0; i < versions.length; i++) {
+				versions[i] = getString(_meta);
+			}
+			int all01 = _meta.getInt();
+			int intDup = _meta.getInt();
+			int othVerDups = _meta.getInt();
+			int notMatchingInGroup = _meta.getInt();
+			int numPages = _meta.getInt();
+			int pageTableOffset = _meta.position();
+			_meta.position(pageTableOffset + numPages * SignatureFile.PAGE_ENTRY_SIZE);
+			_sigs[s] = new MappedSignature(this, versions, all01, intDup, othVerDups, notMatchingInGroup, pageTableOffset, numPages);
+		}
+
+		_numContents = _meta.getInt();
+		_pagesPerBlock = _meta.getInt();
+		if((_meta.getInt() != _blockOffsets.length) || ((long)_pagesPerBlock * _blockOffsets.length < _numContents)) {
+			throw new IOException("Inconsistent block table in signature container: " + _file.getAbsolutePath());
+		}
+	}
+
+	/**
+	 * Maps the blocks in segments of at most 2 GB.
+	 *
+	 * @throws IOException if the file cannot be mapped
+	 */
+	private void mapBlocks() throws IOException {
+		ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+		ArrayList<Long> segmentOffsets = new ArrayList<Long>();
+		_blockSegment = new int[_blockOffsets.length];
+		int first = 0;
+		while(first < _blockOffsets.length) {
+			long start = _blockOffsets[first];
+			int last = first;
+			while((last + 1 < _blockOffsets.length) && (_blockOffsets[last + 1] + _blockLengths[last + 1] - start <= MAX_SEGMENT_SIZE)) {
+				last++;
+			}
+			long end = _blockOffsets[last] + _blockLengths[last];
+			segments.add(_ch.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+			segmentOffsets.add(start);
+			for(int b = first; b <= last; b++) {
+				_blockSegment[b] = segments.size() - 1;
+			}
+			first = last + 1;
+		}
+
+		_segments = segments.toArray(new MappedByteBuffer[0]);
+		_segmentOffsets = new long[_segments.length];
+		for(int i = 0; i < _segmentOffsets.length; i++) {
+			_segmentOffsets[i] = segmentOffsets.get(i);
+		}
+	}
+
+	private static String getString(ByteBuffer buf) {
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the page size of the signatures.
+	 *
+	 * @return page size
+	 */
+	public int getPageSize() {
+		return _pageSize;
+	}
+
+	/**
+	 * Checks whether the page contents are stored compressed.
+	 *
+	 * @return true if page contents are compressed, false otherwise
+	 */
+	public boolean isCompressed() {
+		return _compressed;
+	}
+
+	/**
+	 * Returns the name of the {@link Software} the signatures are for.
+	 *
+	 * @return name of the Software
+	 */
+	public String getSoftwareName() {
+		return _swName;
+	}
+
+	/**
+	 * Returns the name of the binary of the {@link Software}.
+	 *
+	 * @return name of the binary
+	 */
+	public String getBinaryName() {
+		return _binaryName;
+	}
+
+	/**
+	 * Returns the number of signatures in the container.
+	 *
+	 * @return number of signatures
+	 */
+	public int numberOfSignatures() {
+		return _sigs.length;
+	}
+
+	/**
+	 * Returns a signature from the container.
+	 *
+	 * @param sigNum index of the signature
+	 * @return the signature
+	 */
+	public MappedSignature getSignature(int sigNum) {
+		return _sigs[sigNum];
+	}
+
+	/**
+	 * Returns all signatures in the container.
+	 *
+	 * @return the signatures
+	 */
+	public MappedSignature[] getSignatures() {
+		return _sigs.clone();
+	}
+
+	/**
+	 * Returns the number of distinct page contents in the container.
+	 *
+	 * @return number of distinct page contents
+	 */
+	public int numberOfContents() {
+		return _numContents;
+	}
+
+	/**
+	 * Returns the name of a part.
+	 *
+	 * @param partNum index of the part name
+	 * @return name of the part
+	 */
+	String getPartName(int partNum) {
+		return _partNames[partNum];
+	}
+
+	/**
+	 * Returns the page tables of all signatures. The returned buffer is
+	 * independent of those returned by other calls, so that it can be used
+	 * concurrently.
+	 *
+	 * @return page tables
+	 */
+	ByteBuffer pageTables() {
+		return _meta.duplicate();
+	}
+
+	/**
+	 * Returns the contents of a page as a buffer. If the contents are stored
+	 * uncompressed, the buffer is a read-only view of the mapping, so that
+	 * they are not copied.
+	 *
+	 * @param content index of the page contents
+	 * @return buffer containing the page contents
+	 */
+	public ByteBuffer getContentBuffer(int content) {
+		int block = content / _pagesPerBlock;
+		int offsetInBlock = (content % _pagesPerBlock) * _pageSize;
+		if(isStoredUncompressed(block)) {
+			ByteBuffer buf = _segments[_blockSegment[block]].asReadOnlyBuffer();
+			int pos = (int)(_blockOffsets[block] - _segmentOffsets[_blockSegment[block]]) + offsetInBlock;
+			buf.position(pos);
+			buf.limit(pos + _pageSize);
+			return buf.slice();
+		}
+		return ByteBuffer.wrap(decompressBlock(block), offsetInBlock, _pageSize).slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Returns a copy of the contents of a page.
+	 *
+	 * @param content index of the page contents
+	 * @return page contents
+	 */
+	public byte[] getContentBytes(int content) {
+		byte[] bytes = new byte[_pageSize];
+		getContentBuffer(content).get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Checks whether a block is stored uncompressed. Blocks that did not
+	 * become smaller by compression are stored uncompressed even in
+	 * compressed containers.
+	 *
+	 * @param block index of the block
+	 * @return true if the block is stored uncompressed
+	 */
+	private boolean isStoredUncompressed(int block) {
+		return !_compressed || (_blockLengths[block] == blockContentSize(block));
+	}
+
+	/**
+	 * @param block index of the block
+	 * @return size of the (uncompressed) page contents in the block
+	 */
+	private int blockContentSize(int block) {
+		return (Math.min(_numContents, (block + 1) * _pagesPerBlock) - block * _pagesPerBlock) * _pageSize;
+	}
+
+	/**
+	 * Returns the decompressed contents of a block.
+	 *
+	 * @param block index of the block
+	 * @return decompressed contents
+	 */
+	private byte[] decompressBlock(int block) {
+		synchronized(_blockCache) {
+			byte[] cached = _blockCache.get(block);
+			if(cached != null) {
+				return cached;
+			}
+		}
+
+		ByteBuffer buf = _segments[_blockSegment[block]].duplicate();
+		buf.position((int)(_blockOffsets[block] - _segmentOffsets[_blockSegment[block]]));
+		byte[] stored = new byte[_blockLengths[block]];
+		buf.get(stored);
+
+		byte[] contents = new byte[blockContentSize(block)];
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(stored);
+			int len = 0;
+			while((len < contents.length) && !inflater.finished()) {
+				int n = inflater.inflate(contents, len, contents.length - len);
+				if((n == 0) && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				len += n;
+			}
+			if(len != contents.length) {
+				throw new IllegalStateException("Truncated block " + block + " in signature container " + _file.getAbsolutePath());
+			}
+		} catch (DataFormatException e) {
+			throw new IllegalStateException("Corrupt block " + block + " in signature container " + _file.getAbsolutePath(), e);
+		} finally {
+			inflater.end();
+		}
+
+		synchronized(_blockCache) {
+			_blockCache.put(block, contents);
+		}
+		return contents;
+	}
+
+	/**
+	 * Closes the underlying file. Mapped contents stay accessible.
+	 */
+	@Override
+	public void close() throws IOException {
+		_ch.close();
+	}
+}
@@ -6,15 +6,17 @@
 
 package de.uni_hamburg.svs.memsig;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -24,7 +26,6 @@ import org.apache.commons.cli.MissingOptionException;
 import org.apache.commons.cli.Option;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
-import org.apache.commons.lang3.ArrayUtils;
 
 public class MemSigs {
 	static final String sep = ";";
@@ -87,11 +88,66 @@ public class MemSigs {
 		
 		Option findGroupsAlgOpt = Option.builder("falg")
 								   .longOpt("findgrpalg")
-								   .desc("specifies the algorithm used for identifying groups: similarity-maxsigsize, neighbour-maxgrpsize (Default if falg is not specified: similarity-maxsigsize)")
+								   .desc("specifies the algorithm used for identifying groups: similarity-maxsigsize, neighbour-maxgrpsize, contiguous-optimal, branchbound-maxsigsize, annealing-maxsigsize (runs until -tbudget or -ebudget is exhausted, by default for " + AnnealingGroupFinder.DEFAULT_EVALUATIONS + " evaluations) (Default if falg is not specified: similarity-maxsigsize)")
 								   .hasArg()
 								   .argName("algorithm")
 								   .build();
 		
+		Option sweepOpt = Option.builder("sweep")
+								.desc("runs group finding for all combinations of the thresholds and maximum distances given by -t and -md, which may then be lists or ranges (e.g. -t 0.2:0.6:0.1 -md 5,10,20), and writes a table of the results. Output directory can be specified (default: swpath/sweep).")
+								.optionalArg(true)
+								.numberOfArgs(1)
+								.argName("output_dir")
+								.build();
+		
+		Option nodeBudgetOpt = Option.builder("nodes")
+								.longOpt("nodebudget")
+								.hasArg()
+								.argName("nodes")
+								.desc("maximum number of search nodes for -falg branchbound-maxsigsize (default: " + BranchAndBoundGroupFinder.DEFAULT_NODE_BUDGET + ")")
+								.build();
+		
+		Option specOpt = Option.builder("spec")
+								.longOpt("speculative")
+								.hasArg()
+								.argName("candidates")
+								.desc("number of candidates evaluated at once (using the threads given by -j) when adding versions to a group with -falg similarity-maxsigsize (default: 1)")
+								.build();
+		
+		Option timeBudgetOpt = Option.builder("tbudget")
+								.longOpt("timebudget")
+								.hasArg()
+								.argName("seconds")
+								.desc("time budget for finding groups with -falg similarity-maxsigsize, branchbound-maxsigsize or annealing-maxsigsize. Once it is exhausted, the remaining candidates form groups of their own with similarity-maxsigsize, and the best configuration found so far is used with branchbound-maxsigsize. With annealing-maxsigsize, the search runs until the budget is exhausted (default if neither -tbudget nor -ebudget is given: " + AnnealingGroupFinder.DEFAULT_EVALUATIONS + " evaluations).")
+								.build();
+		
+		Option evalBudgetOpt = Option.builder("ebudget")
+								.longOpt("evalbudget")
+								.hasArg()
+								.argName("evaluations")
+								.desc("budget for the number of group signatures evaluated when finding groups (see -tbudget)")
+								.build();
+		
+		Option checkpointOpt = Option.builder("ckpt")
+								.longOpt("checkpoint")
+								.hasArg()
+								.argName("file")
+								.desc("periodically write the state of group finding with -falg similarity-maxsigsize to a file. If the file exists, group finding continues from the state stored in it.")
+								.build();
+		
+		Option checkpointIntervalOpt = Option.builder("ckptint")
+								.longOpt("checkpointinterval")
+								.hasArg()
+								.argName("seconds")
+								.desc("minimum time between two checkpoints (default: 300)")
+								.build();
+		
+		Option corpusOpt = Option.builder("corpus")
+								.hasArg()
+								.argName("file")
+								.desc("excludes pages contained in other software from all signatures. The file lists the other software, one per line as name;swpath;binary.")
+								.build();
+		
 		Option matchpagesOpt = Option.builder("m")
 								.longOpt("matchpgs")
 								.desc("find individual pages matching across versions. Output directory can be specified (Default: swpath/matchpgs)")
@@ -114,6 +170,50 @@ public class MemSigs {
 								.argName("distance")
 								.build();
 		
+		Option mmapOpt = Option.builder("mmap")
+								.longOpt("mapparts")
+								.desc("memory-map code part files instead of reading them onto the heap (for datasets larger than the heap)")
+								.build();
+		
+		Option noFpOpt = Option.builder("nofp")
+								.longOpt("nofingerprints")
+								.desc("do not read or write per-version fingerprint files (fingerprints-<pagesize>.bin)")
+								.build();
+		
+		Option trustFpOpt = Option.builder("trustfp")
+								.longOpt("trustfingerprints")
+								.desc("treat pages with equal fingerprints as equal without comparing their contents. Together with fingerprint files, no page contents are read for indexing, but a fingerprint collision would make signatures wrong (default: compare contents)")
+								.build();
+		
+		Option noWritePartsOpt = Option.builder("nowp")
+								.longOpt("nowriteparts")
+								.desc("do not write segments extracted from binaries to parts-<pagesize> directories")
+								.build();
+		
+		Option sigContainerOpt = Option.builder("sigc")
+								.longOpt("sigcontainer")
+								.desc("additionally write all signatures of -vsigs and -f to a single signature container file (<swname>-<pagesize>.msig)")
+								.build();
+		
+		Option compressSigsOpt = Option.builder("sigz")
+								.longOpt("compresssigs")
+								.desc("compress the page contents in signature container files (see -sigc)")
+								.build();
+		
+		Option catalogOpt = Option.builder("catalog")
+								.longOpt("sigcatalog")
+								.hasArg()
+								.argName("dir")
+								.desc("add all signatures of -vsigs and -f to a signature catalog in the specified directory and write the overlapping signatures in the catalog to overlaps.csv in it")
+								.build();
+		
+		Option threadsOpt = Option.builder("j")
+								.longOpt("threads")
+								.hasArg()
+								.argName("threads")
+								.desc("number of worker threads for generating version signatures, for -sweep, for -spec, for -falg branchbound-maxsigsize and as number of islands for -falg annealing-maxsigsize (default: 1)")
+								.build();
+		
 		Option helpOpt = Option.builder("h")
 								.longOpt("help")
 								.desc("print this message")
@@ -134,11 +234,27 @@ public class MemSigs {
 		opt.addOption(cmpVersOpt);
 		opt.addOption(findGroupsOpt);
 		opt.addOption(findGroupsAlgOpt);
+		opt.addOption(sweepOpt);
+		opt.addOption(nodeBudgetOpt);
+		opt.addOption(specOpt);
+		opt.addOption(timeBudgetOpt);
+		opt.addOption(evalBudgetOpt);
+		opt.addOption(checkpointOpt);
+		opt.addOption(checkpointIntervalOpt);
+		opt.addOption(corpusOpt);
 		opt.addOption(matchpagesOpt);
 		opt.addOption(helpOpt);
 		opt.addOption(psizeOpt);
 		opt.addOption(threshOpt);
 		opt.addOption(maxDistOpt);
+		opt.addOption(mmapOpt);
+		opt.addOption(threadsOpt);
+		opt.addOption(noFpOpt);
+		opt.addOption(trustFpOpt);
+		opt.addOption(noWritePartsOpt);
+		opt.addOption(sigContainerOpt);
+		opt.addOption(compressSigsOpt);
+		opt.addOption(catalogOpt);
 		
 		CommandLineParser parser = new DefaultParser();
 		try {
@@ -148,6 +264,21 @@ public class MemSigs {
 				printHelp(opt);
 			}
 			
+			// -t and -md are lists for -sweep, but single values for -f.
+			if(cmd.hasOption(findGroupsOpt.getOpt()) && cmd.hasOption(sweepOpt.getOpt())) {
+				System.err.println("Error: -f and -sweep cannot be used together.");
+				System.exit(1);
+			}
+			if(cmd.hasOption(sweepOpt.getOpt())) {
+				// The searches of a sweep run with default settings.
+				for(Option o : new Option[] { timeBudgetOpt, evalBudgetOpt, checkpointOpt, checkpointIntervalOpt, specOpt, nodeBudgetOpt }) {
+					if(cmd.hasOption(o.getOpt())) {
+						System.err.println("Error: -" + o.getOpt() + " is not supported by -sweep.");
+						System.exit(1);
+					}
+				}
+			}
+			
 			String swname = cmd.getOptionValue(swnameOpt.getOpt());
 			String swpathStr = cmd.getOptionValue(swpathOpt.getOpt());
 			String binname = cmd.getOptionValue(binnameOpt.getOpt());
@@ -164,15 +295,65 @@ public class MemSigs {
 				}
 			}
 			
+			// Get number of worker threads from CLI arg. If not specified, work sequentially.
+			int threads = 1;
+			if(cmd.hasOption(threadsOpt.getOpt())) {
+				try {
+					threads = Integer.parseInt(cmd.getOptionValue(threadsOpt.getOpt()));
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid number of threads -- must be a number.");
+					System.exit(1);
+				}
+			}
+			
 			File swpath = new File(swpathStr);
 			File versionsPath = new File(swpath, "versions");
 			
-			Software sw = new Software(swname, versionsPath, binname, pagesize);
+			LoadOptions loadOpts = new LoadOptions();
+			loadOpts.setMapParts(cmd.hasOption(mmapOpt.getOpt()));
+			loadOpts.setUseFingerprintFiles(!cmd.hasOption(noFpOpt.getOpt()));
+			loadOpts.setTrustFingerprints(cmd.hasOption(trustFpOpt.getOpt()));
+			loadOpts.setWritePartFiles(!cmd.hasOption(noWritePartsOpt.getOpt()));
+			
+			Software sw = new Software(swname, versionsPath, binname, pagesize, loadOpts);
+			
+			// Build a corpus from the other software if specified, so that
+			// pages found in other software are excluded from signatures.
+			if(cmd.hasOption(corpusOpt.getOpt())) {
+				Corpus corpus = new Corpus(pagesize);
+				corpus.addSoftware(sw);
+				File corpusFile = new File(cmd.getOptionValue(corpusOpt.getOpt()));
+				try(BufferedReader corpusReader = new BufferedReader(new FileReader(corpusFile))) {
+					String line;
+					while((line = corpusReader.readLine()) != null) {
+						line = line.trim();
+						if(line.isEmpty() || line.startsWith("#")) {
+							continue;
+						}
+						String[] fields = line.split(sep);
+						if(fields.length != 3) {
+							System.err.println("Invalid line in corpus file: " + line);
+							System.exit(1);
+						}
+						Software other = new Software(fields[0], new File(fields[1], "versions"), fields[2], pagesize, loadOpts);
+						corpus.addSoftware(other);
+					}
+				}
+				System.out.println("Corpus: " + corpus.getSoftware().size() + " software, " + corpus.numberOfContents() + " distinct pages, "
+						+ corpus.numberOfForeignContents(sw) + " pages of " + swname + " found in other software");
+			}
+			
+			File catalogDir = null;
+			SignatureCatalog catalog = null;
+			if(cmd.hasOption(catalogOpt.getOpt())) {
+				catalogDir = new File(cmd.getOptionValue(catalogOpt.getOpt()));
+				catalog = new SignatureCatalog(catalogDir);
+			}
 			
 			// Generate version signatures (and statistics) if the appropriate CLI
 			// option has been set.
 			if(cmd.hasOption(vsigsOpt.getOpt())) {
-				VersionSignature[] sigs = sw.generateVersionSignatures(pagesize);
+				VersionSignature[] sigs = sw.generateVersionSignatures(pagesize, threads);
 				
 				// Unless no versions have been provided, this should return signatures...
 				if(sigs.length == 0) {
@@ -250,6 +431,13 @@ public class MemSigs {
 					}
 				}
 				
+				if(cmd.hasOption(sigContainerOpt.getOpt())) {
+					writeSignatureContainer(SignatureFile.getFile(vsigdir, sw, pagesize), sigs, cmd.hasOption(compressSigsOpt.getOpt()));
+				}
+				if((catalog != null) && (sigs.length > 0)) {
+					catalog.addSignatures(swname + "-" + pagesize + "-" + vsigdirname, sigs, cmd.hasOption(compressSigsOpt.getOpt()));
+				}
+				
 				// close output streams and writers
 				infoWriter.flush();
 				infoWriter.close();
@@ -269,7 +457,7 @@ public class MemSigs {
 			
 			// Calculate similarities between versions (if appropriate CLI option is set)
 			if(cmd.hasOption(cmpVersOpt.getOpt())) {
-				TreeMap<SoftwareVersion,HashMap<SoftwareVersion, VersionComparisonResult>> cmpres = sw.compareAllVersions(pagesize);
+				VersionComparisonMatrix cmpres = sw.compareAllVersionsMatrix(pagesize);
 				
 				// Create subdirectory for comparison stats (if no name is specified in CLI options, use comp as default
 				String cmpdirname = cmd.getOptionValue(cmpVersOpt.getOpt());
@@ -294,7 +482,7 @@ public class MemSigs {
 				FileOutputStream duplRelOs = new FileOutputStream(duplRelFile);
 				PrintWriter duplRelWriter = new PrintWriter(duplRelOs);
 				
-				SoftwareVersion[] versions = cmpres.keySet().toArray(new SoftwareVersion[0]);
+				SoftwareVersion[] versions = cmpres.getVersions();
 				
 				// Write headers to stat files
 				cmpWriter.write(sep);
@@ -321,7 +509,7 @@ public class MemSigs {
 				
 				// write stats to stat files
 				for(int i = 0; i < versions.length; i++) {
-					int numPages = versions[i].numberOfPages(pagesize);
+					int numPages = cmpres.numberOfPages(i);
 					cmpWriter.write(versions[i].toString());
 					cmpWriter.write(sep);
 					cmpWriter.write(Integer.toString(numPages));
@@ -334,21 +522,19 @@ public class MemSigs {
 					duplRelWriter.write(sep);
 					duplRelWriter.write(Integer.toString(numPages));
 					
-					HashMap<SoftwareVersion, VersionComparisonResult> vmap = cmpres.get(versions[i]);
 					for(int j = 0; j < versions.length; j++) {
-						VersionComparisonResult res = vmap.get(versions[j]);
-						if(!versions[i].equals(versions[j])) {
+						if(i != j) {
 							cmpWriter.write(sep);
-							cmpWriter.write(Integer.toString(res.numberOfUniques()));
+							cmpWriter.write(Integer.toString(cmpres.numberOfUniques(i, j)));
 							cmpWriter.write(sep);
-							cmpWriter.write(Integer.toString(res.numberOfMatches()));
+							cmpWriter.write(Integer.toString(cmpres.numberOfMatches(i, j)));
 							cmpWriter.write(sep);
-							cmpWriter.write(Integer.toString(res.numberOfInternalDuplicates()));
+							cmpWriter.write(Integer.toString(cmpres.numberOfInternalDuplicates(i)));
 							
 							duplWriter.write(sep);
-							duplWriter.write(Integer.toString(res.numberOfMatches()));
+							duplWriter.write(Integer.toString(cmpres.numberOfMatches(i, j)));
 							
-							double relDupl = ((double)res.numberOfMatches()) / numPages * 100;
+							double relDupl = ((double)cmpres.numberOfMatches(i, j)) / numPages * 100;
 							duplRelWriter.write(sep);
 							duplRelWriter.write(Double.toString(relDupl));
 							
@@ -356,7 +542,7 @@ public class MemSigs {
 							// If a version is compared with itself, all pages will match.
 							cmpWriter.write(sep + sep + sep);
 							duplWriter.write(sep);
-							duplWriter.write(Integer.toString(versions[j].numberOfPages(pagesize)));
+							duplWriter.write(Integer.toString(cmpres.numberOfPages(j)));
 							duplRelWriter.write(sep + "100");
 						}
 					}
@@ -399,12 +585,20 @@ public class MemSigs {
 				// get threshold from CLI
 				String threshstr = cmd.getOptionValue(threshOpt.getOpt());
 				if(threshstr == null) threshstr = "0.4";
-				Double thresh = new Double(threshstr);
 				
 				// get maximum distance from CLI
 				String maxDistStr = cmd.getOptionValue(maxDistOpt.getOpt());
 				if(maxDistStr == null) maxDistStr = "10";
-				Integer maxDist = new Integer(maxDistStr);
+				
+				double thresh = 0;
+				int maxDist = 0;
+				try {
+					thresh = Double.parseDouble(threshstr);
+					maxDist = Integer.parseInt(maxDistStr);
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid threshold or maximum distance: " + e.getMessage() + " (lists and ranges are only supported by -sweep)");
+					System.exit(1);
+				}
 				
 				//RecursiveGroupFinder grpf = new RecursiveGroupFinder(sw, pagesize, thresh, maxDist);
 				//GroupFinder grpf = new IterativeGroupFinder(sw, pagesize, thresh, maxDist);
@@ -414,16 +608,100 @@ public class MemSigs {
 				}
 				
 				GroupFinder grpf = null;
+				ForkJoinPool specPool = null;
 				if(algstring.equals("similarity-maxsigsize")) {
-					grpf = new IterativeSimilarityGroupFinder(sw, pagesize, thresh, maxDist);
+					IterativeSimilarityGroupFinder simgrpf = new IterativeSimilarityGroupFinder(sw, pagesize, thresh, maxDist);
+					if(cmd.hasOption(specOpt.getOpt())) {
+						int specCands = 1;
+						try {
+							specCands = Integer.parseInt(cmd.getOptionValue(specOpt.getOpt()));
+						} catch (NumberFormatException e) {
+							System.err.println("Invalid number of speculatively evaluated candidates -- must be a number.");
+							System.exit(1);
+						}
+						if(threads > 1) {
+							specPool = new ForkJoinPool(threads);
+						}
+						simgrpf.setSpeculativeEvaluation(specCands, specPool);
+					}
+					grpf = simgrpf;
 				} else if (algstring.equals("neighbour-maxgrpsize")) {
 					grpf = new IterativeNeighbouringGroupFinder(sw, pagesize, thresh, maxDist);
+				} else if (algstring.equals("contiguous-optimal")) {
+					grpf = new ContiguousGroupFinder(sw, pagesize, thresh, maxDist);
+				} else if (algstring.equals("branchbound-maxsigsize")) {
+					BranchAndBoundGroupFinder bbgrpf = new BranchAndBoundGroupFinder(sw, pagesize, thresh, maxDist);
+					bbgrpf.setThreads(threads);
+					if(cmd.hasOption(nodeBudgetOpt.getOpt())) {
+						try {
+							bbgrpf.setNodeBudget(Long.parseLong(cmd.getOptionValue(nodeBudgetOpt.getOpt())));
+						} catch (NumberFormatException e) {
+							System.err.println("Invalid node budget -- must be a number.");
+							System.exit(1);
+						}
+					}
+					grpf = bbgrpf;
+				} else if (algstring.equals("annealing-maxsigsize")) {
+					AnnealingGroupFinder sagrpf = new AnnealingGroupFinder(sw, pagesize, thresh, maxDist);
+					sagrpf.setIslands(threads);
+					grpf = sagrpf;
 				} else {
 					System.err.print("ERROR: Incorrect group finding algorithm specified.");
 					MemSigs.printHelp(opt);
 					System.exit(1);
 				}
-				SoftwareVersionGroup[] bestGroups = grpf.findSignatureGroups();
+				if(!grpf.supportsBudget() && (cmd.hasOption(timeBudgetOpt.getOpt()) || cmd.hasOption(evalBudgetOpt.getOpt()))) {
+					System.err.println("Error: -tbudget and -ebudget are not supported by -falg " + algstring + ".");
+					System.exit(1);
+				}
+				if(!grpf.supportsCheckpoint() && cmd.hasOption(checkpointOpt.getOpt())) {
+					System.err.println("Error: -ckpt is not supported by -falg " + algstring + ".");
+					System.exit(1);
+				}
+				try {
+					if(cmd.hasOption(timeBudgetOpt.getOpt())) {
+						grpf.setTimeBudget(Long.parseLong(cmd.getOptionValue(timeBudgetOpt.getOpt())) * 1000);
+					}
+					if(cmd.hasOption(evalBudgetOpt.getOpt())) {
+						grpf.setEvaluationBudget(Long.parseLong(cmd.getOptionValue(evalBudgetOpt.getOpt())));
+					}
+					if(cmd.hasOption(checkpointOpt.getOpt())) {
+						long interval = 300;
+						if(cmd.hasOption(checkpointIntervalOpt.getOpt())) {
+							interval = Long.parseLong(cmd.getOptionValue(checkpointIntervalOpt.getOpt()));
+						}
+						grpf.setCheckpointFile(new File(cmd.getOptionValue(checkpointOpt.getOpt())), interval * 1000);
+					}
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid budget or checkpoint interval -- must be a number.");
+					System.exit(1);
+				}
+				
+				SoftwareVersionGroup[] bestGroups = null;
+				try {
+					bestGroups = grpf.findSignatureGroups();
+				} catch (IllegalStateException e) {
+					// e.g. a checkpoint that does not belong to this run
+					System.err.println("Error: " + e.getMessage());
+					e.printStackTrace();
+					System.exit(1);
+				}
+				if(grpf.isResumed()) {
+					System.out.println("Resumed group finding from " + cmd.getOptionValue(checkpointOpt.getOpt()) + " (" + grpf.getResumedGroups() + " groups, "
+							+ grpf.getResumedCandidates() + " candidates remaining)");
+				}
+				if(grpf.isBudgetExhausted()) {
+					System.out.println("Budget exhausted after " + grpf.getEvaluations() + " evaluations -- using the best group configuration found so far.");
+				}
+				if(specPool != null) {
+					specPool.shutdown();
+				}
+				
+				if(grpf instanceof BranchAndBoundGroupFinder) {
+					BranchAndBoundGroupFinder bbgrpf = (BranchAndBoundGroupFinder)grpf;
+					System.out.println("Search nodes explored: " + bbgrpf.getNodesExplored() + " in " + bbgrpf.getIterations() + " iterations, subtrees pruned: " + bbgrpf.getNodesPruned()
+							+ " (" + (bbgrpf.getPrunedFraction() * 100) + "% of search space)" + (bbgrpf.isNodeBudgetExhausted() ? ", node budget exhausted" : ""));
+				}
 				
 				// Create String for group configuration and stats file
 				String grpcfg = new String();
@@ -470,6 +748,7 @@ public class MemSigs {
 				
 				
 				// write group signatures to files in grpdir
+				VersionSignature[] grpSigs = new VersionSignature[bestGroups.length];
 				for(int i = 0; i < bestGroups.length; i++) {
 					SoftwareVersion[] versions = bestGroups[i].toArray();
 					//SoftwareVersion[] versions = new SoftwareVersion[currGrpArray.length];
@@ -481,6 +760,7 @@ public class MemSigs {
 					System.out.println("Generating "  + grpname + "...");
 					
 					VersionSignature sig = sw.generateVersionsSignature(versions, pagesize);
+					grpSigs[i] = sig;
 					
 					grpstatsWriter.write("\n");
 					grpstatsWriter.write(grpname + sep);
@@ -494,28 +774,11 @@ public class MemSigs {
 					grpstatsWriter.write(sig.getOtherVersionDups() + sep);
 					grpstatsWriter.write(sig.getNotMatchingInGroupCount() + sep);
 					
-					SoftwareVersion[] idvVer = sw.getVersions().toArray(new SoftwareVersion[0]);
-					
 					// avgDist
-					/*long distSum = 0;
-					int distNum = 0;
-					for(int j = 0; j < versions.length; j++) {
-						int pos1 = ArrayUtils.indexOf(idvVer, versions[j]);
-						for(int k = j+1; k < versions.length; k++) {
-							int pos2 = ArrayUtils.indexOf(idvVer, versions[k]);
-							int dist = Math.abs(pos2 - pos1);
-							distSum += dist;
-							distNum++;
-						}
-					}
-					double avgDist = (double)distSum / distNum;*/
 					double avgDist = bestGroups[i].getAvgVersionDistance();
 					grpstatsWriter.write(avgDist + sep);
 					
 					// lowHiDist
-					//int lowPos = ArrayUtils.indexOf(idvVer, versions[0]);
-					//int hiPos = ArrayUtils.indexOf(idvVer, versions[versions.length-1]);
-					//int lowHiDist = Math.abs(hiPos - lowPos);
 					int lowHiDist = bestGroups[i].getMaxVersionDistance();
 					grpstatsWriter.write(lowHiDist + sep);
 					
@@ -527,11 +790,79 @@ public class MemSigs {
 					sig.writeToFile(sigFile);
 				}
 				
+				if(cmd.hasOption(sigContainerOpt.getOpt())) {
+					writeSignatureContainer(SignatureFile.getFile(grpdir, sw, pagesize), grpSigs, cmd.hasOption(compressSigsOpt.getOpt()));
+				}
+				if((catalog != null) && (grpSigs.length > 0)) {
+					catalog.addSignatures(swname + "-" + pagesize + "-" + grpdirname, grpSigs, cmd.hasOption(compressSigsOpt.getOpt()));
+				}
+				
 				grpstatsWriter.flush();
 				grpstatsWriter.close();
 				grpstatsOs.flush();
 				grpstatsOs.close();
 			}
+			
+			if(catalog != null) {
+				List<SignatureCatalog.Overlap> overlaps = catalog.findOverlaps();
+				
+				// write overlapping pairs of signatures to file in catalog dir
+				File overlapsFile = new File(catalogDir, "overlaps.csv");
+				FileOutputStream overlapsOs = new FileOutputStream(overlapsFile);
+				PrintWriter overlapsWriter = new PrintWriter(overlapsOs);
+				overlapsWriter.write("signature1" + sep + "signature2" + sep + "sharedPages");
+				for(SignatureCatalog.Overlap o : overlaps) {
+					overlapsWriter.write("\n");
+					overlapsWriter.write(o.getFirst() + sep + o.getSecond() + sep + o.getPages());
+				}
+				overlapsWriter.flush();
+				overlapsWriter.close();
+				overlapsOs.flush();
+				overlapsOs.close();
+				
+				System.out.println("Catalog: " + catalog.numberOfSignatures() + " signatures in " + catalog.numberOfContainers() + " containers, "
+						+ overlaps.size() + " overlapping pairs of signatures (see " + overlapsFile.getPath() + ")");
+				catalog.close();
+			}
+			
+			if(cmd.hasOption(sweepOpt.getOpt())) {
+				String algstring = "similarity-maxsigsize"; // default
+				if(cmd.hasOption(findGroupsAlgOpt.getOpt())) {
+					algstring = cmd.getOptionValue(findGroupsAlgOpt.getOpt());
+				}
+				if(!GroupFinderSweep.supportsAlgorithm(algstring)) {
+					System.err.println("ERROR: Group finding algorithm " + algstring + " is not supported by -sweep.");
+					System.exit(1);
+				}
+				
+				// get lists of thresholds and maximum distances from CLI
+				String threshstr = cmd.getOptionValue(threshOpt.getOpt());
+				if(threshstr == null) threshstr = "0.4";
+				String maxDistStr = cmd.getOptionValue(maxDistOpt.getOpt());
+				if(maxDistStr == null) maxDistStr = "10";
+				
+				double[] threshs = null;
+				int[] maxDists = null;
+				try {
+					threshs = GroupFinderSweep.parseDoubleList(threshstr);
+					maxDists = GroupFinderSweep.parseIntList(maxDistStr);
+				} catch (NumberFormatException e) {
+					System.err.println("Invalid threshold or maximum distance list: " + e.getMessage());
+					System.exit(1);
+				}
+				
+				GroupFinderSweep sweep = new GroupFinderSweep(sw, pagesize, algstring, threshs, maxDists);
+				sweep.run(threads);
+				
+				// Create subdirectory for sweep results (if no name is specified in CLI options, use sweep as default)
+				String sweepdirname = cmd.getOptionValue(sweepOpt.getOpt());
+				if(sweepdirname == null) sweepdirname = "sweep";
+				File sweepdir = new File(swpath, sweepdirname);
+				if(!sweepdir.exists()) {
+					sweepdir.mkdir();
+				}
+				sweep.writeResults(new File(sweepdir, "sweep.csv"));
+			}
 		} catch (MissingOptionException e) {
 			printHelp(opt);
 			System.exit(1);
@@ -550,6 +881,27 @@ public class MemSigs {
 		}
 	}
 
+	/**
+	 * Writes signatures to a signature container file (see {@link SignatureFile}).
+	 * Nothing is written if there are no signatures.
+	 * @param f file to write to
+	 * @param sigs signatures to write
+	 * @param compress whether to compress the page contents
+	 */
+	private static void writeSignatureContainer(File f, VersionSignature[] sigs, boolean compress) {
+		if(sigs.length == 0) {
+			System.out.println("No signatures to write to " + f.getAbsolutePath());
+			return;
+		}
+		try {
+			SignatureFile.write(f, sigs, compress);
+			System.out.println("Wrote " + sigs.length + " signatures to " + f.getAbsolutePath() + " (" + f.length() + " bytes)");
+		} catch (IOException e) {
+			System.err.println("Error: Could not write to signature container " + f.getAbsolutePath());
+			e.printStackTrace();
+		}
+	}
+	
 	/**
 	 * Prints the help message containing information about the CLI options.
 	 * @param opt Options object containing CLI options.
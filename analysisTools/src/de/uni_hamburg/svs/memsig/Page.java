@@ -9,13 +9,23 @@ import java.util.Objects;
  * @author Jens Lindemann
  */
 public class Page {
-	private byte[] _bytes;
+	private byte[] _bytes; // null if contents are read from the part when needed
 	private CodePart _part;
 	private long _pos;
+	private int _pageSize;
+	private MappedSignatureFile _container; // source of the contents of pages read from a signature container
+	private int _content; // index of the page contents within _container
 	
-	private boolean _all0Checked;
+	// The lazily computed values below may be computed concurrently by several
+	// threads. As the results are identical, this is harmless. The volatile
+	// flags ensure that other threads only read values that have been written
+	// completely.
+	private volatile boolean _fingerprintComputed;
+	private long _fingerprint;
+	
+	private volatile boolean _all0Checked;
 	private boolean _isAll0;
-	private boolean _all1Checked;
+	private volatile boolean _all1Checked;
 	private boolean _isAll1;
 	
 	/**
@@ -29,6 +39,75 @@ public class Page {
 		_bytes = bytes; // TODO This could be retrieved from CodePart to save memory.
 		_part = part;
 		_pos = pos;
+		_pageSize = bytes.length;
+	}
+	
+	/**
+	 * Creates a new Page object whose fingerprint and all-0/all-1 status
+	 * are taken from the {@link PageTable} of its {@link CodePart}.
+	 * 
+	 * @param bytes contents of the Page
+	 * @param part {@link CodePart} the Page belongs to
+	 * @param pos offset of the Page within the {@link CodePart}
+	 * @param table {@link PageTable} of part for the page size
+	 */
+	public Page(byte[] bytes, CodePart part, long pos, PageTable table) {
+		this(bytes, part, pos);
+		initFromPageTable(table);
+	}
+	
+	/**
+	 * Creates a new Page object whose contents are not stored within the Page,
+	 * but read from its {@link CodePart} whenever they are needed. This
+	 * is used for memory-mapped CodeParts.
+	 * 
+	 * @param part {@link CodePart} the Page belongs to
+	 * @param pos offset of the Page within the {@link CodePart}
+	 * @param pageSize page size
+	 */
+	public Page(CodePart part, long pos, int pageSize) {
+		_bytes = null;
+		_part = part;
+		_pos = pos;
+		_pageSize = pageSize;
+		initFromPageTable(part.getPageTable(pageSize));
+	}
+	
+	/**
+	 * Creates a new Page object for a page of a signature container, whose
+	 * contents are read from the container whenever they are needed. Such
+	 * Pages do not belong to a {@link CodePart}.
+	 * 
+	 * @param container the {@link MappedSignatureFile} the Page has been read from
+	 * @param content index of the Page contents within the container
+	 * @param pos offset of the Page within its part
+	 * @param fingerprint fingerprint of the Page contents
+	 */
+	Page(MappedSignatureFile container, int content, long pos, long fingerprint) {
+		_bytes = null;
+		_part = null;
+		_pos = pos;
+		_pageSize = container.getPageSize();
+		_container = container;
+		_content = content;
+		_fingerprint = fingerprint;
+		_fingerprintComputed = true;
+	}
+	
+	/**
+	 * Takes the fingerprint and all-0/all-1 status of the Page from the
+	 * {@link PageTable} of its {@link CodePart}.
+	 * 
+	 * @param table {@link PageTable} of the Page's part
+	 */
+	private void initFromPageTable(PageTable table) {
+		int pageNo = (int)(_pos / _pageSize);
+		_fingerprint = table.getFingerprint(pageNo);
+		_fingerprintComputed = true;
+		_isAll0 = table.isAllZeroes(pageNo);
+		_all0Checked = true;
+		_isAll1 = table.isAllOnes(pageNo);
+		_all1Checked = true;
 	}
 	
 	/**
@@ -37,17 +116,42 @@ public class Page {
 	 * @return contents of the Page
 	 */
 	public byte[] getBytes() {
+		if(_bytes == null) {
+			if(_container != null) {
+				return _container.getContentBytes(_content);
+			}
+			return _part.getPageBytes((int)(_pos / _pageSize), _pageSize);
+		}
 		return _bytes;
 	}
 	
+	/**
+	 * Returns the {@link PageFingerprint} of the Page's contents.
+	 * 
+	 * @return fingerprint of the Page
+	 */
+	public long getFingerprint() {
+		if(!_fingerprintComputed) {
+			_fingerprint = PageFingerprint.of(getBytes());
+			_fingerprintComputed = true; // publishes _fingerprint
+		}
+		
+		return _fingerprint;
+	}
+	
 	/**
 	 * Checks whether the contents of the Page are equal to those of o.
+	 * Fingerprints are compared first, so that Pages with different contents
+	 * can usually be rejected without comparing their contents.
 	 * 
 	 * @param o Page to compare to
 	 * @return true if contents are equal, false otherwise
 	 */
 	public boolean contentsEqualTo(Page o) {
-		return Arrays.equals(_bytes, o._bytes);
+		if(getFingerprint() != o.getFingerprint()) {
+			return false;
+		}
+		return Arrays.equals(getBytes(), o.getBytes());
 	}
 
 	/**
@@ -56,13 +160,14 @@ public class Page {
 	 * @return size of the Page
 	 */
 	public int getPageSize() {
-		return _bytes.length;
+		return _pageSize;
 	}
 	
 	/**
 	 * Returns the {@link CodePart} the Page belongs to.
 	 * 
-	 * @return the {@link CodePart} the Page belongs to
+	 * @return the {@link CodePart} the Page belongs to or null if the Page
+	 * 			has been read from a signature container
 	 */
 	public CodePart getPart() {
 		return _part;
@@ -74,7 +179,7 @@ public class Page {
 	 * @return index of the Page
 	 */
 	public long getPageNumber() {
-		long pageno = _pos / _bytes.length;
+		long pageno = _pos / _pageSize;
 		return pageno;
 	}
 	
@@ -94,14 +199,16 @@ public class Page {
 	 */
 	public boolean isAllZeroes() {
 		if(!_all0Checked) {
-			_isAll0 = true;
-			for(int i = 0; i < _bytes.length; i++) {
-				if(_bytes[i] != 0) {
-					_isAll0 = false;
+			boolean isAll0 = true;
+			byte[] bytes = getBytes();
+			for(int i = 0; i < bytes.length; i++) {
+				if(bytes[i] != 0) {
+					isAll0 = false;
 					break;
 				}
 			}
-			_all0Checked = true;
+			_isAll0 = isAll0;
+			_all0Checked = true; // publishes _isAll0
 		}
 		
 		return _isAll0;
@@ -114,14 +221,16 @@ public class Page {
 	 */
 	public boolean isAllOnes() {
 		if(!_all1Checked) {
-			_isAll1 = true;
-			for(int i = 0; i < _bytes.length; i++) {
-				if(_bytes[i] != 1) {
-					_isAll1 = false;
+			boolean isAll1 = true;
+			byte[] bytes = getBytes();
+			for(int i = 0; i < bytes.length; i++) {
+				if(bytes[i] != 1) {
+					isAll1 = false;
 					break;
 				}
 			}
-			_all1Checked = true;
+			_isAll1 = isAll1;
+			_all1Checked = true; // publishes _isAll1
 		}
 		
 		return _isAll1;
@@ -139,7 +248,8 @@ public class Page {
 		}
 		
 		Page op = (Page)obj;
-		if((this._bytes.length == op._bytes.length) && (this._part.equals(op._part)) && (this._pos == op._pos)) {
+		if((this._pageSize == op._pageSize) && Objects.equals(this._part, op._part) && (this._pos == op._pos)
+				&& (this._container == op._container) && (this._content == op._content)) {
 			return true;
 		} else {
 			return false;
@@ -148,7 +258,7 @@ public class Page {
 
 	@Override
 	public int hashCode() {
-		return Objects.hash(_part, _pos, _bytes.length);
+		return Objects.hash(_part, _pos, _pageSize);
 	}
 	
 	
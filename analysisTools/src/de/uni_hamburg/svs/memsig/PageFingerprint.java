@@ -0,0 +1,88 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Computes 64-bit fingerprints of page contents. Fingerprints are used to
+ * quickly find candidates for identical {@link Page}s. Two pages with equal
+ * contents will always have the same fingerprint, but pages with equal
+ * fingerprints do not necessarily have equal contents. Callers therefore
+ * still need to compare the actual page contents on a match.
+ *
+ * Bytes beyond the end of the input are treated as 0, i.e. a page at the
+ * end of a {@link CodePart} is fingerprinted with its padding.
+ */
+public final class PageFingerprint {
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long SEED = 0x27D4EB2F165667C5L;
+
+	private PageFingerprint() {
+		// static methods only
+	}
+
+	/**
+	 * Computes the fingerprint of a page.
+	 *
+	 * @param bytes contents of the page
+	 * @return fingerprint of the page
+	 */
+	public static long of(byte[] bytes) {
+		return of(ByteBuffer.wrap(bytes), 0, bytes.length);
+	}
+
+	/**
+	 * Computes the fingerprint of a page of length len starting at position
+	 * from in buf. If buf ends before from+len, the missing bytes are treated
+	 * as 0.
+	 *
+	 * @param buf buffer containing the page
+	 * @param from position of the page within buf
+	 * @param len length of the page (i.e. the page size)
+	 * @return fingerprint of the page
+	 */
+	public static long of(ByteBuffer buf, int from, int len) {
+		ByteBuffer b = buf.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int avail = Math.max(0, Math.min(len, b.limit() - from));
+
+		long h = SEED + len;
+		int i = 0;
+		for(; i + 8 <= avail; i += 8) {
+			h = mix(h, b.getLong(from + i));
+		}
+
+		if(i < len) {
+			// remaining bytes (and padding) are processed 8 bytes at a time
+			// as well, so that padding bytes behave exactly like 0-bytes.
+			for(; i < len; i += 8) {
+				long k = 0;
+				for(int j = 0; j < 8; j++) {
+					if(i + j < avail) {
+						k |= (b.get(from + i + j) & 0xFFL) << (8 * j);
+					}
+				}
+				h = mix(h, k);
+			}
+		}
+
+		return avalanche(h);
+	}
+
+	private static long mix(long h, long k) {
+		k *= PRIME2;
+		k = Long.rotateLeft(k, 31);
+		k *= PRIME1;
+		h ^= k;
+		return Long.rotateLeft(h, 27) * PRIME1 + 0x85EBCA77C2B2AE63L;
+	}
+
+	private static long avalanche(long h) {
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,391 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An index over the contents of all {@link Page}s of a set of
+ * {@link SoftwareVersion}s for a specific page size. Pages are indexed by
+ * their {@link PageFingerprint}, so that finding Pages with identical
+ * contents does not require a linear scan over all versions.
+ *
+ * When the index is built, all pages with identical contents are assigned
+ * the same content ID. For every content ID, the index stores a bitmap
+ * of the versions that contain the content (cf. {@link #getMembership(int)}).
+ * Versions are identified by their position in the collection the index
+ * was built from.
+ *
+ * As fingerprints may collide, page contents are compared byte by byte
+ * whenever fingerprints match. Results are thus exact, but building the
+ * index reads the contents of all pages whose fingerprint has been seen
+ * before, i.e. most pages of similar versions, even if the fingerprints
+ * were loaded from {@link FingerprintFile}s. An index can instead be built
+ * to trust fingerprints (cf. {@link LoadOptions#setTrustFingerprints(boolean)}):
+ * pages with equal fingerprints are then assigned the same content ID
+ * without reading them, and a fingerprint collision merges two different
+ * contents.
+ *
+ * Contents can be marked as foreign if they are also contained in another
+ * {@link Software} (cf. {@link Corpus}). Foreign contents are never part of
+ * a signature.
+ */
+public class PageIndex {
+	private int _pageSize;
+	private SoftwareVersion[] _versions;
+	private HashMap<SoftwareVersion, Integer> _versionPos;
+
+	private HashMap<Long, int[]> _fpContents; // fingerprint -> content IDs
+	private ArrayList<ArrayList<PageLocation>> _contentLocs; // content ID -> locations
+	private ArrayList<VersionBitmap> _membership; // content ID -> versions containing it
+	private HashMap<CodePart, int[]> _partContents; // part -> content ID for each page
+	private BitSet _foreign; // content IDs also contained in other software
+	private boolean _trustFingerprints;
+
+	/**
+	 * Creates a new PageIndex containing all pages of the specified versions.
+	 *
+	 * @param versions {@link SoftwareVersion}s to index
+	 * @param pageSize page size
+	 */
+	public PageIndex(Collection<SoftwareVersion> versions, int pageSize) {
+		this(versions, pageSize, false);
+	}
+
+	/**
+	 * Creates a new PageIndex containing all pages of the specified versions.
+	 *
+	 * @param versions {@link SoftwareVersion}s to index
+	 * @param pageSize page size
+	 * @param trustFingerprints true to treat pages with equal fingerprints as
+	 * 			equal without comparing their contents, false to compare them
+	 */
+	public PageIndex(Collection<SoftwareVersion> versions, int pageSize, boolean trustFingerprints) {
+		_pageSize = pageSize;
+		_trustFingerprints = trustFingerprints;
+		_versions = versions.toArray(new SoftwareVersion[0]);
+		_versionPos = new HashMap<SoftwareVersion, Integer>();
+		_fpContents = new HashMap<Long, int[]>();
+		_contentLocs = new ArrayList<ArrayList<PageLocation>>();
+		_membership = new ArrayList<VersionBitmap>();
+		_partContents = new HashMap<CodePart, int[]>();
+		_foreign = new BitSet();
+
+		for(int v = 0; v < _versions.length; v++) {
+			SoftwareVersion sv = _versions[v];
+			_versionPos.put(sv, v);
+
+			for(CodePart part : sv.getParts()) {
+				int numPages = part.numberOfPages(pageSize);
+				int[] contents = new int[numPages];
+				for(int i = 0; i < numPages; i++) {
+					PageLocation loc = new PageLocation(sv, part, i);
+					contents[i] = addPage(loc, v);
+				}
+				_partContents.put(part, contents);
+			}
+		}
+	}
+
+	/**
+	 * Adds a page to the index.
+	 *
+	 * @param loc location of the page
+	 * @param versionPos position of the page's version
+	 * @return content ID of the page
+	 */
+	private int addPage(PageLocation loc, int versionPos) {
+		long fp = loc.getPart().getPageFingerprint(loc.getPageNumber(), _pageSize);
+
+		int[] cids = _fpContents.get(fp);
+		if((cids != null) && _trustFingerprints) {
+			// Only one content is stored per fingerprint.
+			_contentLocs.get(cids[0]).add(loc);
+			_membership.get(cids[0]).set(versionPos);
+			return cids[0];
+		}
+		if(cids != null) {
+			byte[] bytes = loc.getPart().getPageBytes(loc.getPageNumber(), _pageSize);
+			for(int cid : cids) {
+				if(contentsEqual(_contentLocs.get(cid).get(0), bytes)) {
+					_contentLocs.get(cid).add(loc);
+					_membership.get(cid).set(versionPos);
+					return cid;
+				}
+			}
+		}
+
+		// new content
+		int cid = _contentLocs.size();
+		ArrayList<PageLocation> locs = new ArrayList<PageLocation>(1);
+		locs.add(loc);
+		_contentLocs.add(locs);
+		VersionBitmap members = new VersionBitmap(_versions.length);
+		members.set(versionPos);
+		_membership.add(members);
+
+		if(cids == null) {
+			_fpContents.put(fp, new int[] { cid });
+		} else {
+			int[] ncids = new int[cids.length + 1];
+			System.arraycopy(cids, 0, ncids, 0, cids.length);
+			ncids[cids.length] = cid;
+			_fpContents.put(fp, ncids);
+		}
+
+		return cid;
+	}
+
+	/**
+	 * Returns the page size of the indexed {@link Page}s.
+	 *
+	 * @return the page size
+	 */
+	public int getPageSize() {
+		return _pageSize;
+	}
+
+	/**
+	 * Returns the indexed versions. The position of a version in the returned
+	 * array corresponds to its bit in the membership bitmaps.
+	 *
+	 * @return the indexed versions
+	 */
+	public SoftwareVersion[] getVersions() {
+		return _versions.clone();
+	}
+
+	/**
+	 * Returns the number of indexed versions.
+	 *
+	 * @return number of indexed versions
+	 */
+	public int numberOfVersions() {
+		return _versions.length;
+	}
+
+	/**
+	 * Returns the position of a version within the index, i.e. its bit in the
+	 * membership bitmaps.
+	 *
+	 * @param sv {@link SoftwareVersion} to get position for
+	 * @return position of sv or -1 if sv is not indexed
+	 */
+	public int getVersionPosition(SoftwareVersion sv) {
+		// For an index over all versions of a Software, the position of a
+		// version is its ordinal.
+		int ordinal = sv.getOrdinal();
+		if((ordinal < _versions.length) && (_versions[ordinal] == sv)) {
+			return ordinal;
+		}
+
+		Integer pos = _versionPos.get(sv);
+		return (pos == null) ? -1 : pos;
+	}
+
+	/**
+	 * Returns a bitmap containing the bits of the specified versions.
+	 *
+	 * @param versions {@link SoftwareVersion}s to include
+	 * @return bitmap of the versions
+	 */
+	public VersionBitmap getVersionBitmap(SoftwareVersion[] versions) {
+		VersionBitmap bm = new VersionBitmap(_versions.length);
+		for(SoftwareVersion sv : versions) {
+			bm.set(getVersionPosition(sv));
+		}
+		return bm;
+	}
+
+	/**
+	 * Returns the number of distinct page contents in the index.
+	 *
+	 * @return number of distinct page contents
+	 */
+	public int numberOfContents() {
+		return _contentLocs.size();
+	}
+
+	/**
+	 * Returns the content ID of an indexed page.
+	 *
+	 * @param part {@link CodePart} containing the page
+	 * @param pageNo index of the page within part
+	 * @return content ID of the page or -1 if the part is not indexed
+	 */
+	public int getContentId(CodePart part, int pageNo) {
+		int[] contents = _partContents.get(part);
+		if(contents == null) {
+			return -1;
+		}
+		return contents[pageNo];
+	}
+
+	/**
+	 * Returns the content ID of a page. If the page is located in an indexed
+	 * {@link CodePart}, the ID is looked up directly. Otherwise, the contents
+	 * of the page are searched in the index.
+	 *
+	 * @param p {@link Page} to get content ID for
+	 * @return content ID of p or -1 if no indexed page has the same contents
+	 */
+	public int getContentId(Page p) {
+		if((p.getPageSize() == _pageSize) && _partContents.containsKey(p.getPart())) {
+			return getContentId(p.getPart(), (int)p.getPageNumber());
+		}
+		return findContentId(p);
+	}
+
+	/**
+	 * Searches the contents of a page in the index.
+	 *
+	 * @param p {@link Page} to search for
+	 * @return content ID of p or -1 if no indexed page has the same contents
+	 */
+	private int findContentId(Page p) {
+		int[] cids = _fpContents.get(p.getFingerprint());
+		if(cids != null) {
+			for(int cid : cids) {
+				if(contentsEqual(_contentLocs.get(cid).get(0), p.getBytes())) {
+					return cid;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the bitmap of versions that contain a specific content. The
+	 * returned bitmap must not be modified.
+	 *
+	 * @param contentId content ID
+	 * @return bitmap of versions containing the content
+	 */
+	public VersionBitmap getMembership(int contentId) {
+		return _membership.get(contentId);
+	}
+
+	/**
+	 * Checks whether a content is also contained in another {@link Software}.
+	 *
+	 * @param contentId content ID
+	 * @return true if the content is foreign, false otherwise
+	 */
+	public boolean isForeign(int contentId) {
+		return _foreign.get(contentId);
+	}
+
+	/**
+	 * Returns the number of contents that are also contained in another
+	 * {@link Software}.
+	 *
+	 * @return number of foreign contents
+	 */
+	public int numberOfForeignContents() {
+		return _foreign.cardinality();
+	}
+
+	/**
+	 * Sets the contents that are also contained in another {@link Software}.
+	 *
+	 * @param foreign content IDs of the foreign contents
+	 */
+	void setForeignContents(BitSet foreign) {
+		_foreign = (BitSet)foreign.clone();
+	}
+
+	/**
+	 * Returns the locations of all pages with a specific content.
+	 *
+	 * @param contentId content ID
+	 * @return locations of all pages with the content
+	 */
+	public List<PageLocation> getLocations(int contentId) {
+		return Collections.unmodifiableList(_contentLocs.get(contentId));
+	}
+
+	/**
+	 * Returns the locations of all indexed pages whose contents are equal to
+	 * those of p (including p itself, if it is indexed).
+	 *
+	 * @param p {@link Page} to search for
+	 * @return locations of all pages with contents equal to p
+	 */
+	public List<PageLocation> findPageContent(Page p) {
+		int cid = getContentId(p);
+		if(cid < 0) {
+			return Collections.emptyList();
+		}
+		return getLocations(cid);
+	}
+
+	/**
+	 * Checks whether a page with contents equal to p is contained in sv.
+	 *
+	 * @param sv {@link SoftwareVersion} to search
+	 * @param p {@link Page} to search for
+	 * @return true if sv contains a page with contents equal to p, false otherwise
+	 */
+	public boolean versionContainsPageContent(SoftwareVersion sv, Page p) {
+		int cid = getContentId(p);
+		int pos = getVersionPosition(sv);
+		return (cid >= 0) && (pos >= 0) && _membership.get(cid).get(pos);
+	}
+
+	/**
+	 * Checks whether a page with contents equal to p is contained in part.
+	 *
+	 * @param part {@link CodePart} to search
+	 * @param p {@link Page} to search for
+	 * @return true if part contains a page with contents equal to p, false otherwise
+	 */
+	public boolean partContainsPageContent(CodePart part, Page p) {
+		int cid = getContentId(p);
+		if(cid < 0) {
+			return false;
+		}
+		for(PageLocation loc : _contentLocs.get(cid)) {
+			if(loc.getPart().equals(part)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether a page with contents equal to p is contained in any
+	 * indexed {@link SoftwareVersion} that is not contained in excluded.
+	 *
+	 * @param p {@link Page} to search for
+	 * @param excluded versions that are not to be considered
+	 * @return true if another version contains a page equal to p, false otherwise
+	 */
+	public boolean otherVersionContainsPageContent(Page p, Set<SoftwareVersion> excluded) {
+		int cid = getContentId(p);
+		if(cid < 0) {
+			return false;
+		}
+		VersionBitmap members = _membership.get(cid);
+		for(int v = members.nextSetBit(0); v >= 0; v = members.nextSetBit(v + 1)) {
+			if(!excluded.contains(_versions[v])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Compares the contents of the page at loc to the specified bytes.
+	 *
+	 * @param loc location of an indexed page
+	 * @param bytes page contents to compare to
+	 * @return true if contents are equal, false otherwise
+	 */
+	private boolean contentsEqual(PageLocation loc, byte[] bytes) {
+		return loc.getPart().pageContentEquals(loc.getPageNumber(), _pageSize, bytes);
+	}
+}
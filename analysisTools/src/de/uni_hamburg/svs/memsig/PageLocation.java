@@ -0,0 +1,62 @@
+package de.uni_hamburg.svs.memsig;
+
+/**
+ * This class describes where a {@link Page} is located within a
+ * {@link Software}, i.e. in which {@link SoftwareVersion} and
+ * {@link CodePart} and at which page index within that part.
+ */
+public class PageLocation {
+	private final SoftwareVersion _version;
+	private final CodePart _part;
+	private final int _pageNo;
+
+	/**
+	 * Creates a new PageLocation.
+	 *
+	 * @param version {@link SoftwareVersion} containing the page
+	 * @param part {@link CodePart} containing the page
+	 * @param pageNo index of the page within part
+	 */
+	public PageLocation(SoftwareVersion version, CodePart part, int pageNo) {
+		_version = version;
+		_part = part;
+		_pageNo = pageNo;
+	}
+
+	/**
+	 * Returns the {@link SoftwareVersion} containing the page.
+	 *
+	 * @return the {@link SoftwareVersion} containing the page
+	 */
+	public SoftwareVersion getVersion() {
+		return _version;
+	}
+
+	/**
+	 * Returns the {@link CodePart} containing the page.
+	 *
+	 * @return the {@link CodePart} containing the page
+	 */
+	public CodePart getPart() {
+		return _part;
+	}
+
+	/**
+	 * Returns the index of the page within its {@link CodePart}.
+	 *
+	 * @return index of the page
+	 */
+	public int getPageNumber() {
+		return _pageNo;
+	}
+
+	/**
+	 * Returns the {@link Page} at this location.
+	 *
+	 * @param pageSize page size
+	 * @return the {@link Page} at this location
+	 */
+	public Page getPage(int pageSize) {
+		return _part.getPage(_pageNo, pageSize);
+	}
+}
@@ -0,0 +1,153 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+
+/**
+ * Per-page metadata of a {@link CodePart} for a specific page size: the
+ * {@link PageFingerprint} of every page and whether a page contains only
+ * 0-bytes or only 1-bytes. A PageTable is computed once from the part
+ * contents or read from a {@link FingerprintFile}, so that this
+ * information is available without accessing the page contents.
+ */
+public class PageTable {
+	private final int _pageSize;
+	private final long[] _fingerprints;
+	private final BitSet _allZeroes;
+	private final BitSet _allOnes;
+	private final BitSet _trivial; // all-0 or all-1
+
+	/**
+	 * Creates a new PageTable from precomputed metadata.
+	 *
+	 * @param pageSize page size
+	 * @param fingerprints fingerprints of all pages
+	 * @param allZeroes pages containing only 0-bytes
+	 * @param allOnes pages containing only 1-bytes
+	 */
+	public PageTable(int pageSize, long[] fingerprints, BitSet allZeroes, BitSet allOnes) {
+		_pageSize = pageSize;
+		_fingerprints = fingerprints;
+		_allZeroes = allZeroes;
+		_allOnes = allOnes;
+		
+		_trivial = (BitSet)allZeroes.clone();
+		_trivial.or(allOnes);
+	}
+
+	/**
+	 * Computes the PageTable for part contents. Bytes beyond the end of buf
+	 * are treated as padding (i.e. 0).
+	 *
+	 * @param buf part contents (unpadded)
+	 * @param numPages number of pages in the part
+	 * @param pageSize page size
+	 * @return the PageTable
+	 */
+	public static PageTable compute(ByteBuffer buf, int numPages, int pageSize) {
+		long[] fps = new long[numPages];
+		BitSet zeroes = new BitSet(numPages);
+		BitSet ones = new BitSet(numPages);
+		int length = buf.limit();
+
+		for(int i = 0; i < numPages; i++) {
+			int from = i*pageSize;
+			fps[i] = PageFingerprint.of(buf, from, pageSize);
+
+			// Padding counts as 0-bytes, so a page with padding is never all-1.
+			int to = Math.min(from + pageSize, length);
+			boolean all0 = true;
+			boolean all1 = (to - from) == pageSize;
+			for(int j = from; j < to && (all0 || all1); j++) {
+				byte b = buf.get(j);
+				all0 &= (b == 0);
+				all1 &= (b == 1);
+			}
+			if(all0) {
+				zeroes.set(i);
+			}
+			if(all1) {
+				ones.set(i);
+			}
+		}
+
+		return new PageTable(pageSize, fps, zeroes, ones);
+	}
+
+	/**
+	 * Returns the page size.
+	 *
+	 * @return the page size
+	 */
+	public int getPageSize() {
+		return _pageSize;
+	}
+
+	/**
+	 * Returns the number of pages.
+	 *
+	 * @return the number of pages
+	 */
+	public int numberOfPages() {
+		return _fingerprints.length;
+	}
+
+	/**
+	 * Returns the fingerprints of all pages. The array must not be modified.
+	 *
+	 * @return fingerprints of all pages
+	 */
+	public long[] getFingerprints() {
+		return _fingerprints;
+	}
+
+	/**
+	 * Returns the fingerprint of a page.
+	 *
+	 * @param page index of the page
+	 * @return fingerprint of the page
+	 */
+	public long getFingerprint(int page) {
+		return _fingerprints[page];
+	}
+
+	/**
+	 * Checks whether a page contains only 0-bytes.
+	 *
+	 * @param page index of the page
+	 * @return true if the page contains only 0-bytes, false otherwise
+	 */
+	public boolean isAllZeroes(int page) {
+		return _allZeroes.get(page);
+	}
+
+	/**
+	 * Checks whether a page contains only 1-bytes.
+	 *
+	 * @param page index of the page
+	 * @return true if the page contains only 1-bytes, false otherwise
+	 */
+	public boolean isAllOnes(int page) {
+		return _allOnes.get(page);
+	}
+	
+	/**
+	 * Checks whether a page contains only 0-bytes or only 1-bytes. Such pages
+	 * are never used in signatures.
+	 *
+	 * @param page index of the page
+	 * @return true if the page contains only 0-bytes or only 1-bytes, false otherwise
+	 */
+	public boolean isTrivial(int page) {
+		return _trivial.get(page);
+	}
+	
+	/**
+	 * Returns the number of pages containing only 0-bytes or only 1-bytes.
+	 *
+	 * @return number of all-0 and all-1 pages
+	 */
+	public int numberOfTrivialPages() {
+		return _trivial.cardinality();
+	}
+}
@@ -0,0 +1,193 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * An index answering queries for the signatures of contiguous ranges of
+ * {@link SoftwareVersion}s in a fixed order (by default, the canonical
+ * ordering of all versions of a {@link Software}).
+ *
+ * The signature of a group of versions consists of the pages whose contents
+ * are contained in every version of the group and in no other version. If
+ * the group is the range [a,b] of the order, these are exactly the contents
+ * whose set of versions is the range [a,b]. When the index is built, the
+ * first and last position of every distinct content in the order is
+ * determined from the {@link PageIndex}, along with whether the content
+ * occurs in every version in between (and in no version outside the order).
+ * Every content for which this holds is assigned to the range it spans, so
+ * that the signature size of any range is a single lookup and its pages can
+ * be returned as {@link PageLocation}s without accessing page contents.
+ *
+ * As for {@link Software#generateVersionsSignature(SoftwareVersion[], int)},
+ * all-0/all-1 pages and foreign contents (cf. {@link Corpus}) are never part
+ * of a signature, only the first copy of internal duplicates is used, and the pages of a signature are listed in
+ * the order they appear in the first version of the range.
+ */
+public class RangeSignatureIndex {
+	private SoftwareVersion[] _order;
+	private int _pageSize;
+	private HashMap<Long, ArrayList<PageLocation>> _ranges; // (first,last) -> signature pages
+	private int _numContiguous; // number of contents forming a range
+
+	/**
+	 * Creates a new RangeSignatureIndex for the specified order of versions.
+	 *
+	 * @param idx {@link PageIndex} containing all versions of the Software
+	 * @param order versions in the order ranges are defined on. The array
+	 * 				must not contain a version more than once.
+	 */
+	public RangeSignatureIndex(PageIndex idx, SoftwareVersion[] order) {
+		_order = order.clone();
+		_pageSize = idx.getPageSize();
+		_ranges = new HashMap<Long, ArrayList<PageLocation>>();
+
+		// position in the order for each position in the index (-1 if not in the order)
+		int[] orderPos = new int[idx.numberOfVersions()];
+		Arrays.fill(orderPos, -1);
+		for(int a = 0; a < _order.length; a++) {
+			orderPos[idx.getVersionPosition(_order[a])] = a;
+		}
+
+		// first and last position of each content, -1 if the content does not form a range
+		int numContents = idx.numberOfContents();
+		int[] first = new int[numContents];
+		int[] last = new int[numContents];
+		for(int cid = 0; cid < numContents; cid++) {
+			VersionBitmap members = idx.getMembership(cid);
+			int lo = Integer.MAX_VALUE;
+			int hi = -1;
+			boolean inOrder = true;
+			for(int v = members.nextSetBit(0); v >= 0; v = members.nextSetBit(v + 1)) {
+				int a = orderPos[v];
+				if(a < 0) {
+					inOrder = false;
+					break;
+				}
+				lo = Math.min(lo, a);
+				hi = Math.max(hi, a);
+			}
+
+			if(inOrder && (hi - lo + 1 == members.cardinality()) && !idx.isForeign(cid)) {
+				first[cid] = lo;
+				last[cid] = hi;
+				_numContiguous++;
+			} else {
+				first[cid] = -1;
+				last[cid] = -1;
+			}
+		}
+
+		// Collect the signature pages from the first version of each range,
+		// in the order in which they appear in that version.
+		int[] seenIn = new int[numContents];
+		Arrays.fill(seenIn, -1);
+		for(int a = 0; a < _order.length; a++) {
+			for(CodePart part : _order[a].getParts()) {
+				PageTable table = part.getPageTable(_pageSize);
+				for(int i = 0; i < table.numberOfPages(); i++) {
+					int cid = idx.getContentId(part, i);
+					if(seenIn[cid] == a) {
+						// only the first copy of internal duplicates
+						continue;
+					}
+					seenIn[cid] = a;
+
+					if((first[cid] != a) || table.isTrivial(i)) {
+						continue;
+					}
+
+					long key = rangeKey(a, last[cid]);
+					ArrayList<PageLocation> pages = _ranges.get(key);
+					if(pages == null) {
+						pages = new ArrayList<PageLocation>();
+						_ranges.put(key, pages);
+					}
+					pages.add(new PageLocation(_order[a], part, i));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the key of a range in the internal map.
+	 *
+	 * @param a first position
+	 * @param b last position
+	 * @return key of the range
+	 */
+	private static long rangeKey(int a, int b) {
+		return ((long)a << 32) | (b & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the versions in the order ranges are defined on.
+	 *
+	 * @return versions in order
+	 */
+	public SoftwareVersion[] getVersions() {
+		return _order.clone();
+	}
+
+	/**
+	 * Returns the number of versions in the order.
+	 *
+	 * @return number of versions
+	 */
+	public int numberOfVersions() {
+		return _order.length;
+	}
+
+	/**
+	 * Returns the page size.
+	 *
+	 * @return page size
+	 */
+	public int getPageSize() {
+		return _pageSize;
+	}
+
+	/**
+	 * Returns the number of distinct contents whose versions form a
+	 * contiguous range in the order (including all-0/all-1 contents, but not
+	 * foreign contents).
+	 *
+	 * @return number of contiguous contents
+	 */
+	public int numberOfContiguousContents() {
+		return _numContiguous;
+	}
+
+	/**
+	 * Returns the size of the signature for the versions at positions a to b
+	 * (inclusive) of the order.
+	 *
+	 * @param a position of the first version of the range
+	 * @param b position of the last version of the range
+	 * @return number of pages in the signature
+	 */
+	public int signatureSize(int a, int b) {
+		ArrayList<PageLocation> pages = _ranges.get(rangeKey(a, b));
+		return (pages == null) ? 0 : pages.size();
+	}
+
+	/**
+	 * Returns the pages of the signature for the versions at positions a to b
+	 * (inclusive) of the order. The pages are located in the version at
+	 * position a. Page contents are not accessed.
+	 *
+	 * @param a position of the first version of the range
+	 * @param b position of the last version of the range
+	 * @return locations of the signature pages
+	 */
+	public List<PageLocation> getPages(int a, int b) {
+		ArrayList<PageLocation> pages = _ranges.get(rangeKey(a, b));
+		if(pages == null) {
+			return Collections.emptyList();
+		}
+		return Collections.unmodifiableList(pages);
+	}
+}
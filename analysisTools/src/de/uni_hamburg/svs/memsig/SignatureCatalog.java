@@ -0,0 +1,655 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A catalog of the signatures of many {@link Software}s and page sizes,
+ * stored in one directory. The signatures are stored in signature
+ * containers (see {@link SignatureFile}), and the catalog keeps a reverse
+ * index from page fingerprints to the signatures containing pages with that
+ * fingerprint. This allows finding the signatures that contain a page, or
+ * that overlap with a signature, without reading all signatures.
+ *
+ * The index is stored in the file catalog.idx in the catalog directory.
+ * When the catalog is opened, the index is only used if it describes
+ * exactly the containers in the directory with their current sizes and
+ * modification times; otherwise, it is rebuilt from the page tables of the
+ * containers. The index file has the following layout (all numbers
+ * big-endian, strings stored as int length followed by UTF-8 bytes):
+ *
+ * <pre>
+ * int     magic ("MSCI")
+ * int     format version
+ * int     number of containers
+ * for each container:
+ *   string  file name
+ *   long    file size
+ *   long    file modification time
+ * int     number of entries n
+ * long    fingerprints[n] (ascending)
+ * int     signatures[n] (number of the signature within the catalog)
+ * int     contents[n] (index of the page contents within the signature's container)
+ * </pre>
+ *
+ * Signatures are numbered consecutively over all containers, which are
+ * listed in the order of their file names. Each signature has one entry
+ * per distinct page content. Matching fingerprints are verified as in
+ * {@link PageIndex}. Only signatures with the same page size are considered
+ * to overlap.
+ */
+public class SignatureCatalog implements Closeable {
+	private static final int MAGIC = 0x4D534349; // "MSCI"
+	private static final int FORMAT_VERSION = 1;
+	private static final String INDEX_FILE = "catalog.idx";
+	private static final String CONTAINER_SUFFIX = ".msig";
+
+	private File _dir;
+	private TreeMap<String, MappedSignatureFile> _containers; // file name -> container
+	private MappedSignature[] _sigs; // catalog signature number -> signature
+	private IdentityHashMap<MappedSignature, Integer> _sigNums;
+
+	// reverse index, sorted by fingerprint, then signature number
+	private long[] _fps;
+	private int[] _fpSigs;
+	private int[] _fpContents;
+	private boolean _indexChanged;
+
+	/**
+	 * A pair of signatures that have pages with identical contents.
+	 */
+	public static class Overlap {
+		private MappedSignature _first;
+		private MappedSignature _second;
+		private int _pages;
+
+		Overlap(MappedSignature first, MappedSignature second, int pages) {
+			_first = first;
+			_second = second;
+			_pages = pages;
+		}
+
+		/**
+		 * @return first signature of the pair
+		 */
+		public MappedSignature getFirst() {
+			return _first;
+		}
+
+		/**
+		 * @return second signature of the pair
+		 */
+		public MappedSignature getSecond() {
+			return _second;
+		}
+
+		/**
+		 * @return number of distinct page contents contained in both signatures
+		 */
+		public int getPages() {
+			return _pages;
+		}
+	}
+
+	/**
+	 * Opens a catalog. If the directory does not exist, an empty catalog is
+	 * created.
+	 *
+	 * @param dir catalog directory
+	 * @throws IOException if the containers or the index cannot be read
+	 */
+	public SignatureCatalog(File dir) throws IOException {
+		_dir = dir;
+		if(!_dir.exists() && !_dir.mkdirs()) {
+			throw new IOException("Could not create catalog directory " + dir.getAbsolutePath());
+		}
+
+		File[] files = _dir.listFiles((d, name) -> name.endsWith(CONTAINER_SUFFIX));
+		_containers = new TreeMap<String, MappedSignatureFile>();
+		for(File f : files) {
+			_containers.put(f.getName(), new MappedSignatureFile(f));
+		}
+		numberSignatures();
+
+		if(!readIndex()) {
+			buildIndex();
+		}
+	}
+
+	/**
+	 * Numbers the signatures of all containers consecutively.
+	 */
+	private void numberSignatures() {
+		ArrayList<MappedSignature> sigs = new ArrayList<MappedSignature>();
+		for(MappedSignatureFile container : _containers.values()) {
+			sigs.addAll(Arrays.asList(container.getSignatures()));
+		}
+		_sigs = sigs.toArray(new MappedSignature[0]);
+		_sigNums = new IdentityHashMap<MappedSignature, Integer>();
+		for(int s = 0; s < _sigs.length; s++) {
+			_sigNums.put(_sigs[s], s);
+		}
+	}
+
+	/**
+	 * Adds signatures to the catalog, storing them in a container of their
+	 * own. An existing container with the same name is replaced. Only the
+	 * entries of the new container are sorted; they are merged into the
+	 * index.
+	 *
+	 * @param name name of the container (e.g. software name, page size and kind of signatures)
+	 * @param sigs signatures to add, all for the same {@link Software} and page size
+	 * @param compress whether to compress the page contents
+	 * @throws IOException if the container cannot be written
+	 */
+	public synchronized void addSignatures(String name, VersionSignature[] sigs, boolean compress) throws IOException {
+		File f = new File(_dir, name + CONTAINER_SUFFIX);
+		SignatureFile.write(f, sigs, compress);
+
+		MappedSignatureFile old = _containers.remove(f.getName());
+		if(old != null) {
+			old.close();
+		}
+		MappedSignatureFile container = new MappedSignatureFile(f);
+		_containers.put(f.getName(), container);
+		MappedSignature[] oldSigs = _sigs;
+		numberSignatures();
+
+		// Containers keep their order, so renumbering the remaining
+		// signatures keeps the index sorted.
+		int[] renumber = new int[oldSigs.length];
+		for(int s = 0; s < oldSigs.length; s++) {
+			Integer num = _sigNums.get(oldSigs[s]);
+			renumber[s] = (num == null) ? -1 : num;
+		}
+		int first = (container.numberOfSignatures() > 0) ? _sigNums.get(container.getSignature(0)) : 0;
+		long[][] entries = sortedEntries(first, first + container.numberOfSignatures());
+		mergeIndex(renumber, entries[0], entries[1]);
+	}
+
+	/**
+	 * Builds the reverse index from the page tables of all containers.
+	 */
+	private void buildIndex() {
+		_fps = new long[0];
+		_fpSigs = new int[0];
+		_fpContents = new int[0];
+		long[][] entries = sortedEntries(0, _sigs.length);
+		mergeIndex(new int[0], entries[0], entries[1]);
+	}
+
+	/**
+	 * Returns the entries of a range of signatures, sorted by fingerprint,
+	 * then signature, then contents, without duplicate contents within a
+	 * signature. The signature and contents of an entry are packed into one
+	 * key (signature in the upper 32 bits).
+	 *
+	 * @param from number of the first signature
+	 * @param to number after the last signature
+	 * @return fingerprints and keys of the entries
+	 */
+	private long[][] sortedEntries(int from, int to) {
+		int numEntries = 0;
+		for(int s = from; s < to; s++) {
+			numEntries += _sigs[s].numberOfPages();
+		}
+
+		long[] fps = new long[numEntries];
+		long[] keys = new long[numEntries];
+		int n = 0;
+		for(int s = from; s < to; s++) {
+			for(int i = 0; i < _sigs[s].numberOfPages(); i++) {
+				fps[n] = _sigs[s].getPageFingerprint(i);
+				keys[n] = ((long)s << 32) | _sigs[s].getContentIndex(i);
+				n++;
+			}
+		}
+
+		// Both sorts are stable, so sorting by key and then by fingerprint
+		// orders the entries by fingerprint, then key.
+		radixSort(keys, fps);
+		radixSort(fps, keys);
+
+		int m = 0;
+		for(int i = 0; i < numEntries; i++) {
+			if((m > 0) && (keys[m - 1] == keys[i])) {
+				continue;
+			}
+			fps[m] = fps[i];
+			keys[m] = keys[i];
+			m++;
+		}
+		return new long[][] { Arrays.copyOf(fps, m), Arrays.copyOf(keys, m) };
+	}
+
+	/**
+	 * Sorts values in ascending order with a stable LSD radix sort and
+	 * permutes a second array accordingly.
+	 *
+	 * @param values values to sort
+	 * @param other array to permute along with the values
+	 */
+	private static void radixSort(long[] values, long[] other) {
+		int n = values.length;
+		if(n == 0) {
+			return;
+		}
+		long[] tmpValues = new long[n];
+		long[] tmpOther = new long[n];
+		int[] counts = new int[257];
+		for(int shift = 0; shift < 64; shift += 8) {
+			Arrays.fill(counts, 0);
+			for(long v : values) {
+				counts[digit(v, shift) + 1]++;
+			}
+			if(counts[digit(values[0], shift) + 1] == n) {
+				continue; // all values have the same digit
+			}
+			for(int d = 0; d < 256; d++) {
+				counts[d + 1] += counts[d];
+			}
+			for(int i = 0; i < n; i++) {
+				int pos = counts[digit(values[i], shift)]++;
+				tmpValues[pos] = values[i];
+				tmpOther[pos] = other[i];
+			}
+			System.arraycopy(tmpValues, 0, values, 0, n);
+			System.arraycopy(tmpOther, 0, other, 0, n);
+		}
+	}
+
+	/**
+	 * Returns a digit of a value for {@link #radixSort(long[], long[])}.
+	 * The sign bit is flipped so that negative values come first.
+	 */
+	private static int digit(long v, int shift) {
+		return (int)(((v ^ Long.MIN_VALUE) >>> shift) & 0xFF);
+	}
+
+	/**
+	 * Merges sorted entries into the index. The signatures of the existing
+	 * entries are renumbered; entries of removed signatures are dropped.
+	 *
+	 * @param renumber new number of each signature in the index, -1 if it has been removed
+	 * @param fps fingerprints of the new entries
+	 * @param keys signatures and contents of the new entries, see {@link #sortedEntries(int, int)}
+	 */
+	private void mergeIndex(int[] renumber, long[] fps, long[] keys) {
+		int numOld = 0;
+		for(int e = 0; e < _fps.length; e++) {
+			if(renumber[_fpSigs[e]] >= 0) {
+				numOld++;
+			}
+		}
+
+		int numEntries = numOld + fps.length;
+		long[] newFps = new long[numEntries];
+		int[] newSigs = new int[numEntries];
+		int[] newContents = new int[numEntries];
+		int i = 0;
+		int j = 0;
+		for(int m = 0; m < numEntries; m++) {
+			while((i < _fps.length) && (renumber[_fpSigs[i]] < 0)) {
+				i++;
+			}
+			boolean takeOld = i < _fps.length;
+			if(takeOld && (j < fps.length)) {
+				long oldKey = ((long)renumber[_fpSigs[i]] << 32) | _fpContents[i];
+				takeOld = (_fps[i] < fps[j]) || ((_fps[i] == fps[j]) && (oldKey < keys[j]));
+			}
+			if(takeOld) {
+				newFps[m] = _fps[i];
+				newSigs[m] = renumber[_fpSigs[i]];
+				newContents[m] = _fpContents[i];
+				i++;
+			} else {
+				newFps[m] = fps[j];
+				newSigs[m] = (int)(keys[j] >>> 32);
+				newContents[m] = (int)keys[j];
+				j++;
+			}
+		}
+		_fps = newFps;
+		_fpSigs = newSigs;
+		_fpContents = newContents;
+		_indexChanged = true;
+	}
+
+	/**
+	 * Reads the index file if it is valid for the containers in the catalog.
+	 *
+	 * @return true if the index has been read, false if it has to be rebuilt
+	 */
+	private boolean readIndex() {
+		File f = new File(_dir, INDEX_FILE);
+		if(!f.exists()) {
+			return false;
+		}
+
+		try(FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			if((buf.getInt() != MAGIC) || (buf.getInt() != FORMAT_VERSION)) {
+				return false;
+			}
+
+			int numContainers = buf.getInt();
+			if(numContainers != _containers.size()) {
+				return false;
+			}
+			for(String name : _containers.keySet()) {
+				byte[] nameBytes = new byte[buf.getInt()];
+				buf.get(nameBytes);
+				File cf = new File(_dir, name);
+				if(!name.equals(new String(nameBytes, StandardCharsets.UTF_8)) || (buf.getLong() != cf.length()) || (buf.getLong() != cf.lastModified())) {
+					return false;
+				}
+			}
+
+			int numEntries = buf.getInt();
+			long[] fps = new long[numEntries];
+			int[] fpSigs = new int[numEntries];
+			int[] fpContents = new int[numEntries];
+			buf.asLongBuffer().get(fps);
+			buf.position(buf.position() + numEntries * 8);
+			buf.asIntBuffer().get(fpSigs);
+			buf.position(buf.position() + numEntries * 4);
+			buf.asIntBuffer().get(fpContents);
+			for(int i = 0; i < numEntries; i++) {
+				if((fpSigs[i] < 0) || (fpSigs[i] >= _sigs.length)
+						|| (fpContents[i] < 0) || (fpContents[i] >= _sigs[fpSigs[i]].getContainer().numberOfContents())) {
+					return false;
+				}
+			}
+
+			_fps = fps;
+			_fpSigs = fpSigs;
+			_fpContents = fpContents;
+			_indexChanged = false;
+			return true;
+		} catch (IOException | RuntimeException e) {
+			System.err.println("Warning: Could not read catalog index " + f.getAbsolutePath() + ", rebuilding it.");
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the index file if the index has changed since it was read or
+	 * written.
+	 *
+	 * @throws IOException if the index cannot be written
+	 */
+	public synchronized void save() throws IOException {
+		if(!_indexChanged) {
+			return;
+		}
+
+		File f = new File(_dir, INDEX_FILE);
+		File tmp = AtomicFile.tempFile(f);
+		try(FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			int headerSize = 16;
+			for(String name : _containers.keySet()) {
+				headerSize += 20 + name.getBytes(StandardCharsets.UTF_8).length;
+			}
+			ByteBuffer header = ByteBuffer.allocate(headerSize);
+			header.putInt(MAGIC);
+			header.putInt(FORMAT_VERSION);
+			header.putInt(_containers.size());
+			for(String name : _containers.keySet()) {
+				byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+				File cf = new File(_dir, name);
+				header.putInt(nameBytes.length);
+				header.put(nameBytes);
+				header.putLong(cf.length());
+				header.putLong(cf.lastModified());
+			}
+			header.putInt(_fps.length);
+			header.flip();
+			write(ch, header);
+
+			ByteBuffer entries = ByteBuffer.allocate(_fps.length * 16);
+			entries.asLongBuffer().put(_fps);
+			entries.position(_fps.length * 8);
+			entries.asIntBuffer().put(_fpSigs);
+			entries.position(_fps.length * 12);
+			entries.asIntBuffer().put(_fpContents);
+			entries.position(0);
+			write(ch, entries);
+		}
+		AtomicFile.replace(tmp, f);
+		_indexChanged = false;
+	}
+
+	private static void write(FileChannel ch, ByteBuffer buf) throws IOException {
+		while(buf.hasRemaining()) {
+			ch.write(buf);
+		}
+	}
+
+	/**
+	 * Returns all signatures in the catalog.
+	 *
+	 * @return signatures
+	 */
+	public synchronized List<MappedSignature> getSignatures() {
+		return Collections.unmodifiableList(Arrays.asList(_sigs.clone()));
+	}
+
+	/**
+	 * Returns the number of signatures in the catalog.
+	 *
+	 * @return number of signatures
+	 */
+	public synchronized int numberOfSignatures() {
+		return _sigs.length;
+	}
+
+	/**
+	 * Returns the number of signature containers in the catalog.
+	 *
+	 * @return number of containers
+	 */
+	public synchronized int numberOfContainers() {
+		return _containers.size();
+	}
+
+	/**
+	 * Returns the signatures containing a page with the specified
+	 * fingerprint. As fingerprints may collide, use
+	 * {@link #findSignaturesContaining(Page)} if the page contents are known.
+	 *
+	 * @param fingerprint {@link PageFingerprint} of the page
+	 * @param pageSize page size
+	 * @return signatures containing a page with the fingerprint
+	 */
+	public synchronized List<MappedSignature> findSignaturesContaining(long fingerprint, int pageSize) {
+		ArrayList<MappedSignature> res = new ArrayList<MappedSignature>();
+		for(int e = firstEntry(fingerprint); (e < _fps.length) && (_fps[e] == fingerprint); e++) {
+			MappedSignature sig = _sigs[_fpSigs[e]];
+			if((sig.getPageSize() == pageSize) && ((res.isEmpty()) || (res.get(res.size() - 1) != sig))) {
+				res.add(sig);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the signatures containing a page with the same contents as p.
+	 *
+	 * @param p {@link Page} to search for
+	 * @return signatures containing the page contents
+	 */
+	public synchronized List<MappedSignature> findSignaturesContaining(Page p) {
+		ArrayList<MappedSignature> res = new ArrayList<MappedSignature>();
+		ByteBuffer bytes = null;
+		long fp = p.getFingerprint();
+		for(int e = firstEntry(fp); (e < _fps.length) && (_fps[e] == fp); e++) {
+			MappedSignature sig = _sigs[_fpSigs[e]];
+			if((sig.getPageSize() != p.getPageSize()) || ((!res.isEmpty()) && (res.get(res.size() - 1) == sig))) {
+				continue;
+			}
+			if(bytes == null) {
+				bytes = ByteBuffer.wrap(p.getBytes());
+			}
+			if(contents(e).equals(bytes)) {
+				res.add(sig);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the signatures that have pages with identical contents as sig,
+	 * together with the number of such distinct page contents.
+	 *
+	 * @param sig signature from the catalog
+	 * @return number of shared page contents by signature (excluding sig itself)
+	 */
+	public synchronized Map<MappedSignature, Integer> findOverlappingSignatures(MappedSignature sig) {
+		Integer sigNum = _sigNums.get(sig);
+		if(sigNum == null) {
+			throw new IllegalArgumentException("Signature " + sig + " is not part of the catalog");
+		}
+
+		int[] counts = new int[_sigs.length];
+		BitSet seen = new BitSet(sig.getContainer().numberOfContents());
+		for(int i = 0; i < sig.numberOfPages(); i++) {
+			int content = sig.getContentIndex(i);
+			if(seen.get(content)) {
+				continue;
+			}
+			seen.set(content);
+
+			ByteBuffer bytes = sig.getPageBuffer(i);
+			long fp = sig.getPageFingerprint(i);
+			for(int e = firstEntry(fp); (e < _fps.length) && (_fps[e] == fp); e++) {
+				if((_fpSigs[e] != sigNum) && (_sigs[_fpSigs[e]].getPageSize() == sig.getPageSize()) && contents(e).equals(bytes)) {
+					counts[_fpSigs[e]]++;
+				}
+			}
+		}
+
+		LinkedHashMap<MappedSignature, Integer> res = new LinkedHashMap<MappedSignature, Integer>();
+		for(int s = 0; s < counts.length; s++) {
+			if(counts[s] > 0) {
+				res.put(_sigs[s], counts[s]);
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Returns all pairs of signatures (with the same page size) that have
+	 * pages with identical contents. Only entries with the same fingerprint
+	 * are compared, so the effort depends on the number of shared pages
+	 * rather than on the number of pairs of signatures.
+	 *
+	 * @return overlapping pairs of signatures, ordered by signature
+	 */
+	public synchronized List<Overlap> findOverlaps() {
+		HashMap<Long, Integer> pairCounts = new HashMap<Long, Integer>();
+		int first = 0;
+		while(first < _fps.length) {
+			int last = first;
+			while((last + 1 < _fps.length) && (_fps[last + 1] == _fps[first])) {
+				last++;
+			}
+
+			if(last > first) {
+				// Partition the entries into classes of identical contents
+				// (more than one class only if fingerprints collide).
+				int[] cls = new int[last - first + 1];
+				int numClasses = 0;
+				int[] rep = new int[cls.length];
+				for(int e = first; e <= last; e++) {
+					int c = 0;
+					while((c < numClasses) && !((_sigs[_fpSigs[rep[c]]].getPageSize() == _sigs[_fpSigs[e]].getPageSize()) && contents(rep[c]).equals(contents(e)))) {
+						c++;
+					}
+					if(c == numClasses) {
+						rep[numClasses++] = e;
+					}
+					cls[e - first] = c;
+				}
+
+				for(int a = first; a <= last; a++) {
+					for(int b = a + 1; b <= last; b++) {
+						if((cls[a - first] == cls[b - first]) && (_fpSigs[a] != _fpSigs[b])) {
+							long key = (long)_fpSigs[a] * _sigs.length + _fpSigs[b];
+							pairCounts.merge(key, 1, Integer::sum);
+						}
+					}
+				}
+			}
+			first = last + 1;
+		}
+
+		long[] keys = new long[pairCounts.size()];
+		int k = 0;
+		for(long key : pairCounts.keySet()) {
+			keys[k++] = key;
+		}
+		Arrays.sort(keys);
+		ArrayList<Overlap> res = new ArrayList<Overlap>();
+		for(long key : keys) {
+			res.add(new Overlap(_sigs[(int)(key / _sigs.length)], _sigs[(int)(key % _sigs.length)], pairCounts.get(key)));
+		}
+		return res;
+	}
+
+	/**
+	 * Returns the index of the first entry with the specified fingerprint
+	 * (or of the first entry with a larger fingerprint, if there is none).
+	 *
+	 * @param fingerprint fingerprint to search for
+	 * @return index of the entry
+	 */
+	private int firstEntry(long fingerprint) {
+		int lo = 0;
+		int hi = _fps.length;
+		while(lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if(_fps[mid] < fingerprint) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * Returns the page contents of an entry.
+	 *
+	 * @param e index of the entry
+	 * @return buffer containing the page contents
+	 */
+	private ByteBuffer contents(int e) {
+		return _sigs[_fpSigs[e]].getContainer().getContentBuffer(_fpContents[e]);
+	}
+
+	/**
+	 * Saves the index and closes all containers.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		save();
+		for(MappedSignatureFile container : _containers.values()) {
+			container.close();
+		}
+	}
+}
@@ -0,0 +1,331 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a set of {@link VersionSignature}s of a {@link Software} to a single
+ * self-describing signature container file. Unlike the raw .sig files
+ * written by {@link VersionSignature#writeToFile(File)}, the container holds
+ * the metadata of the signatures (software, versions, page size and
+ * statistics) and a page table for every signature. Page contents that occur
+ * in several signatures (or several times in one signature) are stored only
+ * once. The stored page contents can optionally be compressed in blocks, so
+ * that a single page can be read without decompressing the whole file.
+ *
+ * The file has the following layout (all numbers big-endian, strings stored
+ * as int length followed by UTF-8 bytes):
+ *
+ * <pre>
+ * int     magic ("MSSG")
+ * int     format version
+ * int     page size
+ * int     flags (bit 0: page contents compressed with Deflater)
+ * string  software name
+ * string  binary name
+ * int     number of part names
+ * string  part names[]
+ * int     number of signatures
+ * for each signature:
+ *   int     number of versions
+ *   string  versions[]
+ *   int     number of all-0/all-1 pages
+ *   int     number of internal duplicates
+ *   int     number of pages also present in other versions
+ *   int     number of pages not matching in the group
+ *   int     number of pages n
+ *   for each page:
+ *     int   index of the part name
+ *     long  offset of the page within the part
+ *     long  fingerprint
+ *     int   index of the page contents
+ * int     number of page contents
+ * int     number of page contents per block
+ * int     number of blocks
+ * blocks (page contents, each page size bytes, compressed if flag is set)
+ * for each block:
+ *   long  offset of the block in the file
+ *   int   stored length of the block
+ * long    offset of the block table
+ * int     magic ("MSSG")
+ * </pre>
+ *
+ * The block table is stored at the end of the file, so that the file can
+ * be written in a single pass. If compression is enabled, blocks that do
+ * not become smaller are stored uncompressed, which can be recognised by
+ * their stored length being equal to the size of their page contents.
+ */
+public class SignatureFile {
+	static final int MAGIC = 0x4D535347; // "MSSG"
+	static final int FORMAT_VERSION = 1;
+
+	static final int FLAG_COMPRESSED = 1;
+
+	static final int PAGES_PER_BLOCK = 64;
+	static final int PAGE_ENTRY_SIZE = 24;
+	static final int BLOCK_ENTRY_SIZE = 12;
+	static final int TRAILER_SIZE = 12;
+
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	private SignatureFile() {
+		// static methods only
+	}
+
+	/**
+	 * Returns the container file for a directory and page size.
+	 *
+	 * @param dir directory containing the signatures
+	 * @param sw {@link Software} the signatures are for
+	 * @param pageSize page size
+	 * @return the container file
+	 */
+	public static File getFile(File dir, Software sw, int pageSize) {
+		return new File(dir, sw.getName() + "-" + pageSize + ".msig");
+	}
+
+	/**
+	 * Writes signatures to a container file.
+	 *
+	 * @param f file to write to
+	 * @param sigs signatures to write, all for the same {@link Software} and page size
+	 * @param compress whether to compress the page contents
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(File f, VersionSignature[] sigs, boolean compress) throws IOException {
+		if(sigs.length == 0) {
+			throw new IllegalArgumentException("No signatures to write");
+		}
+		int pageSize = sigs[0].getPageSize();
+		Software sw = sigs[0].getSoftwareVersions()[0].getSoftware();
+		for(VersionSignature sig : sigs) {
+			if((sig.getPageSize() != pageSize) || (sig.getSoftwareVersions()[0].getSoftware() != sw)) {
+				throw new IllegalArgumentException("All signatures must be for the same software and page size");
+			}
+		}
+
+		// Assign indices to part names and distinct page contents.
+		ArrayList<String> partNames = new ArrayList<String>();
+		HashMap<String, Integer> partIdx = new HashMap<String, Integer>();
+		ArrayList<Page> bodies = new ArrayList<Page>();
+		HashMap<Long, int[]> fpBodies = new HashMap<Long, int[]>();
+		int[][] pageParts = new int[sigs.length][];
+		int[][] pageBodies = new int[sigs.length][];
+		for(int s = 0; s < sigs.length; s++) {
+			int n = sigs[s].numberOfPages();
+			pageParts[s] = new int[n];
+			pageBodies[s] = new int[n];
+			for(int i = 0; i < n; i++) {
+				Page p = sigs[s].getPage(i);
+				String name = p.getPart().getName();
+				Integer pi = partIdx.get(name);
+				if(pi == null) {
+					pi = partNames.size();
+					partNames.add(name);
+					partIdx.put(name, pi);
+				}
+				pageParts[s][i] = pi;
+				pageBodies[s][i] = addBody(p, bodies, fpBodies);
+			}
+		}
+
+		File tmp = AtomicFile.tempFile(f);
+		try(FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ChannelOutput out = new ChannelOutput(ch);
+			out.putInt(MAGIC);
+			out.putInt(FORMAT_VERSION);
+			out.putInt(pageSize);
+			out.putInt(compress ? FLAG_COMPRESSED : 0);
+			out.putString(sw.getName());
+			out.putString(sw.getBinaryName());
+
+			out.putInt(partNames.size());
+			for(String name : partNames) {
+				out.putString(name);
+			}
+
+			out.putInt(sigs.length);
+			for(int s = 0; s < sigs.length; s++) {
+				VersionSignature sig = sigs[s];
+				SoftwareVersion[] versions = sig.getSoftwareVersions();
+				out.putInt(versions.length);
+				for(SoftwareVersion sv : versions) {
+					out.putString(sv.toString());
+				}
+				out.putInt(sig.getAll01Count());
+				out.putInt(sig.getIntDupCount());
+				out.putInt(sig.getOtherVersionDups());
+				out.putInt(sig.getNotMatchingInGroupCount());
+
+				out.putInt(sig.numberOfPages());
+				for(int i = 0; i < sig.numberOfPages(); i++) {
+					Page p = sig.getPage(i);
+					out.putInt(pageParts[s][i]);
+					out.putLong(p.getPos());
+					out.putLong(p.getFingerprint());
+					out.putInt(pageBodies[s][i]);
+				}
+			}
+
+			int numBlocks = (bodies.size() + PAGES_PER_BLOCK - 1) / PAGES_PER_BLOCK;
+			out.putInt(bodies.size());
+			out.putInt(PAGES_PER_BLOCK);
+			out.putInt(numBlocks);
+
+			long[] blockOffsets = new long[numBlocks];
+			int[] blockLengths = new int[numBlocks];
+			Deflater deflater = compress ? new Deflater() : null;
+			byte[] block = new byte[PAGES_PER_BLOCK * pageSize];
+			byte[] compressed = new byte[block.length + block.length / 8 + 64];
+			try {
+				for(int b = 0; b < numBlocks; b++) {
+					int from = b * PAGES_PER_BLOCK;
+					int to = Math.min(bodies.size(), from + PAGES_PER_BLOCK);
+					blockOffsets[b] = out.position();
+					if(deflater == null) {
+						for(int i = from; i < to; i++) {
+							out.put(bodies.get(i).getBytes(), 0, pageSize);
+						}
+						blockLengths[b] = (to - from) * pageSize;
+					} else {
+						for(int i = from; i < to; i++) {
+							System.arraycopy(bodies.get(i).getBytes(), 0, block, (i - from) * pageSize, pageSize);
+						}
+						deflater.reset();
+						deflater.setInput(block, 0, (to - from) * pageSize);
+						deflater.finish();
+						int len = 0;
+						while(!deflater.finished()) {
+							if(len == compressed.length) {
+								byte[] larger = new byte[compressed.length * 2];
+								System.arraycopy(compressed, 0, larger, 0, len);
+								compressed = larger;
+							}
+							len += deflater.deflate(compressed, len, compressed.length - len);
+						}
+						if(len < (to - from) * pageSize) {
+							out.put(compressed, 0, len);
+							blockLengths[b] = len;
+						} else {
+							// incompressible, store as is
+							out.put(block, 0, (to - from) * pageSize);
+							blockLengths[b] = (to - from) * pageSize;
+						}
+					}
+				}
+			} finally {
+				if(deflater != null) {
+					deflater.end();
+				}
+			}
+
+			long blockTableOffset = out.position();
+			for(int b = 0; b < numBlocks; b++) {
+				out.putLong(blockOffsets[b]);
+				out.putInt(blockLengths[b]);
+			}
+			out.putLong(blockTableOffset);
+			out.putInt(MAGIC);
+			out.flush();
+		}
+		AtomicFile.replace(tmp, f);
+	}
+
+	/**
+	 * Returns the index of the contents of a page, adding them if they have
+	 * not been seen yet.
+	 *
+	 * @param p {@link Page} whose contents to add
+	 * @param bodies distinct page contents (by index)
+	 * @param fpBodies indices of the distinct page contents by fingerprint
+	 * @return index of the page contents
+	 */
+	private static int addBody(Page p, ArrayList<Page> bodies, HashMap<Long, int[]> fpBodies) {
+		long fp = p.getFingerprint();
+		int[] idxs = fpBodies.get(fp);
+		if(idxs != null) {
+			for(int idx : idxs) {
+				if(bodies.get(idx).contentsEqualTo(p)) {
+					return idx;
+				}
+			}
+		}
+
+		int idx = bodies.size();
+		bodies.add(p);
+		if(idxs == null) {
+			fpBodies.put(fp, new int[] { idx });
+		} else {
+			int[] nidxs = new int[idxs.length + 1];
+			System.arraycopy(idxs, 0, nidxs, 0, idxs.length);
+			nidxs[idxs.length] = idx;
+			fpBodies.put(fp, nidxs);
+		}
+		return idx;
+	}
+
+	/**
+	 * Buffered output to a {@link FileChannel}.
+	 */
+	private static class ChannelOutput {
+		private FileChannel _ch;
+		private ByteBuffer _buf;
+		private long _written;
+
+		ChannelOutput(FileChannel ch) {
+			_ch = ch;
+			_buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+
+		long position() {
+			return _written + _buf.position();
+		}
+
+		void putInt(int v) throws IOException {
+			ensure(4);
+			_buf.putInt(v);
+		}
+
+		void putLong(long v) throws IOException {
+			ensure(8);
+			_buf.putLong(v);
+		}
+
+		void putString(String s) throws IOException {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			putInt(bytes.length);
+			put(bytes, 0, bytes.length);
+		}
+
+		void put(byte[] bytes, int off, int len) throws IOException {
+			while(len > 0) {
+				ensure(1);
+				int n = Math.min(len, _buf.remaining());
+				_buf.put(bytes, off, n);
+				off += n;
+				len -= n;
+			}
+		}
+
+		private void ensure(int n) throws IOException {
+			if(_buf.remaining() < n) {
+				flush();
+			}
+		}
+
+		void flush() throws IOException {
+			_buf.flip();
+			while(_buf.hasRemaining()) {
+				_written += _ch.write(_buf);
+			}
+			_buf.clear();
+		}
+	}
+}
@@ -1,7 +1,7 @@
 package de.uni_hamburg.svs.memsig;
 
 import java.io.File;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -11,8 +11,9 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
-
-import org.apache.commons.lang3.ArrayUtils;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 /**
  * This class describes a software. It encapsulates information about all
@@ -22,29 +23,57 @@ import org.apache.commons.lang3.ArrayUtils;
  * Within the directory for a software version, subdirectories must exist for
  * all versions of this software, each containing the corresponding binary.
  * 
+ * Signatures only contain pages that do not occur in any other version of
+ * the software. If the software is part of a {@link Corpus}, pages that occur
+ * in other software of the corpus are excluded as well.
+ * 
  * @author Jens Lindemann
  */
 public class Software implements Comparable<Software> {
 	private String _name;
 	private TreeSet<SoftwareVersion> _versions;
+	private SoftwareVersion[] _versionsByOrdinal;
 	private File _swDir; // Directory containing subdirs for all versions of the software
 	private String _binaryName;
 	private int _pageSize;
+	private LoadOptions _loadOptions;
+	private HashMap<Integer, PageIndex> _pageIndexes;
+	private HashMap<Integer, VersionSimilarity> _similarities;
+	private HashMap<Integer, RangeSignatureIndex> _rangeIndexes;
+	private boolean _inCorpus; // whether foreign contents have been set by a Corpus
 	
 	/**
-	 * Creates a new Software object.
+	 * Creates a new Software object using the default {@link LoadOptions}.
 	 * 
 	 * @param name name of the software
 	 * @param swDir directory where software versions are stored
 	 * @param binaryName file name of the binary
 	 */
 	public Software(String name, File swDir, String binaryName, int pageSize) {
+		this(name, swDir, binaryName, pageSize, new LoadOptions());
+	}
+	
+	/**
+	 * Creates a new Software object.
+	 * 
+	 * @param name name of the software
+	 * @param swDir directory where software versions are stored
+	 * @param binaryName file name of the binary
+	 * @param pageSize page size
+	 * @param loadOptions options for loading the versions
+	 */
+	public Software(String name, File swDir, String binaryName, int pageSize, LoadOptions loadOptions) {
 		this._name = name;
 		this._swDir = swDir;
 		this._binaryName = binaryName;
 		this._pageSize = pageSize;
+		this._loadOptions = loadOptions;
+		this._pageIndexes = new HashMap<Integer, PageIndex>();
+		this._similarities = new HashMap<Integer, VersionSimilarity>();
+		this._rangeIndexes = new HashMap<Integer, RangeSignatureIndex>();
 		
 		initializeVersions();
+		getPageIndex(_pageSize);
 	}
 	
 	/**
@@ -68,8 +97,20 @@ public class Software implements Comparable<Software> {
 			if(!vdir.isDirectory()) continue;
 			
 			String vstring = vdir.getName();
-			SoftwareVersion sv = new SoftwareVersion(this, vstring, vdir, _pageSize);
-			this.addSoftwareVersion(sv);
+			SoftwareVersion sv = new SoftwareVersion(this, vstring, vdir, _pageSize, _loadOptions);
+			_versions.add(sv);
+		}
+		assignOrdinals();
+	}
+	
+	/**
+	 * Assigns each version its position in the canonical ordering of versions
+	 * as its ordinal.
+	 */
+	private void assignOrdinals() {
+		_versionsByOrdinal = _versions.toArray(new SoftwareVersion[0]);
+		for(int i = 0; i < _versionsByOrdinal.length; i++) {
+			_versionsByOrdinal[i].setOrdinal(i);
 		}
 	}
 	
@@ -92,12 +133,114 @@ public class Software implements Comparable<Software> {
 	}
 	
 	/**
-	 * Adds a {@link SoftwareVersion}
+	 * Returns the number of versions of the Software.
+	 * 
+	 * @return number of versions
+	 */
+	public int numberOfVersions() {
+		return _versionsByOrdinal.length;
+	}
+	
+	/**
+	 * Returns the version with the specified ordinal, i.e. at the specified
+	 * position in the canonical ordering of versions.
+	 * 
+	 * @param ordinal ordinal of the version
+	 * @return the {@link SoftwareVersion}
+	 * @see SoftwareVersion#getOrdinal()
+	 */
+	public SoftwareVersion getVersion(int ordinal) {
+		return _versionsByOrdinal[ordinal];
+	}
+	
+	/**
+	 * Adds a {@link SoftwareVersion}. The ordinals of the versions following
+	 * it in the canonical ordering change.
+	 * 
+	 * Versions cannot be added once the Software has been added to a
+	 * {@link Corpus}, as the Corpus refers to the contents of the existing
+	 * {@link PageIndex}.
 	 * 
 	 * @param sv {@link SoftwareVersion} to add
+	 * @throws IllegalStateException if the Software has been added to a Corpus
 	 */
-	public void addSoftwareVersion(SoftwareVersion sv) {
+	public synchronized void addSoftwareVersion(SoftwareVersion sv) {
+		if(_inCorpus) {
+			throw new IllegalStateException("Cannot add versions to " + _name + " after it has been added to a corpus");
+		}
 		_versions.add(sv);
+		assignOrdinals();
+		
+		// Indexes built before do not contain the new version.
+		_pageIndexes.clear();
+		_similarities.clear();
+		_rangeIndexes.clear();
+	}
+	
+	/**
+	 * Returns the {@link PageIndex} over all versions of the Software for
+	 * the specified page size. The index for the Software's page size is
+	 * built when the Software is loaded, indexes for other page sizes are
+	 * built on first use.
+	 * 
+	 * @param pageSize page size
+	 * @return index over all pages of all versions
+	 */
+	public synchronized PageIndex getPageIndex(int pageSize) {
+		PageIndex idx = _pageIndexes.get(pageSize);
+		if(idx == null) {
+			idx = new PageIndex(_versions, pageSize, _loadOptions.getTrustFingerprints());
+			_pageIndexes.put(pageSize, idx);
+		}
+		return idx;
+	}
+	
+	/**
+	 * Returns the {@link VersionSimilarity} of the versions of the Software for
+	 * the specified page size. The object is shared by all callers, so that
+	 * the similarity of a pair of versions is computed only once.
+	 * 
+	 * @param pageSize page size
+	 * @return pairwise similarity of all versions
+	 */
+	public synchronized VersionSimilarity getVersionSimilarity(int pageSize) {
+		VersionSimilarity sim = _similarities.get(pageSize);
+		if(sim == null) {
+			sim = new VersionSimilarity(getPageIndex(pageSize));
+			_similarities.put(pageSize, sim);
+		}
+		return sim;
+	}
+	
+	/**
+	 * Returns the {@link RangeSignatureIndex} over all versions of the Software
+	 * in their canonical order for the specified page size. It is built on
+	 * first use.
+	 * 
+	 * @param pageSize page size
+	 * @return index of the signatures of all contiguous ranges of versions
+	 */
+	public synchronized RangeSignatureIndex getRangeSignatureIndex(int pageSize) {
+		RangeSignatureIndex rsi = _rangeIndexes.get(pageSize);
+		if(rsi == null) {
+			rsi = new RangeSignatureIndex(getPageIndex(pageSize), _versions.toArray(new SoftwareVersion[0]));
+			_rangeIndexes.put(pageSize, rsi);
+		}
+		return rsi;
+	}
+	
+	/**
+	 * Sets the page contents of the Software that are also contained in other
+	 * Softwares (cf. {@link Corpus}). These are excluded from all signatures.
+	 * 
+	 * @param pageSize page size
+	 * @param foreign content IDs (in the {@link PageIndex} for pageSize) of the foreign contents
+	 */
+	synchronized void setForeignContents(int pageSize, BitSet foreign) {
+		getPageIndex(pageSize).setForeignContents(foreign);
+		_inCorpus = true;
+		// The range index depends on the foreign contents.
+		_rangeIndexes.remove(pageSize);
 	}
 	
 	/**
@@ -122,66 +265,16 @@ public class Software implements Comparable<Software> {
 	 * @return the signature
 	 */
 	public VersionSignature generateVersionsSignature(SoftwareVersion[] sigVersions, int pageSize) {
-		ArrayList<Page> vPages = new ArrayList<Page>();
 		if(sigVersions.length == 0) {
 			System.err.println("Invalid arguments: sigVersions must not be empty");
 			return null;
 		}
 		
-		SortedSet<CodePart> parts0 = sigVersions[0].getParts();
-		
-		int all01count = 0;
-		int intDupCount = 0;
-		int notMatchingInGroupCount = 0;
-		
-		for(CodePart part : parts0) {
-			Page[] pages = part.getPages(pageSize);
-			for(Page p : pages) {
-				// Remove all-0 and all-1 pages as they are almost certain to trigger a false positive.
-				if(p.isAllOnes() || p.isAllZeroes()) {
-					all01count++;
-					continue;
-				}
-				
-				// Internal duplicates need to be removed, as a duplicate page within the
-				// signature would be sufficient to trigger deduplication even without the
-				// binary itself being present in memory. We will keep one copy, however,
-				// as we still assume that there is only another copy of the page on the host
-				// if the version is actually being executed in another VM.
-				boolean addPage = true;
-				for(Page vp : vPages) {
-					if(vp.contentsEqualTo(p) && !(vp.equals(p))) {
-						addPage = false;
-						intDupCount++;
-						break;
-					}
-				}
-				
-				if(addPage) {
-					vPages.add(p);
-				}
-			}
+		GroupSignatureState state = new GroupSignatureState(this, sigVersions[0], pageSize);
+		for(int i = 1; i < sigVersions.length; i++) {
+			state.addVersion(sigVersions[i]);
 		}
-		
-		// Remove all pages that are not contained in all
-		// of the versions specified from the signature.
-		if(sigVersions.length > 1) {
-			for(int j = 0; j < vPages.size(); j++) {
-				Page p = vPages.get(j);
-				for(int i = 1; i < sigVersions.length; i++) {
-					System.out.println(j);
-					if(!sigVersions[i].containsPageContent(p)) {
-						vPages.remove(j);
-						notMatchingInGroupCount++;
-						j--; // By removing, all remaining elements have been
-						// shifted to the left, so we have to correct j.
-						break;
-					}
-				}
-			}
-		}
-		
-		return generateSignature(vPages.toArray(new Page[0]), sigVersions, pageSize, all01count, intDupCount, notMatchingInGroupCount);
+		return state.toSignature();
 	}
 	
 	/**
@@ -200,51 +293,38 @@ public class Software implements Comparable<Software> {
 	}
 	
 	/**
-	 * Generates a signature for the specified version and pages of the version.
+	 * Generates signatures for all versions of the Software using the specified
+	 * number of threads. The signatures are identical to those returned by
+	 * {@link #generateVersionSignatures(int)} and are returned in the same order.
 	 * 
-	 * @param vPages Pages appearing in all SoftwareVersions in sigVersions
-	 * @param sigVersions versions for which signature is to be generated
-	 * @param pageSize page size
-	 * @param all01count number of pages containing only 0 or 1 bits
-	 * @param intDupCount number of internal duplicates
-	 * @return the signature
+	 * @param pageSize page size to generate signatures for
+	 * @param threads number of worker threads (1 for sequential generation)
+	 * @return the signatures
 	 */
-	private VersionSignature generateSignature(Page[] vPages, SoftwareVersion[] sigVersions, int pageSize, int all01count, int intDupCount, int notMatchingInGroupCount) {
-		VersionSignature sig = new VersionSignature(sigVersions, pageSize, all01count, intDupCount, notMatchingInGroupCount);
-		int othVerDups = 0;
-		for(Page p : vPages) {
-			boolean pageFound = false;
-			for(SoftwareVersion sv : _versions) {
-				boolean svIsSigVersion = false;
-				for(int i = 0; i < sigVersions.length && !svIsSigVersion; i++) {
-					svIsSigVersion = sv.equals(sigVersions[i]);
-				}
-				if(svIsSigVersion) continue;
-				
-				// check whether an identical page is also in sv
-				Iterator<CodePart> sectit = sv.getParts().iterator();
-				
-				while(sectit.hasNext()) {
-					CodePart sect = sectit.next();
-					for(int i = 0; i < sect.numberOfPages(pageSize); i++) {
-						pageFound = sect.getPage(i, pageSize).contentsEqualTo(p);
-						if(pageFound) {
-							othVerDups++;
-						}
-						if(pageFound) break;
-					}
-					if(pageFound) break;
-				}
-				if(pageFound) break;
-			}
-			
-			if(!pageFound) {
-				sig.addPage(p);
-			}
+	public VersionSignature[] generateVersionSignatures(int pageSize, int threads) {
+		if(threads <= 1) {
+			return generateVersionSignatures(pageSize);
 		}
-		sig.setOtherVersionDups(othVerDups);
 		
-		return sig;
+		// Build the shared index before the workers start using it.
+		getPageIndex(pageSize);
+		
+		SoftwareVersion[] versions = _versions.toArray(new SoftwareVersion[0]);
+		VersionSignature[] sigs = new VersionSignature[versions.length];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.submit(() -> IntStream.range(0, versions.length).parallel().forEach(i -> {
+				sigs[i] = generateVersionSignature(versions[i], pageSize);
+			})).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while generating signatures", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Error while generating signatures", e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+		return sigs;
 	}
 	
 	/**
@@ -255,23 +335,35 @@ public class Software implements Comparable<Software> {
 	 */
 	public TreeMap<SoftwareVersion,HashMap<SoftwareVersion, VersionComparisonResult>> compareAllVersions(int pageSize) {
 		TreeMap<SoftwareVersion,HashMap<SoftwareVersion, VersionComparisonResult>> matrix = new TreeMap<SoftwareVersion,HashMap<SoftwareVersion, VersionComparisonResult>>();
+		VersionComparisonMatrix cmpMatrix = compareAllVersionsMatrix(pageSize);
+		SoftwareVersion[] versions = cmpMatrix.getVersions();
 		
-		for(SoftwareVersion v : getVersions()) {
+		for(int v = 0; v < versions.length; v++) {
 			HashMap<SoftwareVersion,VersionComparisonResult> vMap = new HashMap<SoftwareVersion,VersionComparisonResult>();
-			for(SoftwareVersion u : getVersions()) {
-				if(!v.equals(u)) {
-					VersionComparisonResult compRes = v.compareToVersion(u, pageSize);
-					vMap.put(u, compRes);
+			for(int u = 0; u < versions.length; u++) {
+				if(v != u) {
+					vMap.put(versions[u], cmpMatrix.getResult(v, u));
 				} else {
-					vMap.put(u, null);
+					vMap.put(versions[u], null);
 				}
 			}
-			matrix.put(v, vMap);
+			matrix.put(versions[v], vMap);
 		}
 		
 		return matrix;
 	}
 	
+	/**
+	 * Compares all versions of the software to all other versions using the
+	 * shared {@link VersionSimilarity} and returns the results as a {@link VersionComparisonMatrix}.
+	 * 
+	 * @param pageSize page size
+	 * @return comparison results
+	 */
+	public VersionComparisonMatrix compareAllVersionsMatrix(int pageSize) {
+		return new VersionComparisonMatrix(getVersionSimilarity(pageSize));
+	}
+	
 	@Override
 	public int compareTo(Software o) {
 		return _name.compareTo(o._name);
@@ -290,4 +382,9 @@ public class Software implements Comparable<Software> {
 			return _name.equals(o._name);
 		}
 	}
+
+	@Override
+	public int hashCode() {
+		return _name.hashCode();
+	}
 }
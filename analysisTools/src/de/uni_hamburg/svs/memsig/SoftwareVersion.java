@@ -1,9 +1,11 @@
 package de.uni_hamburg.svs.memsig;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Objects;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
@@ -17,31 +19,72 @@ import org.apache.maven.artifact.versioning.ComparableVersion;
 public class SoftwareVersion implements Comparable<SoftwareVersion> {
 	private Software _software;
 	private String _versionString;
+	private int _ordinal; // position in the canonical ordering of the Software's versions
 	private ComparableVersion _versionNo;
 	private File _path;
 	private TreeSet<CodePart> _parts;
 	private int _pageSize;
+	private LoadOptions _loadOptions;
+	private HashMap<Integer, InternalDuplicates> _intDups; // page size -> internal duplicates
 	
 	/**
-	 * Creates a new SoftwareVersion object.
+	 * Creates a new SoftwareVersion object using the default {@link LoadOptions}.
 	 * 
 	 * @param software the {@link Software} the version belongs to
 	 * @param versionString String representation of the version number
 	 * @param path where the version is stored on the file system
 	 */
 	public SoftwareVersion(Software software, String versionString, File path, int pageSize) {
+		this(software, versionString, path, pageSize, new LoadOptions());
+	}
+	
+	/**
+	 * Creates a new SoftwareVersion object.
+	 * 
+	 * @param software the {@link Software} the version belongs to
+	 * @param versionString String representation of the version number
+	 * @param path where the version is stored on the file system
+	 * @param pageSize page size
+	 * @param loadOptions options for loading the version's parts
+	 */
+	public SoftwareVersion(Software software, String versionString, File path, int pageSize, LoadOptions loadOptions) {
 		_software = software;
 		_versionString = versionString;
 		_versionNo = new ComparableVersion(versionString);
 		_path = path;
 		_pageSize = pageSize;
+		_loadOptions = loadOptions;
+		_intDups = new HashMap<Integer, InternalDuplicates>();
 		
 		initializeParts();
 	}
 	
+	/**
+	 * Returns the ordinal of the version, i.e. its position in the canonical
+	 * ordering of the versions of its {@link Software} (starting at 0).
+	 * Ordinals are dense, so they can be used to index arrays and bitmaps
+	 * over the versions of a Software.
+	 * 
+	 * @return ordinal of the version
+	 */
+	public int getOrdinal() {
+		return _ordinal;
+	}
+	
+	/**
+	 * Sets the ordinal of the version. Ordinals are assigned by the
+	 * {@link Software}.
+	 * 
+	 * @param ordinal ordinal of the version
+	 */
+	void setOrdinal(int ordinal) {
+		_ordinal = ordinal;
+	}
+	
 	/**
 	 * Reads the parts of the binary (i.e. loadable segments for ELF binaries)
-	 * from the file system.
+	 * from the file system. If the parts have not previously been extracted,
+	 * they are extracted from the binary directly into memory.
 	 */
 	private void initializeParts() {
 		_parts = new TreeSet<CodePart>();
@@ -51,36 +94,82 @@ public class SoftwareVersion implements Comparable<SoftwareVersion> {
 		
 		// If the loadable segments have not previously
 		// been extracted into separate files, do it now.
+		// The extracted segments are used directly instead
+		// of reading them back from the files.
 		if(!partsDir.exists()) {
-			initializePartsDir(partsDir);
+			File outDir = _loadOptions.getWritePartFiles() ? partsDir : null;
+			for(CodePart sec : extractParts(outDir)) {
+				this.addPart(sec);
+			}
+			
+			if(outDir != null) {
+				writeFingerprintFile();
+			}
+			return;
 		}
 		
-		// Read the segments from files
+		// Read the segments from files. If a valid fingerprint file exists,
+		// the segments' metadata is taken from it and their contents will
+		// only be read when needed.
 		File[] partFiles = partsDir.listFiles();
+		File fpFile = FingerprintFile.getFile(_path, _pageSize);
+		HashMap<String, FingerprintFile.PartEntry> fpEntries = null;
+		if(_loadOptions.getUseFingerprintFiles()) {
+			fpEntries = FingerprintFile.read(fpFile, partFiles, _pageSize);
+		}
+		
 		for(File partFile : partFiles) {
 			String partName = partFile.getName();
-			CodePart sec = new CodePart(this, partName, partFile);
+			CodePart sec;
+			if(fpEntries != null) {
+				FingerprintFile.PartEntry e = fpEntries.get(partName);
+				sec = new CodePart(this, partName, partFile, _loadOptions.getMapParts(), e.getLength(), e.getFingerprint(), e.getPageTable());
+			} else {
+				sec = new CodePart(this, partName, partFile, _loadOptions.getMapParts());
+			}
 			this.addPart(sec);
 		}
+		
+		if(fpEntries == null) {
+			writeFingerprintFile();
+		}
+	}
+	
+	/**
+	 * Writes the {@link FingerprintFile} for the version's parts, if
+	 * fingerprint files are enabled.
+	 */
+	private void writeFingerprintFile() {
+		if(!_loadOptions.getUseFingerprintFiles()) {
+			return;
+		}
+		
+		File fpFile = FingerprintFile.getFile(_path, _pageSize);
+		try {
+			FingerprintFile.write(fpFile, _parts, _pageSize);
+		} catch (IOException e) {
+			System.err.println("Warning: Could not write fingerprint file " + fpFile.getAbsolutePath());
+			e.printStackTrace();
+		}
 	}
 	
 	/**
 	 * Extracts the parts of the binary (i.e. loadable segments for ELF
-	 * binaries) into individual files within a subdirectory of the version's
-	 * directory.
+	 * binaries) into memory. If partsDir is not null, the parts are also
+	 * stored as individual files within partsDir.
 	 * 
-	 * @param partsDir directory to store code part files
+	 * @param partsDir directory to store code part files, or null
+	 * @return the extracted parts
 	 */
-	private void initializePartsDir(File partsDir) {
+	private ArrayList<CodePart> extractParts(File partsDir) {
 		File bin = new File(_path, _software.getBinaryName());
 		if(!bin.exists()) {
 			System.err.println("Error: Could not find binary " + bin.getAbsolutePath());
 			System.exit(1);
 		}
 		
-		partsDir.mkdir();
 		ELFSegmentExtractor se = new ELFSegmentExtractor(bin, _pageSize);
-		se.split(partsDir, false, true);
+		return se.extractParts(this, partsDir);
 	}
 	
 	/**
@@ -109,13 +198,8 @@ public class SoftwareVersion implements Comparable<SoftwareVersion> {
 	 * @return true if an identical Page is contained in the version, false otherwise
 	 */
 	public boolean containsPageContent(Page o) {
-		for(CodePart s : _parts) {
-			if(s.pageContentIsInPart(o)) {
-				return true;
-			}
-		}
-		// ... else
-		return false;
+		PageIndex idx = _software.getPageIndex(o.getPageSize());
+		return idx.versionContainsPageContent(this, o);
 	}
 	
 	/**
@@ -142,55 +226,59 @@ public class SoftwareVersion implements Comparable<SoftwareVersion> {
 				
 		int matches = 0;
 		int unique = 0;
-		ArrayList<Page> internalDups = new ArrayList<Page>();
 		
-		// look for internal duplicates
-		for(CodePart s : _parts) {
-			for(int i = 0; i < s.numberOfPages(pageSize); i++) {
-				if(pageHasInternalDuplicate(s.getPage(i, pageSize))) {
-					internalDups.add(s.getPage(i, pageSize));
-				}
-			}
-		}
+		// Internal duplicates are determined once per version and page size.
+		InternalDuplicates internalDups = getInternalDuplicates(pageSize);
 		
-		// Check whether a page is also contained in cmpVersion or not
-		for(CodePart s : _parts) {
-			for(int i = 0; i < s.numberOfPages(pageSize); i++) {
-				Page p = s.getPage(i, pageSize);
-				// if(!internalDups.contains(p)) { -- not necessary here as this only makes describing the presented data more complicated...
-					boolean pageFound = cmpVersion.containsPageContent(p);
-					if(pageFound) {
-						matches++;
-					} else {
-						unique++;
-					}
-				// }
+		if(_software.equals(cmpVersion.getSoftware())) {
+			// The number of matches is cached by the Software.
+			VersionSimilarity sim = _software.getVersionSimilarity(pageSize);
+			matches = sim.numberOfMatches(this, cmpVersion);
+			unique = numberOfPages(pageSize) - matches;
+		} else {
+			// Check whether a page is also contained in cmpVersion or not
+			for(CodePart s : _parts) {
+				for(int i = 0; i < s.numberOfPages(pageSize); i++) {
+					Page p = s.getPage(i, pageSize);
+					// if(!internalDups.contains(p)) { -- not necessary here as this only makes describing the presented data more complicated...
+						boolean pageFound = cmpVersion.containsPageContent(p);
+						if(pageFound) {
+							matches++;
+						} else {
+							unique++;
+						}
+					// }
+				}
 			}
 		}
 		
-		VersionComparisonResult vcs = new VersionComparisonResult(this, cmpVersion, matches, unique, internalDups.size());
+		VersionComparisonResult vcs = new VersionComparisonResult(this, cmpVersion, matches, unique, internalDups.numberOfDuplicatePages());
 		return vcs;
 	}
 	
 	/**
-	 * Checks whether there is an internal duplicate of a Page.
+	 * Returns the internal duplicates of the version for the specified page size.
+	 * They are computed on first use and cached afterwards.
 	 * 
-	 * @param p Page to check
-	 * @return true if an internal duplicate exists, false otherwise
+	 * @param pageSize page size
+	 * @return the internal duplicates
 	 */
-	private boolean pageHasInternalDuplicate(Page p) {
-		for(CodePart s : _parts) {
-			for(int i = 0; i < s.numberOfPages(p.getPageSize()); i++) {
-				Page op = s.getPage(i, p.getPageSize());
-				if(!(p.getPart().equals(s) && (p.getPos() == op.getPos()))) {
-					if(p.contentsEqualTo(op)) {
-						return true;
-					}
-				}
-			}
+	public synchronized InternalDuplicates getInternalDuplicates(int pageSize) {
+		InternalDuplicates dups = _intDups.get(pageSize);
+		if(dups == null) {
+			dups = new InternalDuplicates(this, _software.getPageIndex(pageSize));
+			_intDups.put(pageSize, dups);
 		}
-		
-		return false;
+		return dups;
+	}
+	
+	/**
+	 * Returns the page size that the version's parts have been extracted for.
+	 * 
+	 * @return the page size
+	 */
+	public int getPageSize() {
+		return _pageSize;
 	}
 	
 	/**
@@ -231,25 +319,22 @@ public class SoftwareVersion implements Comparable<SoftwareVersion> {
 	 * @return pages useable in signatures
 	 */
 	public Page[] getUseablePages(int pageSize) {
-		// TODO implement
 		ArrayList<Page> pgs = new ArrayList<Page>();
+		InternalDuplicates internalDups = getInternalDuplicates(pageSize);
 		
 		for(CodePart s : _parts) {
-			outerloop:
-			for(int i = 0; i < s.numberOfPages(pageSize); i++) {
-				Page p = s.getPage(i, pageSize);
-				
-				if(p.isAllZeroes() || p.isAllOnes()) {
+			PageTable table = s.getPageTable(pageSize);
+			for(int i = 0; i < table.numberOfPages(); i++) {
+				// keep only the first copy of internal duplicates
+				if(internalDups.isRepeat(s, i)) {
 					continue;
 				}
 				
-				for(Page pcmp : pgs) {
-					if(p.contentsEqualTo(pcmp)) {
-						continue outerloop;
-					}
+				if(table.isTrivial(i)) {
+					continue;
 				}
 				
-				pgs.add(p);
+				pgs.add(s.getPage(i, pageSize));
 			}
 		}
 		
@@ -286,6 +371,11 @@ public class SoftwareVersion implements Comparable<SoftwareVersion> {
 		}
 	}
 
+	@Override
+	public int hashCode() {
+		return Objects.hash(_software, _versionNo);
+	}
+
 	@Override
 	public String toString() {
 		return _versionString;
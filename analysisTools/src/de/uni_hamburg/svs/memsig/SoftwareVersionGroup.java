@@ -1,16 +1,18 @@
 package de.uni_hamburg.svs.memsig;
 
-import java.util.TreeSet;
-
-import org.apache.commons.lang3.ArrayUtils;
-
 /**
  * This class represents a group of {@link SoftwareVersion}s.
  * 
+ * All versions of a group must belong to the same {@link Software}. The
+ * group is stored as a bitmap over the ordinals of the Software's versions
+ * (cf. {@link SoftwareVersion#getOrdinal()}), so a group must not be used
+ * after versions have been added to the Software.
+ * 
  * @author Jens Lindemann
  */
 public class SoftwareVersionGroup {
-	private TreeSet<SoftwareVersion> _versions;
+	private Software _sw;
+	private VersionBitmap _members; // ordinals of the versions in the group
 	
 	/**
 	 * Instantiates a new SoftwareVersionGroup with the specified 
@@ -19,7 +21,6 @@ public class SoftwareVersionGroup {
 	 * @param versions {@link SoftwareVersions} to assign to group
 	 */
 	public SoftwareVersionGroup(SoftwareVersion[] versions) {
-		_versions = new TreeSet<SoftwareVersion>();
 		for(int i = 0; i < versions.length; i++) {
 			this.addVersion(versions[i]);
 		}
@@ -32,28 +33,20 @@ public class SoftwareVersionGroup {
 	 * @return average distance between versions
 	 */
 	public double getAvgVersionDistance() {
-		SoftwareVersion[] gvs = this.toArray();
-		int[] gvsidx = new int[gvs.length];
-		SoftwareVersion[] avs = gvs[0].getSoftware().getVersions().toArray(new SoftwareVersion[0]);
-		
-		for(int i = 0; i < gvs.length; i++) {
-			gvsidx[i] = ArrayUtils.indexOf(avs, gvs[i]);
-		}
-		
-		if(gvs.length < 2) {
+		int n = size();
+		if(n < 2) {
 			return 0;
 		}
 		
+		// With the ordinals in ascending order, the i-th ordinal is the larger
+		// one in i pairs and the smaller one in n-1-i pairs.
 		long sum = 0;
-		long count = 0;
-		
-		for(int i = 0; (i+1) < gvs.length; i++) {
-			for(int j = i+1; j < gvs.length; j++) {
-				long dist = Math.abs(gvsidx[j] - gvsidx[i]);
-				sum += dist;
-				count++;
-			}
+		int i = 0;
+		for(int o = _members.nextSetBit(0); o >= 0; o = _members.nextSetBit(o + 1)) {
+			sum += (long)o * (2 * i - (n - 1));
+			i++;
 		}
+		long count = (long)n * (n - 1) / 2;
 		
 		double avgDist = (double)sum / count;
 		return avgDist;
@@ -66,15 +59,7 @@ public class SoftwareVersionGroup {
 	 * @return maximum distance between two versions in the group
 	 */
 	public int getMaxVersionDistance() {
-		SoftwareVersion[] avs = _versions.first().getSoftware().getVersions().toArray(new SoftwareVersion[0]);
-		
-		SoftwareVersion first = _versions.first();
-		SoftwareVersion last = _versions.last();
-		
-		int firstIdx = ArrayUtils.indexOf(avs, first);
-		int lastIdx = ArrayUtils.indexOf(avs, last);
-		
-		int maxDist = Math.abs(lastIdx - firstIdx);
+		int maxDist = _members.lastSetBit() - _members.nextSetBit(0);
 		return maxDist;
 	}
 	
@@ -86,19 +71,7 @@ public class SoftwareVersionGroup {
 	 * @return number of skipped versions
 	 */
 	public int getSkippedVersionCount() {
-		SoftwareVersion[] avs = _versions.first().getSoftware().getVersions().toArray(new SoftwareVersion[0]);
-		SoftwareVersion[] gvs = this.toArray();
-		
-		int firstIdx = ArrayUtils.indexOf(avs, _versions.first());
-		int lastIdx = ArrayUtils.indexOf(avs, _versions.last());
-		
-		int skippedVersions = 0;
-		for(int i = firstIdx; i < lastIdx; i++) {
-			if(!ArrayUtils.contains(gvs, avs[i])) {
-				skippedVersions++;
-			}
-		}
-		
+		int skippedVersions = (getMaxVersionDistance() + 1) - size();
 		return skippedVersions;
 	}
 	
@@ -107,7 +80,44 @@ public class SoftwareVersionGroup {
 	 * 			in the group.
 	 */
 	public SoftwareVersion[] toArray() {
-		return _versions.toArray(new SoftwareVersion[0]);
+		SoftwareVersion[] versions = new SoftwareVersion[size()];
+		if(_members == null) {
+			return versions;
+		}
+		
+		int i = 0;
+		for(int o = _members.nextSetBit(0); o >= 0; o = _members.nextSetBit(o + 1)) {
+			versions[i++] = _sw.getVersion(o);
+		}
+		return versions;
+	}
+	
+	/**
+	 * Returns the ordinals of the versions in the group in ascending order.
+	 * 
+	 * @return ordinals of the versions
+	 */
+	public int[] getOrdinals() {
+		int[] ordinals = new int[size()];
+		if(_members == null) {
+			return ordinals;
+		}
+		
+		int i = 0;
+		for(int o = _members.nextSetBit(0); o >= 0; o = _members.nextSetBit(o + 1)) {
+			ordinals[i++] = o;
+		}
+		return ordinals;
+	}
+	
+	/**
+	 * Checks whether a {@link SoftwareVersion} is part of the group.
+	 * 
+	 * @param sv {@link SoftwareVersion} to check
+	 * @return true if sv is part of the group, false otherwise
+	 */
+	public boolean contains(SoftwareVersion sv) {
+		return (_members != null) && (sv.getSoftware() == _sw) && _members.get(sv.getOrdinal());
 	}
 	
 	/**
@@ -116,7 +126,13 @@ public class SoftwareVersionGroup {
 	 * @param sv {@link SoftwareVersion} to add
 	 */
 	public void addVersion(SoftwareVersion sv) {
-		_versions.add(sv);
+		if(_members == null) {
+			_sw = sv.getSoftware();
+			_members = new VersionBitmap(_sw.numberOfVersions());
+		} else if(sv.getSoftware() != _sw) {
+			throw new IllegalArgumentException("Version " + sv + " does not belong to " + _sw.getName());
+		}
+		_members.set(sv.getOrdinal());
 	}
 	
 	/**
@@ -125,6 +141,6 @@ public class SoftwareVersionGroup {
 	 * @return number of versions in group
 	 */
 	public int size() {
-		return _versions.size();
+		return (_members == null) ? 0 : _members.cardinality();
 	}
 }
@@ -0,0 +1,163 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.util.Arrays;
+
+/**
+ * A compact bitmap over the versions of a {@link Software}, e.g. for storing
+ * which versions contain a specific page content. Bit i corresponds to the
+ * version at position i in the corresponding {@link PageIndex} or, for
+ * bitmaps over all versions of a Software, the version with ordinal i.
+ *
+ * Unlike {@link java.util.BitSet}, this class offers subset tests that do
+ * not allocate intermediate objects, which are needed in the inner loops
+ * of signature generation.
+ */
+public class VersionBitmap {
+	private final long[] _words;
+	private final int _size;
+	private int _cardinality;
+
+	/**
+	 * Creates a new, empty VersionBitmap.
+	 *
+	 * @param size number of versions the bitmap covers
+	 */
+	public VersionBitmap(int size) {
+		_size = size;
+		_words = new long[(size + 63) >>> 6];
+		_cardinality = 0;
+	}
+
+	/**
+	 * Creates a copy of another VersionBitmap.
+	 *
+	 * @param o bitmap to copy
+	 */
+	public VersionBitmap(VersionBitmap o) {
+		_size = o._size;
+		_words = o._words.clone();
+		_cardinality = o._cardinality;
+	}
+
+	/**
+	 * Returns the number of versions the bitmap covers.
+	 *
+	 * @return number of versions covered
+	 */
+	public int size() {
+		return _size;
+	}
+
+	/**
+	 * Sets the bit for a version.
+	 *
+	 * @param pos position of the version
+	 */
+	public void set(int pos) {
+		long mask = 1L << pos;
+		int w = pos >>> 6;
+		if((_words[w] & mask) == 0) {
+			_words[w] |= mask;
+			_cardinality++;
+		}
+	}
+
+	/**
+	 * Clears the bit for a version.
+	 *
+	 * @param pos position of the version
+	 */
+	public void clear(int pos) {
+		long mask = 1L << pos;
+		int w = pos >>> 6;
+		if((_words[w] & mask) != 0) {
+			_words[w] &= ~mask;
+			_cardinality--;
+		}
+	}
+
+	/**
+	 * Returns the bit for a version.
+	 *
+	 * @param pos position of the version
+	 * @return true if the bit is set, false otherwise
+	 */
+	public boolean get(int pos) {
+		return (_words[pos >>> 6] & (1L << pos)) != 0;
+	}
+
+	/**
+	 * Returns the number of bits set.
+	 *
+	 * @return number of bits set
+	 */
+	public int cardinality() {
+		return _cardinality;
+	}
+
+	/**
+	 * Returns the position of the first bit set at or after from.
+	 *
+	 * @param from position to start at
+	 * @return position of the next bit set or -1 if there is none
+	 */
+	public int nextSetBit(int from) {
+		if(from >= _size) {
+			return -1;
+		}
+		int w = from >>> 6;
+		long word = _words[w] & (-1L << from);
+		while(true) {
+			if(word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if(++w == _words.length) {
+				return -1;
+			}
+			word = _words[w];
+		}
+	}
+
+	/**
+	 * Returns the position of the last bit set.
+	 *
+	 * @return position of the last bit set or -1 if no bit is set
+	 */
+	public int lastSetBit() {
+		for(int w = _words.length - 1; w >= 0; w--) {
+			if(_words[w] != 0) {
+				return (w << 6) + 63 - Long.numberOfLeadingZeros(_words[w]);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether all bits set in o are also set in this bitmap.
+	 *
+	 * @param o bitmap to check
+	 * @return true if this bitmap is a superset of o, false otherwise
+	 */
+	public boolean containsAll(VersionBitmap o) {
+		for(int i = 0; i < _words.length; i++) {
+			if((o._words[i] & ~_words[i]) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(!(obj instanceof VersionBitmap)) {
+			return false;
+		}
+		VersionBitmap o = (VersionBitmap)obj;
+		return (_size == o._size) && (_cardinality == o._cardinality) && Arrays.equals(_words, o._words);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(_words);
+	}
+}
@@ -0,0 +1,114 @@
+package de.uni_hamburg.svs.memsig;
+
+/**
+ * This class contains the results of comparing all {@link SoftwareVersion}s
+ * of a {@link Software} to each other, i.e. the same numbers that
+ * {@link SoftwareVersion#compareToVersion(SoftwareVersion, int)} computes
+ * for a single pair of versions.
+ *
+ * The numbers of matching pages are taken from the {@link VersionSimilarity}
+ * of the Software, which computes them in one pass over the pages of each
+ * version and shares them with other users such as the {@link GroupFinder}s.
+ */
+public class VersionComparisonMatrix {
+	private SoftwareVersion[] _versions;
+	private int[] _numPages;
+	private int[] _intDups;
+	private int[][] _matches; // [v][u]: number of pages of v also contained in u
+
+	/**
+	 * Compares all versions to each other.
+	 *
+	 * @param sim {@link VersionSimilarity} of the versions to compare
+	 */
+	public VersionComparisonMatrix(VersionSimilarity sim) {
+		_versions = sim.getVersions();
+		int numVersions = _versions.length;
+		int pageSize = sim.getPageSize();
+
+		_numPages = new int[numVersions];
+		_intDups = new int[numVersions];
+		_matches = new int[numVersions][numVersions];
+
+		for(int v = 0; v < numVersions; v++) {
+			_numPages[v] = sim.numberOfPages(v);
+			for(int u = 0; u < numVersions; u++) {
+				_matches[v][u] = sim.numberOfMatches(v, u);
+			}
+			_intDups[v] = _versions[v].getInternalDuplicates(pageSize).numberOfDuplicatePages();
+		}
+	}
+
+	/**
+	 * Returns the compared versions. The position of a version in the array
+	 * corresponds to its index in the other methods of this class.
+	 *
+	 * @return the compared versions
+	 */
+	public SoftwareVersion[] getVersions() {
+		return _versions.clone();
+	}
+
+	/**
+	 * Returns the number of versions compared.
+	 *
+	 * @return number of versions
+	 */
+	public int numberOfVersions() {
+		return _versions.length;
+	}
+
+	/**
+	 * Returns the number of pages of version v.
+	 *
+	 * @param v index of the version
+	 * @return number of pages
+	 */
+	public int numberOfPages(int v) {
+		return _numPages[v];
+	}
+
+	/**
+	 * Returns the number of pages in version v that are also present in version u.
+	 *
+	 * @param v index of the original version
+	 * @param u index of the comparison version
+	 * @return number of matching pages
+	 */
+	public int numberOfMatches(int v, int u) {
+		return _matches[v][u];
+	}
+
+	/**
+	 * Returns the number of pages in version v that are not present in version u.
+	 *
+	 * @param v index of the original version
+	 * @param u index of the comparison version
+	 * @return number of unique pages
+	 */
+	public int numberOfUniques(int v, int u) {
+		return _numPages[v] - _matches[v][u];
+	}
+
+	/**
+	 * Returns the number of pages of version v that have an internal duplicate.
+	 *
+	 * @param v index of the version
+	 * @return number of internal duplicate pages
+	 */
+	public int numberOfInternalDuplicates(int v) {
+		return _intDups[v];
+	}
+
+	/**
+	 * Returns the comparison result for versions v and u as a
+	 * {@link VersionComparisonResult}.
+	 *
+	 * @param v index of the original version
+	 * @param u index of the comparison version
+	 * @return the comparison result
+	 */
+	public VersionComparisonResult getResult(int v, int u) {
+		return new VersionComparisonResult(_versions[v], _versions[u], numberOfMatches(v, u), numberOfUniques(v, u), numberOfInternalDuplicates(v));
+	}
+}
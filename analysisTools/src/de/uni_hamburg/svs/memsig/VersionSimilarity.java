@@ -0,0 +1,174 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.util.Arrays;
+
+/**
+ * Pairwise similarity of the {@link SoftwareVersion}s of a {@link Software},
+ * i.e. the number of pages of a version whose contents are also contained in
+ * another version. This is the number of matches reported by
+ * {@link SoftwareVersion#compareToVersion(SoftwareVersion, int)}.
+ *
+ * The numbers are computed lazily from the version-membership bitmaps of the
+ * {@link PageIndex} and cached, so that they are computed at most once per
+ * process. When a number for a version is requested for the first time, the
+ * numbers for this version and all other versions are computed in a single
+ * pass over the version's pages. One object per page size is shared by all
+ * users of a Software (see {@link Software#getVersionSimilarity(int)}).
+ *
+ * This class is thread-safe.
+ */
+public class VersionSimilarity {
+	private PageIndex _idx;
+	private SoftwareVersion[] _versions;
+	private int _numVersions;
+	private int[] _numPages;
+	private int[] _matches; // [v*numVersions+u]: pages of v also contained in u, -1 if not computed yet
+
+	// scratch space for computing a row, guarded by this
+	private int[] _counts;
+	private int[] _distinct;
+
+	/**
+	 * Creates a new VersionSimilarity object for the versions in the
+	 * specified index. No numbers are computed yet.
+	 *
+	 * @param idx {@link PageIndex} containing the versions
+	 */
+	VersionSimilarity(PageIndex idx) {
+		_idx = idx;
+		_versions = idx.getVersions();
+		_numVersions = _versions.length;
+		_numPages = new int[_numVersions];
+		for(int v = 0; v < _numVersions; v++) {
+			_numPages[v] = _versions[v].numberOfPages(idx.getPageSize());
+		}
+
+		_matches = new int[_numVersions * _numVersions];
+		Arrays.fill(_matches, -1);
+	}
+
+	/**
+	 * Returns the versions. The position of a version in the array
+	 * corresponds to its index in the other methods of this class.
+	 *
+	 * @return the versions
+	 */
+	public SoftwareVersion[] getVersions() {
+		return _versions.clone();
+	}
+
+	/**
+	 * Returns the number of versions.
+	 *
+	 * @return number of versions
+	 */
+	public int numberOfVersions() {
+		return _numVersions;
+	}
+
+	/**
+	 * Returns the index of a version.
+	 *
+	 * @param sv {@link SoftwareVersion}
+	 * @return index of sv or -1 if sv is unknown
+	 */
+	public int getVersionPosition(SoftwareVersion sv) {
+		return _idx.getVersionPosition(sv);
+	}
+
+	/**
+	 * Returns the page size.
+	 *
+	 * @return page size
+	 */
+	public int getPageSize() {
+		return _idx.getPageSize();
+	}
+
+	/**
+	 * Returns the number of pages of version v.
+	 *
+	 * @param v index of the version
+	 * @return number of pages
+	 */
+	public int numberOfPages(int v) {
+		return _numPages[v];
+	}
+
+	/**
+	 * Returns the number of pages in version v that are also present in version u.
+	 *
+	 * @param v index of the original version
+	 * @param u index of the comparison version
+	 * @return number of matching pages
+	 */
+	public int numberOfMatches(int v, int u) {
+		// A value other than -1 is final, so it can be read without locking.
+		int m = _matches[v * _numVersions + u];
+		if(m < 0) {
+			m = computeRow(v)[u];
+		}
+		return m;
+	}
+
+	/**
+	 * Returns the number of pages in version v that are also present in version u.
+	 *
+	 * @param v original version
+	 * @param u comparison version
+	 * @return number of matching pages
+	 */
+	public int numberOfMatches(SoftwareVersion v, SoftwareVersion u) {
+		return numberOfMatches(getVersionPosition(v), getVersionPosition(u));
+	}
+
+	/**
+	 * Computes the numbers of matches of version v with all versions, unless
+	 * this has already happened.
+	 *
+	 * @param v index of the version
+	 * @return numbers of matches of v with all versions
+	 */
+	private synchronized int[] computeRow(int v) {
+		int[] row = new int[_numVersions];
+		int off = v * _numVersions;
+		if(_matches[off] >= 0) {
+			System.arraycopy(_matches, off, row, 0, _numVersions);
+			return row;
+		}
+
+		if(_counts == null) {
+			_counts = new int[_idx.numberOfContents()];
+			_distinct = new int[16];
+		}
+
+		// number of occurrences of each content in v
+		int pageSize = _idx.getPageSize();
+		int numDistinct = 0;
+		for(CodePart part : _versions[v].getParts()) {
+			for(int i = 0; i < part.numberOfPages(pageSize); i++) {
+				int cid = _idx.getContentId(part, i);
+				if(_counts[cid] == 0) {
+					if(numDistinct == _distinct.length) {
+						_distinct = Arrays.copyOf(_distinct, _distinct.length * 2);
+					}
+					_distinct[numDistinct++] = cid;
+				}
+				_counts[cid]++;
+			}
+		}
+
+		// Every page of v matches all versions containing its content.
+		for(int d = 0; d < numDistinct; d++) {
+			int cid = _distinct[d];
+			VersionBitmap members = _idx.getMembership(cid);
+			for(int u = members.nextSetBit(0); u >= 0; u = members.nextSetBit(u + 1)) {
+				row[u] += _counts[cid];
+			}
+			_counts[cid] = 0;
+		}
+
+		System.arraycopy(row, 0, _matches, off, _numVersions);
+		return row;
+	}
+}
@@ -0,0 +1,32 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+
+/**
+ * Runs all checks in this directory.
+ *
+ * Run with the classes of src and their libraries on the classpath:
+ * java de.uni_hamburg.svs.memsig.AllChecks
+ */
+public class AllChecks {
+	public static void main(String[] args) throws IOException {
+		Check.runChecks(
+				new MappedPartsCheck(),
+				new VersionComparisonMatrixCheck(),
+				new ParallelSignatureCheck(),
+				new FingerprintFileCheck(),
+				new GroupSignatureCheck(),
+				new GroupFinderSweepCheck(),
+				new ContiguousGroupFinderCheck(),
+				new RangeSignatureIndexCheck(),
+				new IterativeNeighbouringGroupFinderCheck(),
+				new BranchAndBoundGroupFinderCheck(),
+				new SpeculativeEvaluationCheck(),
+				new CorpusCheck(),
+				new SignatureFileCheck(),
+				new SignatureCatalogCheck(),
+				new CheckpointCheck(),
+				new PageIndexCheck(),
+				new AnnealingGroupFinderCheck());
+	}
+}
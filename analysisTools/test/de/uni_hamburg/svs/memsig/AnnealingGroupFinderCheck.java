@@ -0,0 +1,60 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+
+/**
+ * Checks {@link AnnealingGroupFinder} on a {@link SyntheticSoftware} with
+ * one and several islands: The configuration found must be valid and never
+ * worse than that of {@link IterativeSimilarityGroupFinder}, the evaluation
+ * budget must be used up exactly (unless no move is possible), and runs with
+ * the same seed must find the same groups.
+ */
+public class AnnealingGroupFinderCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new AnnealingGroupFinderCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 12, 9, 2);
+		VersionSignature[] idvSigs = sw.generateVersionSignatures(SyntheticSoftware.PAGE_SIZE);
+		for(double thresh : new double[] { 1.0, 0.02 }) {
+			for(int maxDist : new int[] { 0, 3, 11 }) {
+				for(int islands : new int[] { 1, 3 }) {
+					// budgets that are no multiple of the moves per epoch or the number of islands
+					for(long budget : new long[] { 1, 2500, 4001 }) {
+						checkBudget(sw, idvSigs, thresh, maxDist, islands, budget);
+					}
+				}
+			}
+		}
+	}
+
+	private void checkBudget(Software sw, VersionSignature[] idvSigs, double thresh, int maxDist, int islands, long budget) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "thresh " + thresh + ", maxDist " + maxDist + ", " + islands + " islands, budget " + budget + ": ";
+		AnnealingGroupFinder grpf = new AnnealingGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		grpf.setIslands(islands);
+		grpf.setSeed(42);
+		grpf.setEvaluationBudget(budget);
+		String groups = groups(grpf);
+
+		if(maxDist == 0) {
+			check(grpf.getEvaluations() == 0, ctx + "no evaluations without possible moves (" + grpf.getEvaluations() + ")");
+		} else {
+			check(grpf.getEvaluations() == budget, ctx + "evaluations (" + grpf.getEvaluations() + ") equal budget");
+			check(grpf.isBudgetExhausted(), ctx + "budget exhausted");
+		}
+
+		checkConfig(grpf.getBestGroupConfigSignatures(), grpf.remainingCandidates(), grpf._nonCands, maxDist, ctx);
+		IterativeSimilarityGroupFinder greedy = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		check(grpf.getBestGroupConfigAvgSigsize() >= greedy.getBestGroupConfigAvgSigsize() - 1e-9, ctx + "average " + grpf.getBestGroupConfigAvgSigsize()
+				+ " not below greedy " + greedy.getBestGroupConfigAvgSigsize());
+
+		AnnealingGroupFinder again = new AnnealingGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		again.setIslands(islands);
+		again.setSeed(42);
+		again.setEvaluationBudget(budget);
+		check(groups(again).equals(groups), ctx + "same groups with the same seed");
+	}
+}
@@ -0,0 +1,183 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Checks that {@link BranchAndBoundGroupFinder} finds the optimal group
+ * configuration by comparing its average signature size with the best one
+ * among all partitions of the candidates into groups, which are enumerated
+ * exhaustively for a small {@link SyntheticSoftware}, sequentially and in
+ * parallel. It also checks the configuration found when the node budget is
+ * exhausted and the reported search statistics.
+ */
+public class BranchAndBoundGroupFinderCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new BranchAndBoundGroupFinderCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 9, 3, 2);
+		VersionSignature[] idvSigs = sw.generateVersionSignatures(SyntheticSoftware.PAGE_SIZE);
+		double maxPruned = 0;
+		for(double thresh : new double[] { 1.0, 0.02 }) {
+			for(int maxDist : new int[] { 1, 3, 8 }) {
+				maxPruned = Math.max(maxPruned, checkOptimal(sw, idvSigs, thresh, maxDist));
+				checkNodeBudget(sw, idvSigs, thresh, maxDist);
+			}
+		}
+		check(maxPruned > 0, "some of the search space pruned");
+	}
+
+	/**
+	 * Checks that the finder reaches the optimum.
+	 *
+	 * @return proportion of the search space pruned by the sequential search
+	 */
+	private double checkOptimal(Software sw, VersionSignature[] idvSigs, double thresh, int maxDist) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "thresh " + thresh + ", maxDist " + maxDist + ": ";
+		BranchAndBoundGroupFinder grpf = new BranchAndBoundGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		int[] cands = grpf.remainingCandidates();
+		int[] nonCands = grpf._nonCands;
+		check(cands.length > 1, ctx + "several candidates");
+
+		long fixedSum = 0;
+		for(int nc : nonCands) {
+			fixedSum += idvSigs[nc].numberOfPages();
+		}
+		Partitions p = new Partitions(sw, idvSigs, cands, maxDist);
+		p.enumerate(0, new int[cands.length], 0);
+		long bestSum = fixedSum + p._bestSum;
+		long bestGroups = nonCands.length + p._bestGroups;
+
+		double pruned = 0;
+		for(int threads : new int[] { 1, 4 }) {
+			String tctx = ctx + threads + " threads: ";
+			grpf = new BranchAndBoundGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+			grpf.setThreads(threads);
+			grpf.findSignatureGroups();
+			check(!grpf.isNodeBudgetExhausted(), tctx + "node budget not exhausted");
+			check((grpf.getPrunedFraction() >= 0) && (grpf.getPrunedFraction() <= 1 + 1e-9), tctx + "pruned fraction " + grpf.getPrunedFraction() + " within [0, 1]");
+			check((grpf.getNodesPruned() > 0) == (grpf.getPrunedFraction() > 0), tctx + "pruned fraction reported iff subtrees were pruned");
+			check(grpf.getIterations() >= 1, tctx + "at least one iteration");
+
+			VersionSignature[] sigs = grpf.getBestGroupConfigSignatures();
+			long sum = checkConfig(sigs, cands, nonCands, maxDist, tctx);
+			check(sum * bestGroups == bestSum * sigs.length, tctx + "average " + sum + "/" + sigs.length
+					+ ", optimum " + bestSum + "/" + bestGroups);
+			if(threads == 1) {
+				pruned = grpf.getPrunedFraction();
+			}
+		}
+		return pruned;
+	}
+
+	/**
+	 * Checks the configuration found when the node budget is exhausted: It
+	 * must still be valid and at least as good as the greedy configuration
+	 * that the search starts with.
+	 */
+	private void checkNodeBudget(Software sw, VersionSignature[] idvSigs, double thresh, int maxDist) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "thresh " + thresh + ", maxDist " + maxDist + ", node budget 5: ";
+		BranchAndBoundGroupFinder grpf = new BranchAndBoundGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		grpf.setNodeBudget(5);
+		grpf.findSignatureGroups();
+		check(grpf.isNodeBudgetExhausted(), ctx + "node budget exhausted");
+		check(grpf.getNodesExplored() <= 5, ctx + "nodes explored (" + grpf.getNodesExplored() + ") within budget");
+
+		checkConfig(grpf.getBestGroupConfigSignatures(), grpf.remainingCandidates(), grpf._nonCands, maxDist, ctx);
+		IterativeSimilarityGroupFinder greedy = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		check(grpf.getBestGroupConfigAvgSigsize() >= greedy.getBestGroupConfigAvgSigsize() - 1e-9, ctx + "average " + grpf.getBestGroupConfigAvgSigsize()
+				+ " not below greedy " + greedy.getBestGroupConfigAvgSigsize());
+	}
+
+	/**
+	 * Enumerates all partitions of the candidates into groups within the
+	 * maximum distance whose signatures are non-empty (for groups of several
+	 * candidates) and records the best average signature size.
+	 */
+	private static class Partitions {
+		private Software _sw;
+		private VersionSignature[] _idvSigs;
+		private int[] _cands;
+		private int _maxDist;
+		private HashMap<Integer, Integer> _sizes; // signature sizes by bitmask of candidates
+
+		private long _bestSum = -1;
+		private long _bestGroups = 1;
+
+		Partitions(Software sw, VersionSignature[] idvSigs, int[] cands, int maxDist) {
+			_sw = sw;
+			_idvSigs = idvSigs;
+			_cands = cands;
+			_maxDist = maxDist;
+			_sizes = new HashMap<Integer, Integer>();
+		}
+
+		/**
+		 * Assigns candidate i and the following ones to groups.
+		 *
+		 * @param i next candidate
+		 * @param masks bitmasks of the groups opened so far
+		 * @param groups number of groups opened so far
+		 */
+		void enumerate(int i, int[] masks, int groups) {
+			if(i == _cands.length) {
+				long sum = 0;
+				for(int g = 0; g < groups; g++) {
+					int size = size(masks[g]);
+					if(size < 0) {
+						return;
+					}
+					sum += size;
+				}
+				if((_bestSum < 0) || (sum * _bestGroups > _bestSum * groups)) {
+					_bestSum = sum;
+					_bestGroups = groups;
+				}
+				return;
+			}
+
+			for(int g = 0; g < groups; g++) {
+				int first = Integer.numberOfTrailingZeros(masks[g]);
+				if(_cands[i] - _cands[first] <= _maxDist) {
+					masks[g] |= 1 << i;
+					enumerate(i + 1, masks, groups);
+					masks[g] &= ~(1 << i);
+				}
+			}
+			masks[groups] = 1 << i;
+			enumerate(i + 1, masks, groups + 1);
+			masks[groups] = 0;
+		}
+
+		/**
+		 * @return signature size of a group, -1 if it may not be formed
+		 */
+		private int size(int mask) {
+			Integer size = _sizes.get(mask);
+			if(size == null) {
+				SoftwareVersion[] grp = new SoftwareVersion[Integer.bitCount(mask)];
+				int k = 0;
+				for(int i = 0; i < _cands.length; i++) {
+					if((mask & (1 << i)) != 0) {
+						grp[k++] = _idvSigs[_cands[i]].getSoftwareVersions()[0];
+					}
+				}
+				if(grp.length == 1) {
+					size = _idvSigs[_cands[Integer.numberOfTrailingZeros(mask)]].numberOfPages();
+				} else {
+					size = _sw.generateVersionsSignature(grp, SyntheticSoftware.PAGE_SIZE).numberOfPages();
+					if(size == 0) {
+						size = -1;
+					}
+				}
+				_sizes.put(mask, size);
+			}
+			return size;
+		}
+	}
+}
@@ -0,0 +1,231 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Base class of the checks in this directory. A check runs in a temporary
+ * directory, in which it can create {@link SyntheticSoftware}s, and counts
+ * its failed conditions. {@link #runChecks(Check...)} runs checks, deletes
+ * their directories and reports the result, exiting with status 1 if any
+ * condition failed.
+ *
+ * Run a single check or {@link AllChecks} with the classes of src and their
+ * libraries on the classpath, e.g.:
+ * java de.uni_hamburg.svs.memsig.AllChecks
+ */
+abstract class Check {
+	private File _dir;
+	private int _failures;
+
+	/**
+	 * Runs the check.
+	 *
+	 * @throws IOException if the files of the check cannot be written or read
+	 */
+	abstract void run() throws IOException;
+
+	/**
+	 * @return temporary directory of the check
+	 */
+	File getDirectory() {
+		return _dir;
+	}
+
+	/**
+	 * Writes a {@link SyntheticSoftware} to the directory of the check and loads it.
+	 * @see{de.uni_hamburg.svs.memsig.SyntheticSoftware#create(File,String,int,long,int)}
+	 */
+	Software createSoftware(String name, int numVersions, long seed, int minRun) throws IOException {
+		return SyntheticSoftware.create(_dir, name, numVersions, seed, minRun);
+	}
+
+	/**
+	 * Returns the versions of a Software in their canonical order.
+	 *
+	 * @param sw the Software
+	 * @return the versions
+	 */
+	static SoftwareVersion[] versions(Software sw) {
+		return sw.getVersions().toArray(new SoftwareVersion[0]);
+	}
+
+	/**
+	 * Finds the groups of a GroupFinder.
+	 *
+	 * @param grpf the GroupFinder
+	 * @return the groups, one per line, with their versions separated by "__"
+	 */
+	static String groups(GroupFinder grpf) {
+		StringBuilder sb = new StringBuilder();
+		for(SoftwareVersionGroup grp : grpf.findSignatureGroups()) {
+			sb.append(String.join("__", Arrays.stream(grp.toArray()).map(SoftwareVersion::toString).toArray(String[]::new)));
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Checks that every version is in exactly one group, that non-candidates
+	 * form groups of their own and that groups of several candidates are
+	 * within the maximum distance and have a non-empty signature.
+	 *
+	 * @param sigs signatures of the groups
+	 * @param cands indices of the candidates in ascending order
+	 * @param nonCands indices of the non-candidates in ascending order
+	 * @param maxDist maximum distance
+	 * @param ctx context for the descriptions of the conditions
+	 * @return total signature size
+	 */
+	long checkConfig(VersionSignature[] sigs, int[] cands, int[] nonCands, int maxDist, String ctx) {
+		boolean[] seen = new boolean[cands.length + nonCands.length];
+		int versions = 0;
+		long sum = 0;
+		for(VersionSignature sig : sigs) {
+			SoftwareVersion[] grp = sig.getSoftwareVersions();
+			sum += sig.numberOfPages();
+			for(SoftwareVersion sv : grp) {
+				check(!seen[sv.getOrdinal()], ctx + sv + " in one group only");
+				seen[sv.getOrdinal()] = true;
+				versions++;
+				if(grp.length > 1) {
+					check(Arrays.binarySearch(cands, sv.getOrdinal()) >= 0, ctx + "group " + Arrays.toString(grp) + " of candidates only");
+				}
+			}
+			if(grp.length > 1) {
+				check(grp[grp.length - 1].getOrdinal() - grp[0].getOrdinal() <= maxDist, ctx + "group " + Arrays.toString(grp) + " within maxDist");
+				check(sig.numberOfPages() > 0, ctx + "group " + Arrays.toString(grp) + " has a non-empty signature");
+			}
+		}
+		check(versions == seen.length, ctx + "every version in a group");
+		return sum;
+	}
+
+	/**
+	 * Compares signatures with the expected ones, one after the other (cf.
+	 * {@link #compareSignatures(VersionSignature, VersionSignature, String)}).
+	 *
+	 * @param expected expected signatures
+	 * @param sigs signatures to compare
+	 * @param ctx context for the descriptions of the conditions
+	 */
+	void compareSignatures(VersionSignature[] expected, VersionSignature[] sigs, String ctx) {
+		check(sigs.length == expected.length, ctx + "number of signatures (" + sigs.length + ", expected " + expected.length + ")");
+		for(int s = 0; s < Math.min(sigs.length, expected.length); s++) {
+			compareSignatures(expected[s], sigs[s], ctx + "signature " + s + ": ");
+		}
+	}
+
+	/**
+	 * Compares a signature with the expected one: its versions (by their
+	 * version strings, so that signatures of different copies of a Software
+	 * can be compared), the numbers of pages left out of it and its pages in
+	 * order, by part name, position and contents.
+	 *
+	 * @param expected expected signature
+	 * @param sig signature to compare
+	 * @param ctx context for the descriptions of the conditions
+	 */
+	void compareSignatures(VersionSignature expected, VersionSignature sig, String ctx) {
+		SoftwareVersion[] versions = sig.getSoftwareVersions();
+		String[] vstrings = new String[versions.length];
+		for(int i = 0; i < versions.length; i++) {
+			vstrings[i] = versions[i].toString();
+		}
+		if(compareMetadata(expected, vstrings, sig.getAll01Count(), sig.getIntDupCount(), sig.getOtherVersionDups(),
+				sig.getNotMatchingInGroupCount(), sig.numberOfPages(), ctx)) {
+			for(int i = 0; i < sig.numberOfPages(); i++) {
+				Page p = sig.getPage(i);
+				comparePage(expected.getPage(i), p.getPart().getName(), p.getPos(), p.getBytes(), ctx + "page " + i + ": ");
+			}
+		}
+	}
+
+	/**
+	 * Compares a signature read from a container with the signature written
+	 * to it, in the same way as
+	 * {@link #compareSignatures(VersionSignature, VersionSignature, String)}.
+	 *
+	 * @param expected signature written to the container
+	 * @param sig signature read from the container
+	 * @param ctx context for the descriptions of the conditions
+	 */
+	void compareSignatures(VersionSignature expected, MappedSignature sig, String ctx) {
+		if(compareMetadata(expected, sig.getVersionStrings(), sig.getAll01Count(), sig.getIntDupCount(), sig.getOtherVersionDups(),
+				sig.getNotMatchingInGroupCount(), sig.numberOfPages(), ctx)) {
+			for(int i = 0; i < sig.numberOfPages(); i++) {
+				comparePage(expected.getPage(i), sig.getPagePartName(i), sig.getPage(i).getPos(), sig.getPageBytes(i), ctx + "page " + i + ": ");
+			}
+		}
+	}
+
+	/**
+	 * @return whether the signatures have the same number of pages
+	 */
+	private boolean compareMetadata(VersionSignature expected, String[] versions, int all01Count, int intDupCount, int otherVersionDups,
+			int notMatchingInGroupCount, int numPages, String ctx) {
+		String[] expVersions = new String[expected.getSoftwareVersions().length];
+		for(int i = 0; i < expVersions.length; i++) {
+			expVersions[i] = expected.getSoftwareVersions()[i].toString();
+		}
+		check(Arrays.equals(versions, expVersions), ctx + "versions");
+		check(all01Count == expected.getAll01Count(), ctx + "all-0/all-1 count (" + all01Count + ", expected " + expected.getAll01Count() + ")");
+		check(intDupCount == expected.getIntDupCount(), ctx + "internal duplicate count (" + intDupCount + ", expected " + expected.getIntDupCount() + ")");
+		check(otherVersionDups == expected.getOtherVersionDups(), ctx + "other version duplicates (" + otherVersionDups
+				+ ", expected " + expected.getOtherVersionDups() + ")");
+		check(notMatchingInGroupCount == expected.getNotMatchingInGroupCount(), ctx + "not matching in group count (" + notMatchingInGroupCount
+				+ ", expected " + expected.getNotMatchingInGroupCount() + ")");
+		check(numPages == expected.numberOfPages(), ctx + "number of pages (" + numPages + ", expected " + expected.numberOfPages() + ")");
+		return numPages == expected.numberOfPages();
+	}
+
+	private void comparePage(Page expected, String partName, long pos, byte[] bytes, String ctx) {
+		check(partName.equals(expected.getPart().getName()), ctx + "part name");
+		check(pos == expected.getPos(), ctx + "position");
+		check(Arrays.equals(bytes, expected.getBytes()), ctx + "contents");
+	}
+
+	/**
+	 * Records a condition of the check.
+	 *
+	 * @param ok whether the condition holds
+	 * @param what description of the condition
+	 */
+	void check(boolean ok, String what) {
+		if(!ok) {
+			System.err.println("FAILED: " + getClass().getSimpleName() + ": " + what);
+			_failures++;
+		}
+	}
+
+	/**
+	 * Runs checks one after the other and reports the number of failed
+	 * conditions. Exits with status 1 if any condition failed.
+	 *
+	 * @param checks the checks to run
+	 * @throws IOException if a temporary directory cannot be created or deleted
+	 */
+	static void runChecks(Check... checks) throws IOException {
+		int failures = 0;
+		for(Check c : checks) {
+			c._dir = Files.createTempDirectory("memsig-check").toFile();
+			c._failures = 0;
+			try {
+				c.run();
+			} finally {
+				FileUtils.deleteDirectory(c._dir);
+			}
+			failures += c._failures;
+		}
+
+		if(failures > 0) {
+			System.err.println(failures + " checks failed.");
+			System.exit(1);
+		}
+		System.out.println("All checks passed.");
+	}
+}
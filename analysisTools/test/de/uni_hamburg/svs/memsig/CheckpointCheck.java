@@ -0,0 +1,81 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Checks that {@link IterativeSimilarityGroupFinder} resumed from a
+ * checkpoint finds the same groups as a run that was not interrupted, for a
+ * {@link SyntheticSoftware}. The first run is interrupted by an evaluation
+ * budget. It also checks that a checkpoint written by a different algorithm
+ * or for different parameters is rejected and left unchanged.
+ */
+public class CheckpointCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new CheckpointCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 12, 4, 3);
+		VersionSignature[] idvSigs = sw.generateVersionSignatures(SyntheticSoftware.PAGE_SIZE);
+		for(int maxDist : new int[] { 3, 11 }) {
+			checkResume(sw, idvSigs, maxDist, new File(getDirectory(), "ckpt-" + maxDist + ".txt"));
+		}
+	}
+
+	/**
+	 * Interrupts a run after each number of evaluations up to the number
+	 * needed without interruption and compares the resumed run with the
+	 * uninterrupted one.
+	 */
+	private void checkResume(Software sw, VersionSignature[] idvSigs, int maxDist, File ckpt) throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "maxDist " + maxDist + ": ";
+		IterativeSimilarityGroupFinder full = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist);
+		String expected = groups(full);
+		check(expected.contains("__"), ctx + "groups of several versions");
+
+		for(long budget = 1; budget < full.getEvaluations(); budget++) {
+			String bctx = ctx + "interrupted after " + budget + " evaluations: ";
+			ckpt.delete();
+			IterativeSimilarityGroupFinder first = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist);
+			first.setEvaluationBudget(budget);
+			first.setCheckpointFile(ckpt, 0);
+			first.findSignatureGroups();
+			check(first.isBudgetExhausted(), bctx + "budget exhausted");
+			check(ckpt.exists(), bctx + "checkpoint written");
+			check(!AtomicFile.tempFile(ckpt).exists(), bctx + "no temporary checkpoint left");
+			check(!first.isResumed(), bctx + "first run not resumed");
+
+			IterativeSimilarityGroupFinder resumed = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist);
+			resumed.setCheckpointFile(ckpt, 0);
+			check(groups(resumed).equals(expected), bctx + "resumed groups");
+			check(resumed.isResumed() && (resumed.getResumedCandidates() > 0), bctx + "resumed with candidates remaining");
+		}
+
+		// The checkpoint now holds a finished run; it must not be used by a
+		// different algorithm or with different parameters.
+		byte[] contents = FileUtils.readFileToByteArray(ckpt);
+		GroupFinder[] others = {
+				new BranchAndBoundGroupFinder(sw, ps, idvSigs, 1.0, maxDist),
+				new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist + 1),
+				new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 0.5, maxDist)
+		};
+		for(GroupFinder other : others) {
+			String octx = ctx + other.getClass().getSimpleName() + " with thresh " + other._sigsizeThresh + ", maxDist " + other._maxDist + ": ";
+			other.setCheckpointFile(ckpt, 0);
+			boolean rejected = false;
+			try {
+				other.startSearch();
+			} catch (IllegalStateException e) {
+				rejected = true;
+			}
+			check(rejected, octx + "checkpoint rejected");
+			check(Arrays.equals(FileUtils.readFileToByteArray(ckpt), contents), octx + "checkpoint unchanged");
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Checks that {@link ContiguousGroupFinder} finds the optimal group
+ * configuration by comparing its average signature size with the best one
+ * among all partitions of the candidates into contiguous ranges, which are
+ * enumerated exhaustively for a {@link SyntheticSoftware}. It also checks
+ * that the configuration found satisfies the restrictions of the finder.
+ */
+public class ContiguousGroupFinderCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new ContiguousGroupFinderCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 12, 3, 3);
+		VersionSignature[] idvSigs = sw.generateVersionSignatures(SyntheticSoftware.PAGE_SIZE);
+		for(double thresh : new double[] { 1.0, 0.02 }) {
+			for(int maxDist : new int[] { 1, 3, 11 }) {
+				checkOptimal(sw, idvSigs, thresh, maxDist);
+			}
+		}
+	}
+
+	private void checkOptimal(Software sw, VersionSignature[] idvSigs, double thresh, int maxDist) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "thresh " + thresh + ", maxDist " + maxDist + ": ";
+		ContiguousGroupFinder grpf = new ContiguousGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		int[] cands = grpf.remainingCandidates();
+		int[] nonCands = grpf._nonCands;
+		int n = cands.length;
+		check(n > 1, ctx + "several candidates");
+
+		// signature sizes of all valid ranges, -1 for invalid ones
+		int[][] sizes = new int[n][n];
+		for(int a = 0; a < n; a++) {
+			Arrays.fill(sizes[a], -1);
+			for(int b = a; (b < n) && (cands[b] - cands[a] <= maxDist); b++) {
+				SoftwareVersion[] grp = new SoftwareVersion[b - a + 1];
+				for(int i = a; i <= b; i++) {
+					grp[i - a] = idvSigs[cands[i]].getSoftwareVersions()[0];
+				}
+				int size = sw.generateVersionsSignature(grp, ps).numberOfPages();
+				if((b == a) || (size > 0)) {
+					sizes[a][b] = size;
+				}
+			}
+		}
+
+		long fixedSum = 0;
+		for(int nc : nonCands) {
+			fixedSum += idvSigs[nc].numberOfPages();
+		}
+
+		// Enumerate all partitions: bit i set means that a range ends after candidate i.
+		long bestSum = -1;
+		long bestGroups = 1;
+		for(long splits = 0; splits < (1L << (n - 1)); splits++) {
+			long sum = fixedSum;
+			long groups = nonCands.length;
+			int a = 0;
+			boolean valid = true;
+			for(int b = 0; valid && (b < n); b++) {
+				if((b == n - 1) || ((splits & (1L << b)) != 0)) {
+					valid = sizes[a][b] >= 0;
+					sum += Math.max(0, sizes[a][b]);
+					groups++;
+					a = b + 1;
+				}
+			}
+			if(valid && ((bestSum < 0) || (sum * bestGroups > bestSum * groups))) {
+				bestSum = sum;
+				bestGroups = groups;
+			}
+		}
+
+		VersionSignature[] sigs = grpf.getBestGroupConfigSignatures();
+		long sum = 0;
+		for(VersionSignature sig : sigs) {
+			sum += sig.numberOfPages();
+			checkGroup(sig.getSoftwareVersions(), cands, nonCands, maxDist, ctx);
+		}
+		check(sigs.length == n + nonCands.length - countMerged(sigs), ctx + "every version in exactly one group");
+		check(sum * bestGroups == bestSum * sigs.length, ctx + "average " + sum + "/" + sigs.length
+				+ ", optimum " + bestSum + "/" + bestGroups);
+	}
+
+	/**
+	 * Checks that a group is a single non-candidate or a range of
+	 * consecutive candidates within the maximum distance.
+	 */
+	private void checkGroup(SoftwareVersion[] grp, int[] cands, int[] nonCands, int maxDist, String ctx) {
+		int first = Arrays.binarySearch(cands, grp[0].getOrdinal());
+		if(first < 0) {
+			check((grp.length == 1) && (Arrays.binarySearch(nonCands, grp[0].getOrdinal()) >= 0), ctx + "group " + Arrays.toString(grp) + " of a non-candidate");
+			return;
+		}
+		for(int i = 1; i < grp.length; i++) {
+			check((first + i < cands.length) && (cands[first + i] == grp[i].getOrdinal()), ctx + "group " + Arrays.toString(grp) + " is contiguous");
+		}
+		check(grp[grp.length - 1].getOrdinal() - grp[0].getOrdinal() <= maxDist, ctx + "group " + Arrays.toString(grp) + " within maxDist");
+	}
+
+	/**
+	 * Returns the number of versions saved by merging them into groups.
+	 */
+	private int countMerged(VersionSignature[] sigs) {
+		int merged = 0;
+		for(VersionSignature sig : sigs) {
+			merged += sig.getSoftwareVersions().length - 1;
+		}
+		return merged;
+	}
+}
@@ -0,0 +1,130 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Checks a {@link Corpus} of two {@link SyntheticSoftware}s with the same
+ * seed, which share the pages of their data parts: The number of foreign
+ * contents of each Software must equal the number of its distinct page
+ * contents that occur in the other one, comparing the bytes of all pages,
+ * the signatures of each version must lose exactly their pages with such
+ * contents, and {@link Corpus#findSoftwareContaining(Page)} must return both
+ * Softwares for a shared page.
+ */
+public class CorpusCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new CorpusCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software a = createSoftware("a", 8, 5, 1);
+		Software b = createSoftware("b", 6, 5, 1);
+		HashSet<ByteBuffer> contentsA = contents(a);
+		HashSet<ByteBuffer> contentsB = contents(b);
+		VersionSignature[] sigsA = a.generateVersionSignatures(ps);
+		VersionSignature[] sigsB = b.generateVersionSignatures(ps);
+
+		Corpus corpus = new Corpus(ps);
+		corpus.addSoftware(a);
+		corpus.addSoftware(b);
+		check(corpus.getSoftware().size() == 2, "two software in the corpus");
+		checkForeign(corpus, a, contentsA, contentsB);
+		checkForeign(corpus, b, contentsB, contentsA);
+		check(corpus.numberOfContents() == union(contentsA, contentsB), "number of contents (" + corpus.numberOfContents() + ")");
+
+		int removed = checkSignatures(a, sigsA, a.generateVersionSignatures(ps), contentsB);
+		check(removed > 0, "signatures of a lose shared pages");
+		checkSignatures(b, sigsB, b.generateVersionSignatures(ps), contentsA);
+
+		boolean sharedFound = false;
+		boolean ownFound = false;
+		for(VersionSignature sig : sigsA) {
+			for(Page p : sig.getPages()) {
+				List<Software> found = corpus.findSoftwareContaining(p);
+				String page = sig.getSoftwareVersions()[0] + " " + p.getPart().getName() + " at " + p.getPos();
+				if(contentsB.contains(ByteBuffer.wrap(p.getBytes()))) {
+					check((found.size() == 2) && found.contains(a) && found.contains(b), "a and b contain " + page + " (" + found.size() + " found)");
+					sharedFound = true;
+				} else {
+					check((found.size() == 1) && (found.get(0) == a), "only a contains " + page + " (" + found.size() + " found)");
+					ownFound = true;
+				}
+			}
+		}
+		check(sharedFound && ownFound, "shared and own pages searched");
+
+		byte[] other = new byte[ps];
+		other[17] = 42;
+		check(corpus.findSoftwareContaining(new Page(other, null, 0)).isEmpty(), "no software contains a page of neither");
+	}
+
+	/**
+	 * Checks the number of foreign contents of a Software against the
+	 * contents of the other Software.
+	 */
+	private void checkForeign(Corpus corpus, Software sw, HashSet<ByteBuffer> own, HashSet<ByteBuffer> other) {
+		int shared = 0;
+		for(ByteBuffer c : own) {
+			shared += other.contains(c) ? 1 : 0;
+		}
+		check(shared > 0, sw.getName() + ": shares contents");
+		check(corpus.numberOfForeignContents(sw) == shared, sw.getName() + ": foreign contents (" + corpus.numberOfForeignContents(sw)
+				+ ", expected " + shared + ")");
+		check(sw.getPageIndex(SyntheticSoftware.PAGE_SIZE).numberOfForeignContents() == shared, sw.getName() + ": foreign contents in PageIndex");
+	}
+
+	/**
+	 * Checks that the signatures in the corpus are those without the corpus
+	 * apart from the pages whose contents the other Software contains.
+	 *
+	 * @return number of pages removed
+	 */
+	private int checkSignatures(Software sw, VersionSignature[] before, VersionSignature[] after, HashSet<ByteBuffer> other) {
+		int removed = 0;
+		check(before.length == after.length, sw.getName() + ": number of signatures");
+		for(int s = 0; s < Math.min(before.length, after.length); s++) {
+			ArrayList<Page> expected = new ArrayList<Page>();
+			for(Page p : before[s].getPages()) {
+				if(other.contains(ByteBuffer.wrap(p.getBytes()))) {
+					removed++;
+				} else {
+					expected.add(p);
+				}
+			}
+			Page[] pages = after[s].getPages();
+			String ctx = sw.getName() + ": signature " + s + ": ";
+			check(pages.length == expected.size(), ctx + "number of pages (" + pages.length + ", expected " + expected.size() + ")");
+			for(int i = 0; i < Math.min(pages.length, expected.size()); i++) {
+				check((pages[i].getPart() == expected.get(i).getPart()) && (pages[i].getPos() == expected.get(i).getPos()), ctx + "page " + i);
+			}
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns the distinct contents of all pages of a Software.
+	 */
+	private static HashSet<ByteBuffer> contents(Software sw) {
+		HashSet<ByteBuffer> contents = new HashSet<ByteBuffer>();
+		for(SoftwareVersion sv : sw.getVersions()) {
+			for(CodePart part : sv.getParts()) {
+				for(int i = 0; i < part.numberOfPages(SyntheticSoftware.PAGE_SIZE); i++) {
+					contents.add(ByteBuffer.wrap(part.getPageBytes(i, SyntheticSoftware.PAGE_SIZE)));
+				}
+			}
+		}
+		return contents;
+	}
+
+	private static int union(HashSet<ByteBuffer> a, HashSet<ByteBuffer> b) {
+		HashSet<ByteBuffer> u = new HashSet<ByteBuffer>(a);
+		u.addAll(b);
+		return u.size();
+	}
+}
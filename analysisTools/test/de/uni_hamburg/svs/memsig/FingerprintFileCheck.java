@@ -0,0 +1,160 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Checks the {@link FingerprintFile}s of a {@link SyntheticSoftware}:
+ * Reloading the Software from them does not read any part contents (the
+ * part files are overwritten with other contents of the same size and
+ * modification time before reloading) and yields the same
+ * {@link PageIndex} when fingerprints are trusted. Changing the size or
+ * the modification time of a part file invalidates the fingerprint file
+ * of its version.
+ */
+public class FingerprintFileCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new FingerprintFileCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		checkReload();
+		checkInvalidation();
+	}
+
+	/**
+	 * Checks that a Software is reloaded from its fingerprint files without
+	 * reading any part contents.
+	 */
+	private void checkReload() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software written = load("reload", false);
+		for(SoftwareVersion sv : written.getVersions()) {
+			check(FingerprintFile.getFile(versionDir(sv), ps).exists(), sv + ": fingerprint file written");
+		}
+		PageIndex expected = written.getPageIndex(ps);
+
+		// Overwrite the parts with different contents, keeping their sizes and
+		// modification times. If they were read, the fingerprints would change.
+		for(SoftwareVersion sv : written.getVersions()) {
+			for(CodePart part : sv.getParts()) {
+				File f = part.getFile();
+				long mtime = f.lastModified();
+				byte[] other = new byte[(int)f.length()];
+				Arrays.fill(other, (byte)0x5a);
+				FileUtils.writeByteArrayToFile(f, other);
+				f.setLastModified(mtime);
+			}
+		}
+
+		Software reloaded = load("reload", true);
+		SoftwareVersion[] versions = versions(reloaded);
+		SoftwareVersion[] expVersions = versions(written);
+		check(versions.length == expVersions.length, "number of versions");
+		PageIndex idx = reloaded.getPageIndex(ps);
+		check(idx.numberOfContents() == expected.numberOfContents(), "number of contents (" + idx.numberOfContents() + ", expected " + expected.numberOfContents() + ")");
+		for(int v = 0; v < Math.min(versions.length, expVersions.length); v++) {
+			CodePart[] parts = versions[v].getParts().toArray(new CodePart[0]);
+			CodePart[] expParts = expVersions[v].getParts().toArray(new CodePart[0]);
+			String vctx = versions[v] + ": ";
+			check(parts.length == expParts.length, vctx + "number of parts");
+			for(int p = 0; p < Math.min(parts.length, expParts.length); p++) {
+				String pctx = vctx + parts[p].getName() + ": ";
+				check(parts[p].getFingerprint() == expParts[p].getFingerprint(), pctx + "part fingerprint");
+				check(Arrays.equals(parts[p].getPageFingerprints(ps), expParts[p].getPageFingerprints(ps)), pctx + "page fingerprints");
+				for(int i = 0; i < expParts[p].numberOfPages(ps); i++) {
+					check(idx.getContentId(parts[p], i) == expected.getContentId(expParts[p], i), pctx + "content ID of page " + i);
+					check(parts[p].getPageTable(ps).isAllZeroes(i) == expParts[p].getPageTable(ps).isAllZeroes(i), pctx + "all-0 flag of page " + i);
+					check(parts[p].getPageTable(ps).isAllOnes(i) == expParts[p].getPageTable(ps).isAllOnes(i), pctx + "all-1 flag of page " + i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks that changing the size or the modification time of a part file
+	 * invalidates the fingerprint file of its version, and that the
+	 * fingerprints are then recomputed and the file rewritten.
+	 */
+	private void checkInvalidation() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software written = load("invalidate", false);
+		SoftwareVersion[] versions = versions(written);
+		SoftwareVersion resized = versions[0];
+		SoftwareVersion touched = versions[1];
+		SoftwareVersion unchanged = versions[2];
+
+		// Larger part file with the same modification time
+		File f = code(resized);
+		long mtime = f.lastModified();
+		byte[] bytes = FileUtils.readFileToByteArray(f);
+		FileUtils.writeByteArrayToFile(f, Arrays.copyOf(bytes, bytes.length + 100));
+		f.setLastModified(mtime);
+
+		// Different contents of the same size with a later modification time
+		f = code(touched);
+		mtime = f.lastModified();
+		bytes = FileUtils.readFileToByteArray(f);
+		Arrays.fill(bytes, 0, ps, (byte)0x5a);
+		FileUtils.writeByteArrayToFile(f, bytes);
+		f.setLastModified(mtime + 2000);
+
+		check(readFingerprints(resized) == null, "fingerprint file invalid after size change");
+		check(readFingerprints(touched) == null, "fingerprint file invalid after modification time change");
+		check(readFingerprints(unchanged) != null, "fingerprint file of unchanged version valid");
+
+		Software reloaded = load("invalidate", false);
+		LoadOptions noFp = new LoadOptions();
+		noFp.setUseFingerprintFiles(false);
+		Software fresh = new Software("invalidate", versionsDir("invalidate"), SyntheticSoftware.BINARY, ps, noFp);
+		for(int v = 0; v < 3; v++) {
+			SoftwareVersion sv = versions(reloaded)[v];
+			check(readFingerprints(sv) != null, sv + ": fingerprint file rewritten");
+			CodePart[] parts = sv.getParts().toArray(new CodePart[0]);
+			CodePart[] expParts = versions(fresh)[v].getParts().toArray(new CodePart[0]);
+			for(int p = 0; p < parts.length; p++) {
+				String pctx = sv + ": " + parts[p].getName() + ": ";
+				check(parts[p].getFingerprint() == expParts[p].getFingerprint(), pctx + "part fingerprint");
+				check(Arrays.equals(parts[p].getPageFingerprints(ps), expParts[p].getPageFingerprints(ps)), pctx + "page fingerprints");
+			}
+		}
+	}
+
+	/**
+	 * Loads a SyntheticSoftware with fingerprint files enabled, writing it
+	 * first if it does not exist yet.
+	 */
+	private Software load(String name, boolean trustFingerprints) throws IOException {
+		File versionsDir = versionsDir(name);
+		if(!versionsDir.exists()) {
+			createSoftware(name, 6, 5, 1);
+		}
+		LoadOptions loadOpts = new LoadOptions();
+		loadOpts.setTrustFingerprints(trustFingerprints);
+		return new Software(name, versionsDir, SyntheticSoftware.BINARY, SyntheticSoftware.PAGE_SIZE, loadOpts);
+	}
+
+	private File versionsDir(String name) {
+		return new File(new File(getDirectory(), name), "versions");
+	}
+
+	/**
+	 * Returns the directory of a version, i.e. the parent of its parts directory.
+	 */
+	private static File versionDir(SoftwareVersion sv) {
+		return sv.getParts().first().getFile().getParentFile().getParentFile();
+	}
+
+	private static File code(SoftwareVersion sv) {
+		return new File(new File(versionDir(sv), "parts-" + SyntheticSoftware.PAGE_SIZE), "code");
+	}
+
+	private static Object readFingerprints(SoftwareVersion sv) {
+		File partsDir = new File(versionDir(sv), "parts-" + SyntheticSoftware.PAGE_SIZE);
+		return FingerprintFile.read(FingerprintFile.getFile(versionDir(sv), SyntheticSoftware.PAGE_SIZE), partsDir.listFiles(), SyntheticSoftware.PAGE_SIZE);
+	}
+}
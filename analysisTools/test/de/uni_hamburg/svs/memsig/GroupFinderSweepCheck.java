@@ -0,0 +1,122 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Checks {@link GroupFinderSweep}: the parsing of lists and ranges of
+ * thresholds and maximum distances, including the rejection of descending
+ * ranges and non-positive steps, and that running the combinations in
+ * parallel gives the same results as running them sequentially and as
+ * running each {@link GroupFinder} on its own.
+ */
+public class GroupFinderSweepCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new GroupFinderSweepCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		checkParsing();
+		checkRun("similarity-maxsigsize");
+		checkRun("contiguous-optimal");
+	}
+
+	private void checkParsing() {
+		double[] d = GroupFinderSweep.parseDoubleList("0.1:0.5:0.1");
+		check(Arrays.equals(d, new double[] { 0.1, 0.2, 0.3, 0.4, 0.5 }), "0.1:0.5:0.1 gives 5 values (" + Arrays.toString(d) + ")");
+		d = GroupFinderSweep.parseDoubleList("0.05, 0.2:0.3:0.05,1");
+		check(Arrays.equals(d, new double[] { 0.05, 0.2, 0.25, 0.3, 1.0 }), "list with range of doubles (" + Arrays.toString(d) + ")");
+		d = GroupFinderSweep.parseDoubleList("0.3:0.3:0.1");
+		check(Arrays.equals(d, new double[] { 0.3 }), "range of doubles with a single value (" + Arrays.toString(d) + ")");
+		d = GroupFinderSweep.parseDoubleList("0:1:0.3");
+		check(Arrays.equals(d, new double[] { 0.0, 0.3, 0.6, 0.9 }), "range of doubles not ending at to (" + Arrays.toString(d) + ")");
+
+		int[] i = GroupFinderSweep.parseIntList("1,5:20:5");
+		check(Arrays.equals(i, new int[] { 1, 5, 10, 15, 20 }), "list with range of integers (" + Arrays.toString(i) + ")");
+		i = GroupFinderSweep.parseIntList("0:10:3");
+		check(Arrays.equals(i, new int[] { 0, 3, 6, 9 }), "range of integers not ending at to (" + Arrays.toString(i) + ")");
+		i = GroupFinderSweep.parseIntList("0:2147483647:1000000000");
+		check(Arrays.equals(i, new int[] { 0, 1000000000, 2000000000 }), "range of integers up to Integer.MAX_VALUE (" + Arrays.toString(i) + ")");
+		i = GroupFinderSweep.parseIntList("2147483647:2147483647:1");
+		check(Arrays.equals(i, new int[] { 2147483647 }), "range of integers at Integer.MAX_VALUE (" + Arrays.toString(i) + ")");
+		i = GroupFinderSweep.parseIntList("7");
+		check(Arrays.equals(i, new int[] { 7 }), "single integer (" + Arrays.toString(i) + ")");
+
+		for(String s : new String[] { "0.5:0.1:0.1", "0.1:0.5:0", "0.1:0.5:-0.1", "0.1:0.5", "0.1:0.2:0.1:0.1", "x" }) {
+			check(rejectsDoubles(s), "doubles " + s + " rejected");
+		}
+		for(String s : new String[] { "20:5:5", "5:20:0", "5:20:-5", "5:20", "1.5" }) {
+			check(rejectsInts(s), "integers " + s + " rejected");
+		}
+	}
+
+	private static boolean rejectsDoubles(String s) {
+		try {
+			GroupFinderSweep.parseDoubleList(s);
+			return false;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	private static boolean rejectsInts(String s) {
+		try {
+			GroupFinderSweep.parseIntList(s);
+			return false;
+		} catch (NumberFormatException e) {
+			return true;
+		}
+	}
+
+	/**
+	 * Runs a sweep sequentially and in parallel and compares the results
+	 * (apart from the runtimes) with each other and with runs of the
+	 * individual GroupFinders.
+	 */
+	private void checkRun(String algorithm) throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software sw = createSoftware("sw-" + algorithm, 10, 4, 2);
+		double[] thresholds = GroupFinderSweep.parseDoubleList("0.02,0.1:0.3:0.1");
+		int[] maxDists = GroupFinderSweep.parseIntList("1:9:4");
+
+		GroupFinderSweep sweep = new GroupFinderSweep(sw, ps, algorithm, thresholds, maxDists);
+		sweep.run(1);
+		List<String> seq = results(sweep, algorithm + "-seq.csv");
+		sweep.run(4);
+		List<String> par = results(sweep, algorithm + "-par.csv");
+		check(seq.equals(par), algorithm + ": parallel results equal sequential results");
+		check(seq.size() == thresholds.length * maxDists.length, algorithm + ": one result per combination");
+
+		VersionSignature[] idvSigs = sw.generateVersionSignatures(ps);
+		int c = 0;
+		for(double thresh : thresholds) {
+			for(int maxDist : maxDists) {
+				GroupFinder grpf = algorithm.equals("contiguous-optimal") ? new ContiguousGroupFinder(sw, ps, idvSigs, thresh, maxDist)
+						: new IterativeSimilarityGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+				int numGroups = grpf.findSignatureGroups().length;
+				String expected = thresh + MemSigs.sep + maxDist + MemSigs.sep + grpf.getBestGroupConfigAvgSigsize() + MemSigs.sep + numGroups;
+				check((c < seq.size()) && seq.get(c).equals(expected), algorithm + ": thresh " + thresh + ", maxDist " + maxDist + ": result equals single run");
+				c++;
+			}
+		}
+	}
+
+	/**
+	 * Writes the results of a sweep and returns their lines without the
+	 * header and the runtimes.
+	 */
+	private List<String> results(GroupFinderSweep sweep, String name) throws IOException {
+		File f = new File(getDirectory(), name);
+		sweep.writeResults(f);
+		List<String> lines = FileUtils.readLines(f, StandardCharsets.UTF_8);
+		lines.remove(0);
+		lines.replaceAll(l -> l.substring(0, l.lastIndexOf(MemSigs.sep)));
+		return lines;
+	}
+}
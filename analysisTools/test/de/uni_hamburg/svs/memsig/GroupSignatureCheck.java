@@ -0,0 +1,157 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * Checks the signatures of {@link GroupSignatureState}, which
+ * {@link Software#generateVersionsSignature(SoftwareVersion[], int)} is
+ * based on, against signatures computed page by page as before the state
+ * was introduced: all-0/all-1 pages and internal duplicates of the first
+ * version are left out, then the pages not contained in every version of the
+ * group and the pages contained in any other version, comparing contents
+ * with {@link Page#contentsEqualTo(Page)}. The pages, their order and the
+ * numbers of pages left out must match for single versions and random groups
+ * of a {@link SyntheticSoftware}.
+ */
+public class GroupSignatureCheck extends Check {
+	private HashMap<SoftwareVersion, ArrayList<Page>> _pages = new HashMap<SoftwareVersion, ArrayList<Page>>();
+
+	public static void main(String[] args) throws IOException {
+		runChecks(new GroupSignatureCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 10, 11, 2);
+		SoftwareVersion[] versions = versions(sw);
+		for(SoftwareVersion sv : versions) {
+			checkGroup(sw, new SoftwareVersion[] { sv });
+		}
+
+		Random rnd = new Random(3);
+		int nonEmpty = 0;
+		for(int g = 0; g < 30; g++) {
+			// a random set of 2 to 4 versions, not necessarily neighbours
+			int[] ordinals = rnd.ints(0, versions.length).distinct().limit(2 + rnd.nextInt(3)).sorted().toArray();
+			SoftwareVersion[] grp = new SoftwareVersion[ordinals.length];
+			for(int i = 0; i < grp.length; i++) {
+				grp[i] = versions[ordinals[i]];
+			}
+			nonEmpty += (checkGroup(sw, grp) > 0) ? 1 : 0;
+		}
+		check(nonEmpty > 0, "groups with non-empty signatures");
+	}
+
+	/**
+	 * Compares the signature of a group with the reference signature.
+	 *
+	 * @return size of the signature
+	 */
+	private int checkGroup(Software sw, SoftwareVersion[] grp) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = Arrays.toString(grp) + ": ";
+		VersionSignature expected = reference(sw, grp);
+		compareSignatures(expected, sw.generateVersionsSignature(grp, ps), ctx);
+
+		GroupSignatureState state = new GroupSignatureState(sw, grp[0], ps);
+		for(int i = 1; i < grp.length; i++) {
+			state.addVersion(grp[i]);
+		}
+		check(state.getSignatureSize() == expected.numberOfPages(), ctx + "size of the state (" + state.getSignatureSize() + ")");
+		if(grp.length == 1) {
+			check((expected.getAll01Count() > 0) && (expected.getIntDupCount() > 0) && (expected.getOtherVersionDups() > 0),
+					ctx + "pages left out for each reason");
+		}
+		return expected.numberOfPages();
+	}
+
+	/**
+	 * Computes the signature of a group page by page.
+	 */
+	private VersionSignature reference(Software sw, SoftwareVersion[] grp) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		ArrayList<Page> pages = new ArrayList<Page>();
+		int all01Count = 0;
+		int intDupCount = 0;
+		for(Page p : pages(grp[0])) {
+			if(allBytesEqual(p.getBytes(), (byte)0) || allBytesEqual(p.getBytes(), (byte)1)) {
+				all01Count++;
+			} else if(contains(pages, p)) {
+				// keep the first copy of internal duplicates only
+				intDupCount++;
+			} else {
+				pages.add(p);
+			}
+		}
+
+		int notMatchingInGroupCount = 0;
+		ArrayList<Page> inGroup = new ArrayList<Page>();
+		for(Page p : pages) {
+			boolean inAll = true;
+			for(int i = 1; (i < grp.length) && inAll; i++) {
+				inAll = contains(pages(grp[i]), p);
+			}
+			if(inAll) {
+				inGroup.add(p);
+			} else {
+				notMatchingInGroupCount++;
+			}
+		}
+
+		VersionSignature sig = new VersionSignature(grp, ps, all01Count, intDupCount, notMatchingInGroupCount);
+		int otherVersionDups = 0;
+		for(Page p : inGroup) {
+			boolean inOther = false;
+			for(SoftwareVersion sv : sw.getVersions()) {
+				if(!Arrays.asList(grp).contains(sv) && contains(pages(sv), p)) {
+					inOther = true;
+					break;
+				}
+			}
+			if(inOther) {
+				otherVersionDups++;
+			} else {
+				sig.addPage(p);
+			}
+		}
+		sig.setOtherVersionDups(otherVersionDups);
+		return sig;
+	}
+
+	/**
+	 * Returns the pages of all parts of a version in order.
+	 */
+	private ArrayList<Page> pages(SoftwareVersion sv) {
+		ArrayList<Page> pages = _pages.get(sv);
+		if(pages == null) {
+			pages = new ArrayList<Page>();
+			for(CodePart part : sv.getParts()) {
+				pages.addAll(Arrays.asList(part.getPages(SyntheticSoftware.PAGE_SIZE)));
+			}
+			_pages.put(sv, pages);
+		}
+		return pages;
+	}
+
+	private static boolean contains(Iterable<Page> pages, Page p) {
+		for(Page q : pages) {
+			if(q.contentsEqualTo(p)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean allBytesEqual(byte[] bytes, byte b) {
+		for(byte x : bytes) {
+			if(x != b) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
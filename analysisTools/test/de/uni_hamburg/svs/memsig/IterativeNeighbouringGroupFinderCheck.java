@@ -0,0 +1,91 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Checks that {@link IterativeNeighbouringGroupFinder} forms the same groups
+ * as extending each group by the following candidate while
+ * {@link Software#generateVersionsSignature(SoftwareVersion[], int)} returns
+ * a non-empty signature for the extended group, and that the signatures and
+ * their average size match, for a {@link SyntheticSoftware} and maximum
+ * distances of 0, 3 and at least the number of versions.
+ */
+public class IterativeNeighbouringGroupFinderCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new IterativeNeighbouringGroupFinderCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 12, 8, 2);
+		VersionSignature[] idvSigs = sw.generateVersionSignatures(SyntheticSoftware.PAGE_SIZE);
+		for(double thresh : new double[] { 1.0, 0.02 }) {
+			for(int maxDist : new int[] { 0, 3, 12, 20 }) {
+				checkGroups(sw, idvSigs, thresh, maxDist);
+			}
+		}
+	}
+
+	private void checkGroups(Software sw, VersionSignature[] idvSigs, double thresh, int maxDist) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "thresh " + thresh + ", maxDist " + maxDist + ": ";
+		IterativeNeighbouringGroupFinder grpf = new IterativeNeighbouringGroupFinder(sw, ps, idvSigs, thresh, maxDist);
+		int[] cands = grpf.remainingCandidates();
+		boolean[] isCand = new boolean[idvSigs.length];
+		for(int c : cands) {
+			isCand[c] = true;
+		}
+
+		// expected groups in the order of their first versions
+		ArrayList<SoftwareVersion[]> expected = new ArrayList<SoftwareVersion[]>();
+		int next = 0; // position of the next candidate not in a group yet
+		for(int v = 0; v < idvSigs.length; v++) {
+			if(!isCand[v]) {
+				expected.add(idvSigs[v].getSoftwareVersions());
+				continue;
+			}
+			if((next >= cands.length) || (cands[next] != v)) {
+				continue; // in the group of an earlier candidate
+			}
+
+			int end = next;
+			while((end + 1 < cands.length) && (cands[end + 1] - cands[next] <= maxDist)
+					&& (sw.generateVersionsSignature(versions(idvSigs, cands, next, end + 1), ps).numberOfPages() > 0)) {
+				end++;
+			}
+			expected.add(versions(idvSigs, cands, next, end));
+			next = end + 1;
+		}
+
+		SoftwareVersionGroup[] groups = grpf.findSignatureGroups();
+		VersionSignature[] sigs = grpf.getBestGroupConfigSignatures();
+		check(groups.length == expected.size(), ctx + "number of groups (" + groups.length + ", expected " + expected.size() + ")");
+		if(maxDist == 0) {
+			check(groups.length == idvSigs.length, ctx + "one group per version");
+		} else if(thresh == 1.0) {
+			check(expected.size() < idvSigs.length, ctx + "groups of several versions");
+		}
+		long sum = 0;
+		for(int g = 0; g < Math.min(groups.length, expected.size()); g++) {
+			SoftwareVersion[] exp = expected.get(g);
+			check(Arrays.equals(groups[g].toArray(), exp), ctx + "group " + g);
+			int size = sw.generateVersionsSignature(exp, ps).numberOfPages();
+			check(sigs[g].numberOfPages() == size, ctx + "signature size of group " + g + " (" + sigs[g].numberOfPages() + ", expected " + size + ")");
+			sum += size;
+		}
+		check(Math.abs(grpf.getBestGroupConfigAvgSigsize() - (double)sum / expected.size()) < 1e-9, ctx + "average signature size");
+	}
+
+	/**
+	 * Returns the versions of the candidates from position a to b.
+	 */
+	private static SoftwareVersion[] versions(VersionSignature[] idvSigs, int[] cands, int a, int b) {
+		SoftwareVersion[] grp = new SoftwareVersion[b - a + 1];
+		for(int i = a; i <= b; i++) {
+			grp[i - a] = idvSigs[cands[i]].getSoftwareVersions()[0];
+		}
+		return grp;
+	}
+}
@@ -0,0 +1,72 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Checks that memory-mapped {@link CodePart}s (cf.
+ * {@link LoadOptions#setMapParts(boolean)}) give the same pages and
+ * signatures as parts read into the heap, both when the parts are mapped
+ * while they are read and when their metadata is taken from
+ * {@link FingerprintFile}s and they are only mapped when their contents are
+ * needed.
+ */
+public class MappedPartsCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new MappedPartsCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software heap = createSoftware("sw", 8, 13, 1);
+		File versionsDir = new File(new File(getDirectory(), "sw"), "versions");
+
+		LoadOptions eager = new LoadOptions();
+		eager.setMapParts(true);
+		eager.setUseFingerprintFiles(false);
+		compare(heap, new Software("sw", versionsDir, SyntheticSoftware.BINARY, ps, eager), "mapped: ");
+
+		LoadOptions lazy = new LoadOptions();
+		lazy.setMapParts(true);
+		new Software("sw", versionsDir, SyntheticSoftware.BINARY, ps, lazy); // writes the fingerprint files
+		Software fromFpFiles = new Software("sw", versionsDir, SyntheticSoftware.BINARY, ps, lazy);
+		for(SoftwareVersion sv : fromFpFiles.getVersions()) {
+			File versionDir = sv.getParts().first().getFile().getParentFile().getParentFile();
+			File partsDir = new File(versionDir, "parts-" + ps);
+			check(FingerprintFile.read(FingerprintFile.getFile(versionDir, ps), partsDir.listFiles(), ps) != null, sv + ": valid fingerprint file");
+		}
+		compare(heap, fromFpFiles, "mapped from fingerprint files: ");
+	}
+
+	/**
+	 * Compares the parts and signatures of a Software with mapped parts with
+	 * those of the same Software read into the heap.
+	 */
+	private void compare(Software heap, Software mapped, String ctx) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		SoftwareVersion[] versions = versions(heap);
+		SoftwareVersion[] mversions = versions(mapped);
+		check(mversions.length == versions.length, ctx + "number of versions");
+		for(int v = 0; v < Math.min(versions.length, mversions.length); v++) {
+			CodePart[] parts = mversions[v].getParts().toArray(new CodePart[0]);
+			CodePart[] expParts = versions[v].getParts().toArray(new CodePart[0]);
+			String vctx = ctx + versions[v] + ": ";
+			check(parts.length == expParts.length, vctx + "number of parts");
+			for(int p = 0; p < Math.min(parts.length, expParts.length); p++) {
+				String pctx = vctx + parts[p].getName() + ": ";
+				check(parts[p].isMapped() && !expParts[p].isMapped(), pctx + "mapped");
+				check(parts[p].getLength() == expParts[p].getLength(), pctx + "length");
+				check(Arrays.deepEquals(parts[p].getPagesBytes(ps), expParts[p].getPagesBytes(ps)), pctx + "pages");
+			}
+		}
+
+		compareSignatures(heap.generateVersionSignatures(ps), mapped.generateVersionSignatures(ps), ctx);
+		for(int v = 0; v + 1 < Math.min(versions.length, mversions.length); v += 3) {
+			SoftwareVersion[] grp = { versions[v], versions[v + 1] };
+			SoftwareVersion[] mgrp = { mversions[v], mversions[v + 1] };
+			compareSignatures(heap.generateVersionsSignature(grp, ps), mapped.generateVersionsSignature(mgrp, ps), ctx + "group " + v + ": ");
+		}
+	}
+}
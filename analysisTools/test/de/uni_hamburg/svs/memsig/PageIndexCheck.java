@@ -0,0 +1,53 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Checks that a {@link PageIndex} trusting fingerprints assigns the same
+ * contents to all pages of a {@link SyntheticSoftware} as an index comparing
+ * page contents, i.e. that trusting fingerprints only skips the comparison.
+ */
+public class PageIndexCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new PageIndexCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software sw = createSoftware("sw", 12, 5, 1);
+		ArrayList<SoftwareVersion> versions = new ArrayList<SoftwareVersion>();
+		for(int v = 0; v < sw.numberOfVersions(); v++) {
+			versions.add(sw.getVersion(v));
+		}
+
+		PageIndex exact = new PageIndex(versions, ps);
+		PageIndex trusted = new PageIndex(versions, ps, true);
+		check(exact.numberOfContents() == trusted.numberOfContents(), "number of contents (" + exact.numberOfContents()
+				+ ", trusted: " + trusted.numberOfContents() + ")");
+
+		int pages = 0;
+		int all0 = 0;
+		int all1 = 0;
+		for(SoftwareVersion sv : versions) {
+			for(CodePart part : sv.getParts()) {
+				for(int i = 0; i < part.numberOfPages(ps); i++) {
+					int cid = exact.getContentId(part, i);
+					int tcid = trusted.getContentId(part, i);
+					String ctx = sv + " " + part.getName() + " page " + i + ": ";
+					check(cid == tcid, ctx + "content ID");
+					check(exact.getMembership(cid).equals(trusted.getMembership(tcid)), ctx + "membership");
+					check(exact.getLocations(cid).size() == trusted.getLocations(tcid).size(), ctx + "number of locations");
+					pages++;
+					all0 += part.getPageTable(ps).isAllZeroes(i) ? 1 : 0;
+					all1 += part.getPageTable(ps).isAllOnes(i) ? 1 : 0;
+				}
+			}
+		}
+		check(exact.numberOfContents() < pages, "contents shared between pages");
+		check((all0 > 0) && (all1 > 0), "all-0 and all-1 pages (" + all0 + ", " + all1 + ")");
+		check(Arrays.equals(exact.getVersions(), trusted.getVersions()), "versions");
+	}
+}
@@ -0,0 +1,31 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Checks that {@link Software#generateVersionSignatures(int, int)} returns
+ * the same signatures, in the same order, as generating them sequentially
+ * with {@link Software#generateVersionSignatures(int)}, for a
+ * {@link SyntheticSoftware} and several numbers of threads.
+ */
+public class ParallelSignatureCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new ParallelSignatureCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software sw = createSoftware("sw", 12, 7, 1);
+		VersionSignature[] expected = sw.generateVersionSignatures(ps);
+
+		for(int threads : new int[] { 1, 2, 5, 16 }) {
+			// A fresh copy of the Software (the name determines the contents),
+			// so that the workers also build the shared index.
+			Software fresh = SyntheticSoftware.create(new File(getDirectory(), "fresh-" + threads), "sw", 12, 7, 1);
+			compareSignatures(expected, fresh.generateVersionSignatures(ps, threads), threads + " threads, fresh Software: ");
+			compareSignatures(expected, sw.generateVersionSignatures(ps, threads), threads + " threads: ");
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks that the signature sizes and pages of all ranges looked up in a
+ * {@link RangeSignatureIndex} are identical to those of the signatures
+ * generated by {@link Software#generateVersionsSignature(SoftwareVersion[], int)}.
+ * Ranges are checked over all versions of a {@link SyntheticSoftware} (using
+ * the index cached by {@link Software#getRangeSignatureIndex(int)}), over a
+ * subset of its versions, and after adding it to a {@link Corpus} with
+ * another Software sharing some of its pages.
+ */
+public class RangeSignatureIndexCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new RangeSignatureIndexCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 12, 2, 1);
+
+		SoftwareVersion[] all = new SoftwareVersion[sw.numberOfVersions()];
+		ArrayList<SoftwareVersion> subset = new ArrayList<SoftwareVersion>();
+		for(int v = 0; v < all.length; v++) {
+			all[v] = sw.getVersion(v);
+			if((v % 4) != 3) {
+				subset.add(all[v]);
+			}
+		}
+
+		RangeSignatureIndex cached = sw.getRangeSignatureIndex(SyntheticSoftware.PAGE_SIZE);
+		check(sw.getRangeSignatureIndex(SyntheticSoftware.PAGE_SIZE) == cached, "index is cached");
+		checkRanges(sw, cached, all, "all versions");
+		SoftwareVersion[] sub = subset.toArray(new SoftwareVersion[0]);
+		checkRanges(sw, new RangeSignatureIndex(sw.getPageIndex(SyntheticSoftware.PAGE_SIZE), sub), sub, "subset of versions");
+
+		Software other = createSoftware("other", 6, 2, 1);
+		Corpus corpus = new Corpus(SyntheticSoftware.PAGE_SIZE);
+		corpus.addSoftware(sw);
+		corpus.addSoftware(other);
+
+		PageIndex idx = sw.getPageIndex(SyntheticSoftware.PAGE_SIZE);
+		int foreign = 0;
+		for(int cid = 0; cid < idx.numberOfContents(); cid++) {
+			if(idx.isForeign(cid)) {
+				foreign++;
+			}
+		}
+		check(foreign > 0, "corpus: foreign contents");
+		check(sw.getRangeSignatureIndex(SyntheticSoftware.PAGE_SIZE) != cached, "corpus: index is rebuilt");
+		checkRanges(sw, sw.getRangeSignatureIndex(SyntheticSoftware.PAGE_SIZE), all, "all versions in corpus");
+	}
+
+	/**
+	 * Compares the sizes and pages of all ranges of a version order with
+	 * those of the generated signatures.
+	 */
+	private void checkRanges(Software sw, RangeSignatureIndex rsi, SoftwareVersion[] order, String ctx) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		int nonEmpty = 0;
+		for(int a = 0; a < order.length; a++) {
+			for(int b = a; b < order.length; b++) {
+				VersionSignature sig = sw.generateVersionsSignature(Arrays.copyOfRange(order, a, b + 1), ps);
+				int expected = sig.numberOfPages();
+				String rctx = ctx + ": range " + a + "-" + b;
+				check(rsi.signatureSize(a, b) == expected, rctx + " (index: " + rsi.signatureSize(a, b) + ", signature: " + expected + ")");
+				if((b > a) && (expected > 0)) {
+					nonEmpty++;
+				}
+
+				List<PageLocation> pages = rsi.getPages(a, b);
+				check(pages.size() == expected, rctx + ": number of pages");
+				for(int i = 0; (i < pages.size()) && (i < expected); i++) {
+					PageLocation loc = pages.get(i);
+					Page p = sig.getPage(i);
+					check((loc.getVersion() == order[a]) && (loc.getPart() == p.getPart()) && (loc.getPageNumber() == p.getPageNumber()),
+							rctx + ": page " + i);
+				}
+			}
+		}
+		check(nonEmpty > 0, ctx + ": ranges of several versions with non-empty signatures");
+	}
+}
@@ -0,0 +1,95 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that the reverse index of a {@link SignatureCatalog} that is
+ * updated container by container gives the same answers as an index built
+ * from scratch and as the index read back from its file, for the signatures
+ * of {@link SyntheticSoftware}s. Containers are added out of name order and
+ * one is replaced, so that signatures are renumbered. It also checks that an
+ * index file referring to page contents outside their container is not used.
+ */
+public class SignatureCatalogCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new SignatureCatalogCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software sw1 = createSoftware("sw1", 8, 5, 2);
+		Software sw2 = createSoftware("sw2", 6, 6, 1);
+		VersionSignature[] pairs = new VersionSignature[sw1.numberOfVersions() / 2];
+		for(int p = 0; p < pairs.length; p++) {
+			pairs[p] = sw1.generateVersionsSignature(new SoftwareVersion[] { sw1.getVersion(2 * p), sw1.getVersion(2 * p + 1) }, ps);
+		}
+
+		File dir = new File(getDirectory(), "catalog");
+		String expected;
+		try(SignatureCatalog catalog = new SignatureCatalog(dir)) {
+			catalog.addSignatures("c", sw2.generateVersionSignatures(ps), false);
+			catalog.addSignatures("b", sw1.generateVersionSignatures(ps), true);
+			catalog.addSignatures("a", pairs, false);
+			catalog.addSignatures("c", sw1.generateVersionSignatures(ps), false);
+			check(catalog.numberOfContainers() == 3, "number of containers");
+			check(catalog.numberOfSignatures() == 2 * sw1.numberOfVersions() + pairs.length, "number of signatures");
+			expected = describe(catalog);
+			check(!catalog.findOverlaps().isEmpty(), "overlapping signatures");
+		}
+
+		try(SignatureCatalog catalog = new SignatureCatalog(dir)) {
+			check(describe(catalog).equals(expected), "index read from its file");
+		}
+
+		File idx = new File(dir, "catalog.idx");
+		idx.delete();
+		try(SignatureCatalog catalog = new SignatureCatalog(dir)) {
+			check(describe(catalog).equals(expected), "index built from scratch");
+		}
+
+		// The contents of the last entry are the last int of the index file.
+		try(RandomAccessFile raf = new RandomAccessFile(idx, "rw")) {
+			raf.seek(raf.length() - 4);
+			raf.writeInt(Integer.MAX_VALUE);
+		}
+		try(SignatureCatalog catalog = new SignatureCatalog(dir)) {
+			check(describe(catalog).equals(expected), "index with invalid contents rebuilt");
+		}
+	}
+
+	/**
+	 * Describes the answers of a catalog: the signatures containing each
+	 * page of its signatures, the overlaps of each signature and all pairs
+	 * of overlapping signatures.
+	 */
+	private static String describe(SignatureCatalog catalog) {
+		List<MappedSignature> sigs = catalog.getSignatures();
+		StringBuilder sb = new StringBuilder();
+		for(MappedSignature sig : sigs) {
+			sb.append(name(sigs, sig)).append(":\n");
+			for(int i = 0; i < sig.numberOfPages(); i++) {
+				sb.append("  page ").append(i).append(':');
+				for(MappedSignature other : catalog.findSignaturesContaining(sig.getPage(i))) {
+					sb.append(' ').append(name(sigs, other));
+				}
+				sb.append('\n');
+			}
+			for(Map.Entry<MappedSignature, Integer> e : catalog.findOverlappingSignatures(sig).entrySet()) {
+				sb.append("  overlaps ").append(name(sigs, e.getKey())).append(": ").append(e.getValue()).append('\n');
+			}
+		}
+		for(SignatureCatalog.Overlap o : catalog.findOverlaps()) {
+			sb.append(name(sigs, o.getFirst())).append(" / ").append(name(sigs, o.getSecond())).append(": ").append(o.getPages()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static String name(List<MappedSignature> sigs, MappedSignature sig) {
+		return sigs.indexOf(sig) + "-" + sig;
+	}
+}
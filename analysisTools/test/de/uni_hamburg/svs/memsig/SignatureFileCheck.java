@@ -0,0 +1,130 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Checks that signatures written to a container by {@link SignatureFile}
+ * are read back unchanged by {@link MappedSignatureFile}, with and without
+ * compression. The signatures of a {@link SyntheticSoftware} are chosen so
+ * that the compressed container contains both compressed blocks and blocks
+ * stored uncompressed, and that the last block is not full.
+ */
+public class SignatureFileCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new SignatureFileCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		Software sw = createSoftware("sw", 12, 1, 1);
+		int ps = SyntheticSoftware.PAGE_SIZE;
+
+		// individual signatures and signatures of pairs of versions
+		ArrayList<VersionSignature> sigs = new ArrayList<VersionSignature>(Arrays.asList(sw.generateVersionSignatures(ps)));
+		for(int v = 0; v + 1 < sw.numberOfVersions(); v += 2) {
+			sigs.add(sw.generateVersionsSignature(new SoftwareVersion[] { sw.getVersion(v), sw.getVersion(v + 1) }, ps));
+		}
+		VersionSignature[] sigArr = sigs.toArray(new VersionSignature[0]);
+
+		for(boolean compress : new boolean[] { false, true }) {
+			File f = new File(getDirectory(), "sw-" + compress + ".msig");
+			SignatureFile.write(f, sigArr, compress);
+			MappedSignatureFile container = new MappedSignatureFile(f);
+			try {
+				compare(sigArr, container, compress);
+				checkBlocks(f, container, compress);
+			} finally {
+				container.close();
+			}
+		}
+	}
+
+	/**
+	 * Compares the signatures read from a container with those written to it.
+	 */
+	private void compare(VersionSignature[] sigs, MappedSignatureFile container, boolean compress) {
+		String ctx = compress ? "compressed: " : "uncompressed: ";
+		check(container.isCompressed() == compress, ctx + "compression flag");
+		check(container.getPageSize() == sigs[0].getPageSize(), ctx + "page size");
+		check(container.getSoftwareName().equals(sigs[0].getSoftwareVersions()[0].getSoftware().getName()), ctx + "software name");
+		check(container.numberOfSignatures() == sigs.length, ctx + "number of signatures");
+		if(container.numberOfSignatures() != sigs.length) {
+			return;
+		}
+
+		for(int s = 0; s < sigs.length; s++) {
+			VersionSignature sig = sigs[s];
+			MappedSignature msig = container.getSignature(s);
+			String sctx = ctx + "signature " + s + ": ";
+			compareSignatures(sig, msig, sctx);
+			if(msig.numberOfPages() != sig.numberOfPages()) {
+				continue;
+			}
+
+			// the other ways of reading the pages
+			for(int i = 0; i < sig.numberOfPages(); i++) {
+				Page p = sig.getPage(i);
+				String pctx = sctx + "page " + i + ": ";
+				check(msig.getPageFingerprint(i) == p.getFingerprint(), pctx + "fingerprint");
+				check(Arrays.equals(msig.getPage(i).getBytes(), p.getBytes()), pctx + "contents of the Page");
+
+				ByteBuffer buf = msig.getPageBuffer(i);
+				byte[] bufBytes = new byte[buf.remaining()];
+				buf.get(bufBytes);
+				check(Arrays.equals(bufBytes, p.getBytes()), pctx + "contents of the buffer");
+			}
+		}
+	}
+
+	/**
+	 * Checks that the container covers a short final block and, if it is
+	 * compressed, both compressed and uncompressed blocks. The block table
+	 * is read directly from the file, as the reader does not expose it.
+	 */
+	private void checkBlocks(File f, MappedSignatureFile container, boolean compress) throws IOException {
+		String ctx = compress ? "compressed: " : "uncompressed: ";
+		int numContents = container.numberOfContents();
+		int ps = container.getPageSize();
+		int numBlocks = (numContents + SignatureFile.PAGES_PER_BLOCK - 1) / SignatureFile.PAGES_PER_BLOCK;
+		check(numBlocks > 1, ctx + "more than one block");
+		check((numContents % SignatureFile.PAGES_PER_BLOCK) != 0, ctx + "short final block");
+
+		try(FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer trailer = ByteBuffer.allocate(SignatureFile.TRAILER_SIZE);
+			ch.read(trailer, ch.size() - SignatureFile.TRAILER_SIZE);
+			trailer.flip();
+			long tableOffset = trailer.getLong();
+
+			ByteBuffer table = ByteBuffer.allocate(numBlocks * SignatureFile.BLOCK_ENTRY_SIZE);
+			ch.read(table, tableOffset);
+			table.flip();
+
+			int stored = 0;
+			int compressed = 0;
+			for(int b = 0; b < numBlocks; b++) {
+				table.getLong();
+				int len = table.getInt();
+				int raw = Math.min(SignatureFile.PAGES_PER_BLOCK, numContents - b * SignatureFile.PAGES_PER_BLOCK) * ps;
+				if(len == raw) {
+					stored++;
+				} else {
+					check(len < raw, ctx + "block " + b + " larger than its contents");
+					compressed++;
+				}
+			}
+
+			if(compress) {
+				check(compressed > 0, ctx + "compressed block");
+				check(stored > 0, ctx + "block stored uncompressed");
+			} else {
+				check(compressed == 0, ctx + "all blocks stored uncompressed");
+			}
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Checks that evaluating candidates speculatively gives the same results as
+ * adding them one by one, for a {@link SyntheticSoftware}:
+ * {@link GroupSignatureState#evaluateVersions(SoftwareVersion[], ForkJoinPool)}
+ * (sequentially and on a pool) and
+ * {@link GroupSignatureState#commitVersions(int)} must yield the signature
+ * sizes of {@link GroupSignatureState#addVersion(SoftwareVersion)} and of the
+ * generated signatures, and {@link IterativeSimilarityGroupFinder} must find
+ * the same groups with and without speculative evaluation, also when an
+ * evaluation budget ends the search.
+ */
+public class SpeculativeEvaluationCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new SpeculativeEvaluationCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			Software sw = createSoftware("sw", 12, 4, 3);
+			for(int f = 0; f < sw.numberOfVersions() - 1; f += 3) {
+				checkState(sw, f, pool);
+			}
+
+			VersionSignature[] idvSigs = sw.generateVersionSignatures(SyntheticSoftware.PAGE_SIZE);
+			for(int maxDist : new int[] { 3, 11 }) {
+				checkGroups(sw, idvSigs, maxDist, pool);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Compares speculative and sequential signature sizes for groups
+	 * starting with the specified version. The other versions are added
+	 * alternately from the end and the start of the remaining versions, so
+	 * that the order differs from the canonical one.
+	 */
+	private void checkState(Software sw, int f, ForkJoinPool pool) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "first version " + f + ": ";
+		SoftwareVersion first = sw.getVersion(f);
+		int n = sw.numberOfVersions() - f - 1;
+		SoftwareVersion[] next = new SoftwareVersion[n];
+		for(int j = 0, lo = f + 1, hi = sw.numberOfVersions() - 1; j < n; j++) {
+			next[j] = sw.getVersion(((j % 2) == 0) ? hi-- : lo++);
+		}
+
+		GroupSignatureState seq = new GroupSignatureState(sw, first, ps);
+		int[] expected = new int[n];
+		SoftwareVersion[] grp = new SoftwareVersion[n + 1];
+		grp[0] = first;
+		for(int j = 0; j < n; j++) {
+			seq.addVersion(next[j]);
+			expected[j] = seq.getSignatureSize();
+			grp[j + 1] = next[j];
+			int generated = sw.generateVersionsSignature(Arrays.copyOf(grp, j + 2), ps).numberOfPages();
+			check(expected[j] == generated, ctx + "addVersion after " + (j + 1) + " versions (" + expected[j] + ", generated: " + generated + ")");
+		}
+
+		for(ForkJoinPool p : new ForkJoinPool[] { null, pool }) {
+			String pctx = ctx + ((p == null) ? "sequential: " : "pool: ");
+			GroupSignatureState spec = new GroupSignatureState(sw, first, ps);
+			check(Arrays.equals(spec.evaluateVersions(next, p), expected), pctx + "evaluateVersions");
+
+			// Commit part of the versions and evaluate the rest.
+			int k = n / 2;
+			spec.commitVersions(k);
+			check(spec.getSignatureSize() == ((k > 0) ? expected[k - 1] : new GroupSignatureState(sw, first, ps).getSignatureSize()),
+					pctx + "commitVersions(" + k + ")");
+			int[] rest = spec.evaluateVersions(Arrays.copyOfRange(next, k, n), p);
+			check(Arrays.equals(rest, Arrays.copyOfRange(expected, k, n)), pctx + "evaluateVersions after commit");
+		}
+	}
+
+	/**
+	 * Compares the groups found with and without speculative evaluation.
+	 */
+	private void checkGroups(Software sw, VersionSignature[] idvSigs, int maxDist, ForkJoinPool pool) {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		String ctx = "maxDist " + maxDist + ": ";
+		String expected = groups(new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist));
+		check(expected.contains("__"), ctx + "groups of several versions");
+
+		int[] specCands = { 1, 3, 4 };
+		ForkJoinPool[] pools = { pool, null, pool };
+		for(int i = 0; i < specCands.length; i++) {
+			IterativeSimilarityGroupFinder grpf = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist);
+			grpf.setSpeculativeEvaluation(specCands[i], pools[i]);
+			check(groups(grpf).equals(expected), ctx + specCands[i] + " candidates at once" + ((pools[i] == null) ? "" : " on a pool"));
+		}
+
+		// The budget has to cut the search at the same candidate, also within a block.
+		for(long budget : new long[] { 5, 6 }) {
+			String bctx = ctx + "evaluation budget " + budget + ": ";
+			IterativeSimilarityGroupFinder seq = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist);
+			seq.setEvaluationBudget(budget);
+			String expBudget = groups(seq);
+			check(seq.isBudgetExhausted(), bctx + "budget exhausted");
+			check(seq.getEvaluations() == budget, bctx + "evaluations (" + seq.getEvaluations() + ")");
+
+			for(int i = 0; i < specCands.length; i++) {
+				String sctx = bctx + specCands[i] + " candidates at once" + ((pools[i] == null) ? "" : " on a pool") + ": ";
+				IterativeSimilarityGroupFinder grpf = new IterativeSimilarityGroupFinder(sw, ps, idvSigs, 1.0, maxDist);
+				grpf.setSpeculativeEvaluation(specCands[i], pools[i]);
+				grpf.setEvaluationBudget(budget);
+				check(groups(grpf).equals(expBudget), sctx + "groups");
+				check(grpf.getEvaluations() == seq.getEvaluations(), sctx + "evaluations (" + grpf.getEvaluations() + ", expected " + seq.getEvaluations() + ")");
+			}
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Generates the versions of a synthetic {@link Software} for the checks in
+ * this directory, so that they do not depend on real binaries.
+ *
+ * Every version consists of two parts stored in parts-&lt;pagesize&gt;
+ * directories, so that no binary has to be parsed. Pages of the "code" part
+ * are random and keep their contents for runs of 1 to 4 (or more)
+ * consecutive versions, so that versions share pages with their neighbours
+ * to a varying degree. Pages
+ * of the "data" part repeat a short pattern (and are thus compressible) and
+ * do not depend on the name of the Software, so that two Softwares with the
+ * same seed share them. Some pages are all-0/all-1 pages or internal
+ * duplicates, and the last page of the data part is padded.
+ */
+class SyntheticSoftware {
+	static final int PAGE_SIZE = 4096;
+	static final String BINARY = "bin";
+
+	private static final int CODE_PAGES = 320;
+	private static final int DATA_PAGES = 40;
+	private static final int PATTERN_LENGTH = 64;
+
+	private SyntheticSoftware() {
+		// static methods only
+	}
+
+	/**
+	 * Writes the versions of a synthetic Software to a directory and loads it.
+	 * Pages keep their contents for runs of minRun to minRun+3 versions, so
+	 * with a minRun above 1 only few pages are unique to a single version.
+	 *
+	 * @param dir directory to write the versions to (a subdirectory named like the Software is created)
+	 * @param name name of the Software
+	 * @param numVersions number of versions
+	 * @param seed seed for the page contents
+	 * @param minRun minimum number of consecutive versions sharing the contents of a page
+	 * @return the Software
+	 * @throws IOException if the versions cannot be written
+	 */
+	static Software create(File dir, String name, int numVersions, long seed, int minRun) throws IOException {
+		File versionsDir = new File(new File(dir, name), "versions");
+		for(int v = 0; v < numVersions; v++) {
+			File partsDir = new File(new File(versionsDir, String.format("1.%03d", v)), "parts-" + PAGE_SIZE);
+			FileUtils.forceMkdir(partsDir);
+			FileUtils.writeByteArrayToFile(new File(partsDir, "code"), part(name.hashCode(), seed, 0, CODE_PAGES, v, minRun, false));
+			byte[] data = part(0, seed, 1, DATA_PAGES, v, minRun, true);
+			FileUtils.writeByteArrayToFile(new File(partsDir, "data"), Arrays.copyOf(data, data.length - 100));
+		}
+
+		LoadOptions loadOpts = new LoadOptions();
+		loadOpts.setUseFingerprintFiles(false);
+		return new Software(name, versionsDir, BINARY, PAGE_SIZE, loadOpts);
+	}
+
+	/**
+	 * Generates the contents of a part of a version.
+	 *
+	 * @param salt value mixed into the contents of all pages
+	 * @param seed seed for the page contents
+	 * @param partNum number of the part
+	 * @param numPages number of pages
+	 * @param v number of the version
+	 * @param minRun minimum number of consecutive versions sharing the contents of a page
+	 * @param pattern whether pages repeat a short pattern
+	 * @return contents of the part
+	 */
+	private static byte[] part(int salt, long seed, int partNum, int numPages, int v, int minRun, boolean pattern) {
+		byte[] bytes = new byte[numPages * PAGE_SIZE];
+		for(int i = 0; i < numPages; i++) {
+			Random choice = new Random(mix(seed, partNum, i, -1 - v));
+			double r = choice.nextDouble();
+			int off = i * PAGE_SIZE;
+			if(r < 0.04) {
+				// all-0 page
+			} else if(r < 0.06) {
+				// all-1 page, i.e. every byte is 1 (cf. PageTable)
+				Arrays.fill(bytes, off, off + PAGE_SIZE, (byte)1);
+			} else if((r < 0.10) && (i > 0)) {
+				int dup = choice.nextInt(i);
+				System.arraycopy(bytes, dup * PAGE_SIZE, bytes, off, PAGE_SIZE);
+			} else {
+				int len = minRun + (i % 4);
+				int epoch = (v + (i % 3)) / len;
+				Random contents = new Random(mix(seed ^ salt, partNum, i, epoch));
+				if(pattern) {
+					byte[] p = new byte[PATTERN_LENGTH];
+					contents.nextBytes(p);
+					for(int j = 0; j < PAGE_SIZE; j += PATTERN_LENGTH) {
+						System.arraycopy(p, 0, bytes, off + j, PATTERN_LENGTH);
+					}
+				} else {
+					byte[] p = new byte[PAGE_SIZE];
+					contents.nextBytes(p);
+					System.arraycopy(p, 0, bytes, off, PAGE_SIZE);
+				}
+			}
+		}
+		return bytes;
+	}
+
+	private static long mix(long seed, int partNum, int page, int epoch) {
+		long h = seed;
+		h = h * 1000003 + partNum;
+		h = h * 1000003 + page;
+		h = h * 1000003 + epoch;
+		return h;
+	}
+}
@@ -0,0 +1,105 @@
+package de.uni_hamburg.svs.memsig;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/**
+ * Checks that the {@link VersionComparisonMatrix} of a
+ * {@link SyntheticSoftware} contains the same numbers as comparing each
+ * pair of versions with
+ * {@link SoftwareVersion#compareToVersion(SoftwareVersion, int)} and as
+ * counting the matching pages of each pair by their contents, and that
+ * {@link Software#compareAllVersions(int)} returns the same results.
+ */
+public class VersionComparisonMatrixCheck extends Check {
+	public static void main(String[] args) throws IOException {
+		runChecks(new VersionComparisonMatrixCheck());
+	}
+
+	@Override
+	void run() throws IOException {
+		int ps = SyntheticSoftware.PAGE_SIZE;
+		Software sw = createSoftware("sw", 10, 6, 1);
+		VersionComparisonMatrix matrix = sw.compareAllVersionsMatrix(ps);
+		TreeMap<SoftwareVersion, HashMap<SoftwareVersion, VersionComparisonResult>> results = sw.compareAllVersions(ps);
+
+		SoftwareVersion[] versions = matrix.getVersions();
+		SoftwareVersion[] sorted = versions(sw);
+		check(versions.length == sorted.length, "number of versions");
+		ArrayList<HashMap<ByteBuffer, Integer>> counts = new ArrayList<HashMap<ByteBuffer, Integer>>();
+		for(int v = 0; v < versions.length; v++) {
+			counts.add(countContents(versions[v], ps));
+		}
+
+		int shared = 0;
+		for(int v = 0; v < versions.length; v++) {
+			String vctx = versions[v] + ": ";
+			check((v < sorted.length) && (versions[v] == sorted[v]), vctx + "canonical order");
+			check(matrix.numberOfPages(v) == versions[v].numberOfPages(ps), vctx + "number of pages");
+
+			int intDups = 0;
+			for(int n : counts.get(v).values()) {
+				if(n > 1) {
+					intDups += n;
+				}
+			}
+			check(matrix.numberOfInternalDuplicates(v) == intDups, vctx + "internal duplicates (" + matrix.numberOfInternalDuplicates(v) + ", expected " + intDups + ")");
+			check(results.get(versions[v]).get(versions[v]) == null, vctx + "no result for the version itself");
+
+			for(int u = 0; u < versions.length; u++) {
+				if(u == v) {
+					continue;
+				}
+				String ctx = vctx + "compared to " + versions[u] + ": ";
+
+				int matches = 0;
+				for(ByteBuffer content : counts.get(v).keySet()) {
+					if(counts.get(u).containsKey(content)) {
+						matches += counts.get(v).get(content);
+					}
+				}
+				if((matches > 0) && (matches < matrix.numberOfPages(v))) {
+					shared++;
+				}
+				check(matrix.numberOfMatches(v, u) == matches, ctx + "matches (" + matrix.numberOfMatches(v, u) + ", expected " + matches + ")");
+				check(matrix.numberOfUniques(v, u) == matrix.numberOfPages(v) - matches, ctx + "uniques");
+
+				VersionComparisonResult pair = versions[v].compareToVersion(versions[u], ps);
+				checkResult(matrix.getResult(v, u), pair, ctx + "matrix result");
+				checkResult(results.get(versions[v]).get(versions[u]), pair, ctx + "compareAllVersions result");
+			}
+		}
+		check(shared > 0, "pairs of versions sharing some but not all pages");
+	}
+
+	/**
+	 * Counts the pages of a version by their contents.
+	 */
+	private static HashMap<ByteBuffer, Integer> countContents(SoftwareVersion sv, int ps) {
+		HashMap<ByteBuffer, Integer> counts = new HashMap<ByteBuffer, Integer>();
+		for(CodePart part : sv.getParts()) {
+			for(int i = 0; i < part.numberOfPages(ps); i++) {
+				counts.merge(ByteBuffer.wrap(part.getPageBytes(i, ps)), 1, Integer::sum);
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * Compares a comparison result with the one of compareToVersion.
+	 */
+	private void checkResult(VersionComparisonResult res, VersionComparisonResult expected, String ctx) {
+		if(res == null) {
+			check(false, ctx + " missing");
+			return;
+		}
+		check(res.getVersion() == expected.getVersion(), ctx + ": version");
+		check(res.getCompVersion() == expected.getCompVersion(), ctx + ": comparison version");
+		check(res.numberOfMatches() == expected.numberOfMatches(), ctx + ": matches");
+		check(res.numberOfUniques() == expected.numberOfUniques(), ctx + ": uniques");
+		check(res.numberOfInternalDuplicates() == expected.numberOfInternalDuplicates(), ctx + ": internal duplicates");
+	}
+}